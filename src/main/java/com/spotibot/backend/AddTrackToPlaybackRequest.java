@@ -12,4 +12,7 @@ import lombok.Setter;
 public class AddTrackToPlaybackRequest {
     private String roomIdentifier;
     private String trackHref;
+    private String songName;
+    private String artistName;
+    private String pictureURI;
 }
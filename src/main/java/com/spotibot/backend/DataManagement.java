@@ -1,28 +1,82 @@
 package com.spotibot.backend;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
+import com.spotibot.backend.room.Room;
 import lombok.NoArgsConstructor;
 
 @NoArgsConstructor
 public final class DataManagement {
-	public static final Map<String, UserSession> userSessionCache = new HashMap<String, UserSession>();
+	public static final Map<String, UserSession> userSessionCache = new ConcurrentHashMap<String, UserSession>();
+	private static final Map<String, String> roomOwners = new ConcurrentHashMap<String, String>();
+
+	/**
+	 Returns the session of the given user, or null if the user has none or is not known yet.
+	 @param userIdentifier the userIdentifier bound to the HTTP session, may be null
+	 @return the session of the user or null
+	 */
+	public static UserSession getUserSession(String userIdentifier) {
+		return userIdentifier == null ? null : userSessionCache.get(userIdentifier);
+	}
+
+	/**
+	 Creates the session of the given user with a new room. The room identifier is drawn until it is not taken by
+	 another room. If a concurrent request of the same user created a session first, that session is returned.
+	 @param userIdentifier the userIdentifier of the room owner
+	 @param roomIdentifierGenerator draws a candidate room identifier
+	 @param roomFactory creates the room for the reserved room identifier
+	 @return the session of the user
+	 */
+	public static UserSession createUserSession(String userIdentifier, Supplier<String> roomIdentifierGenerator, Function<String, Room> roomFactory) {
+		return userSessionCache.computeIfAbsent(userIdentifier, key -> {
+			String roomIdentifier = roomIdentifierGenerator.get();
+
+			while (roomOwners.putIfAbsent(roomIdentifier, key) != null) {
+				roomIdentifier = roomIdentifierGenerator.get();
+			}
+
+			return new UserSession(roomFactory.apply(roomIdentifier), null, null);
+		});
+	}
+
+	/**
+	 Removes the session of the given user and frees its room identifier.
+	 @param userIdentifier the userIdentifier of the room owner
+	 @return the removed session, or null if the user had none
+	 */
+	public static UserSession removeUserSession(String userIdentifier) {
+		UserSession userSession = userSessionCache.remove(userIdentifier);
+
+		if (userSession != null) {
+			roomOwners.remove(userSession.getUserRoom().getRoomIdentifier(), userIdentifier);
+		}
+
+		return userSession;
+	}
+
+	/**
+	 Removes all sessions and rooms.
+	 */
+	public static void clear() {
+		userSessionCache.clear();
+		roomOwners.clear();
+	}
 
 	public static Optional<UserSession> getMatchingUserSession(String roomIdentifier) {
-		return userSessionCache
-				.values()
-				.stream()
-				.filter(userSession -> userSession.getUserRoom().getRoomIdentifier().equals(roomIdentifier))
-				.findFirst();
+		return getMatchingEntry(roomIdentifier).map(Map.Entry::getValue);
 	}
 
 	public static Optional<Map.Entry<String, UserSession>> getMatchingEntry(String roomIdentifier) {
-		return userSessionCache
-				.entrySet()
-				.stream()
-				.filter(entry -> entry.getValue().getUserRoom().getRoomIdentifier().equals(roomIdentifier))
-				.findFirst();
+		String userIdentifier = roomIdentifier == null ? null : roomOwners.get(roomIdentifier);
+		UserSession userSession = getUserSession(userIdentifier);
+
+		if (userSession == null || !userSession.getUserRoom().getRoomIdentifier().equals(roomIdentifier)) {
+			return Optional.empty();
+		}
+
+		return Optional.of(Map.entry(userIdentifier, userSession));
 	}
 }
-
@@ -0,0 +1,27 @@
+package com.spotibot.backend;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+/**
+ Publishes the live room and session state held in {@link DataManagement} as gauges.
+ The gauges read the concurrent session cache directly, a scrape sees a weakly consistent view of it
+ and never blocks or fails on concurrent room creation.
+ */
+@Component
+public class DataManagementMetrics implements MeterBinder {
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        Gauge.builder("spotibot.rooms", DataManagement.userSessionCache, cache -> cache.size())
+                .description("Rooms currently held in memory")
+                .register(meterRegistry);
+
+        Gauge.builder("spotibot.rooms.authenticated", DataManagement.userSessionCache,
+                        cache -> cache.values().stream().filter(userSession -> userSession.getUserSpotifyToken() != null).count())
+                .description("Rooms whose host is logged in to Spotify")
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,38 @@
+package com.spotibot.backend;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.Map;
+
+/**
+ The constant {"message": ...} bodies, encoded once. A map of one string is written the same under any Jackson
+ configuration, so they do not need the application's ObjectMapper. Everything else is written with the
+ ObjectMapper of the application context, see {@link PayloadWriters}.
+ */
+public final class JsonPayloads {
+
+	private JsonPayloads() {
+
+	}
+
+	private static final ObjectMapper MESSAGE_MAPPER = new ObjectMapper();
+
+	public static final byte[] MESSAGE_VOTED = message("voted");
+	public static final byte[] MESSAGE_SKIPPED = message("skipped");
+	public static final byte[] MESSAGE_ROLLBACK = message("rollback");
+	public static final byte[] MESSAGE_UPVOTED = message("upvoted");
+
+	/**
+	 Serializes a simple {"message": ...} object once, so it can be written to every response without re-encoding.
+	 @param message the message to serialize
+	 @return the UTF-8 encoded JSON bytes
+	 */
+	public static byte[] message(String message) {
+		try {
+			return MESSAGE_MAPPER.writeValueAsBytes(Map.of("message", message));
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException("Could not serialize message " + message, e);
+		}
+	}
+}
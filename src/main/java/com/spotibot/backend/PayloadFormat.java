@@ -0,0 +1,54 @@
+package com.spotibot.backend;
+
+import lombok.Getter;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+/**
+ Encodings a client can ask for with its Accept header. JSON is the default, CBOR and Smile are binary
+ encodings of the same structure, which spare guests on weak connections the repeated field names and
+ number formatting of JSON text.
+ */
+@Getter
+public enum PayloadFormat {
+	JSON(MediaType.APPLICATION_JSON, ""),
+	CBOR(MediaType.APPLICATION_CBOR, "-cbor"),
+	SMILE(new MediaType("application", "x-jackson-smile"), "-smile");
+
+	private final MediaType mediaType;
+	private final String eTagSuffix;
+
+	PayloadFormat(MediaType mediaType, String eTagSuffix) {
+		this.mediaType = mediaType;
+		this.eTagSuffix = eTagSuffix;
+	}
+
+	/**
+	 Picks the format with the highest quality in the given Accept header. Wildcards and ties go to JSON.
+	 @param accept the Accept header of the request, may be null
+	 @return the format to encode the response in
+	 */
+	public static PayloadFormat negotiate(String accept) {
+		if (accept == null || accept.isBlank()) {
+			return JSON;
+		}
+
+		PayloadFormat best = JSON;
+		double bestQuality = 0;
+
+		try {
+			for (MediaType mediaType : MediaType.parseMediaTypes(accept)) {
+				for (PayloadFormat format : values()) {
+					if (mediaType.includes(format.mediaType) && mediaType.getQualityValue() > bestQuality) {
+						best = format;
+						bestQuality = mediaType.getQualityValue();
+					}
+				}
+			}
+		} catch (InvalidMediaTypeException e) {
+			return JSON;
+		}
+
+		return best;
+	}
+}
@@ -0,0 +1,44 @@
+package com.spotibot.backend;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ The writers of the {@link PayloadFormat}s for payloads the app serializes itself instead of leaving them to the
+ message converters of Spring MVC, e.g. the cached SongContext bytes. JSON is written with the ObjectMapper of
+ the application context, CBOR and Smile with copies of it for their factories, so these bytes follow the
+ spring.jackson configuration like every other response.
+ */
+public class PayloadWriters {
+    private final Map<PayloadFormat, ObjectWriter> writers = new EnumMap<>(PayloadFormat.class);
+
+    public PayloadWriters(ObjectMapper objectMapper) {
+        writers.put(PayloadFormat.JSON, objectMapper.writer());
+        writers.put(PayloadFormat.CBOR, objectMapper.copyWith(new CBORFactory()).writer());
+        writers.put(PayloadFormat.SMILE, objectMapper.copyWith(new SmileFactory()).writer());
+    }
+
+    public ObjectWriter get(PayloadFormat format) {
+        return writers.get(format);
+    }
+
+    /**
+     Serializes the value in the given format.
+     @param format the format to serialize in
+     @param value the value to serialize
+     @return the encoded bytes
+     */
+    public byte[] write(PayloadFormat format, Object value) {
+        try {
+            return writers.get(format).writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize " + value.getClass().getSimpleName() + " as " + format, e);
+        }
+    }
+}
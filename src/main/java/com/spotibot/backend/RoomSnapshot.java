@@ -0,0 +1,24 @@
+package com.spotibot.backend;
+
+import com.spotibot.backend.room.Room;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import se.michaelthelin.spotify.model_objects.miscellaneous.Device;
+
+/**
+ Everything the room screen shows, as seen by the requesting user: the room settings, its ownership, the
+ current SongContext and the skip vote state, and the devices of the room owner if they were asked for.
+ */
+@Getter
+@AllArgsConstructor
+public class RoomSnapshot {
+    private Room room;
+    private boolean owner;
+    private String ownRoomIdentifier;
+    private boolean authenticated;
+    private SongContext songContext;
+    private int currentVotes;
+    private int neededVotesToSkip;
+    private boolean voted;
+    private Device[] devices;
+}
@@ -0,0 +1,18 @@
+package com.spotibot.backend;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class SearchSongEvent {
+    private String queryString;
+    private boolean partial;
+    private List<SearchSongResult> results;
+}
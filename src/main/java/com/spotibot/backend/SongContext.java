@@ -14,8 +14,10 @@ public class SongContext {
     private String artist;
     private long songDuration;
     private long currentProgress;
+    private long progressTimestamp;
     private String currentImgUrl;
     private boolean playingStatus;
+    private long playbackVersion;
     private int currentVotes;
     private int neededVotesToSkip;
 }
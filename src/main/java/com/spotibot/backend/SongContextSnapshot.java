@@ -0,0 +1,134 @@
+package com.spotibot.backend;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.springframework.util.DigestUtils;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ Immutable, pre-serialized SongContext of a room.
+ The JSON bytes are encoded once per real state change and shared by every guest polling the room. The bytes of
+ the binary {@link PayloadFormat}s are encoded the first time a guest asks for them and shared from then on,
+ through an AtomicReferenceArray so a guest on another thread never sees a partly published array.
+ Progress alone is not a state change: clients extrapolate it from currentProgress and progressTimestamp,
+ so a new version is only published if the track, play state or votes change, or the playback was seeked.
+ The ETag is a hash of the JSON bytes rather than a counter, so it stays valid across restarts and instances
+ and two different SongContexts never share it.
+ */
+@Getter
+public final class SongContextSnapshot {
+    public static final long MAX_AGE_MS = 1000;
+    private static final long SEEK_TOLERANCE_MS = 2000;
+
+    private final SongContext songContext;
+    @Getter(AccessLevel.NONE)
+    private final AtomicReferenceArray<byte[]> payloads;
+    @Getter(AccessLevel.NONE)
+    private final PayloadWriters payloadWriters;
+    private final String version;
+    private final String eTag;
+    private final long fetchedAt;
+
+    private SongContextSnapshot(SongContext songContext, AtomicReferenceArray<byte[]> payloads, PayloadWriters payloadWriters, String version, long fetchedAt) {
+        this.songContext = songContext;
+        this.payloads = payloads;
+        this.payloadWriters = payloadWriters;
+        this.version = version;
+        this.eTag = "\"" + version + "\"";
+        this.fetchedAt = fetchedAt;
+    }
+
+    /**
+     Creates the snapshot following the given one. The previous bytes and version are reused if the
+     new SongContext does not differ in state from the previous one.
+     @param previous the currently published snapshot, may be null
+     @param songContext the freshly fetched SongContext
+     @param payloadWriters the writers to serialize the SongContext with
+     @return the snapshot to publish
+     */
+    public static SongContextSnapshot next(SongContextSnapshot previous, SongContext songContext, PayloadWriters payloadWriters) {
+        long now = System.currentTimeMillis();
+
+        if (previous != null && !previous.isChangedBy(songContext)) {
+            return new SongContextSnapshot(previous.songContext, previous.payloads, payloadWriters, previous.version, now);
+        }
+
+        byte[] json = payloadWriters.write(PayloadFormat.JSON, songContext);
+        AtomicReferenceArray<byte[]> payloads = new AtomicReferenceArray<>(PayloadFormat.values().length);
+        payloads.set(PayloadFormat.JSON.ordinal(), json);
+        return new SongContextSnapshot(songContext, payloads, payloadWriters, DigestUtils.md5DigestAsHex(json), now);
+    }
+
+    /**
+     Creates the snapshot following this one, serialized with the same writers.
+     @param songContext the changed SongContext
+     @return the snapshot to publish
+     */
+    public SongContextSnapshot next(SongContext songContext) {
+        return next(this, songContext, payloadWriters);
+    }
+
+    /**
+     Returns the serialized SongContext, encoding it first if no guest asked for the format before. Of concurrent
+     first requests the first to finish publishes its bytes, the others use them too.
+     @param format the format to serialize in
+     @return the encoded bytes
+     */
+    public byte[] getPayload(PayloadFormat format) {
+        byte[] payload = payloads.get(format.ordinal());
+
+        if (payload == null) {
+            payloads.compareAndSet(format.ordinal(), null, payloadWriters.write(format, songContext));
+            payload = payloads.get(format.ordinal());
+        }
+
+        return payload;
+    }
+
+    public byte[] getPayload() {
+        return getPayload(PayloadFormat.JSON);
+    }
+
+    /**
+     Returns the ETag of the snapshot in the given format, so a cache never answers one format with the other.
+     @param format the format of the response
+     @return the quoted ETag
+     */
+    public String getETag(PayloadFormat format) {
+        return format == PayloadFormat.JSON ? eTag : "\"" + version + format.getETagSuffix() + "\"";
+    }
+
+    /**
+     Returns a copy of this snapshot that is due for a refetch, but still carries the same version.
+     @return the expired snapshot
+     */
+    public SongContextSnapshot expire() {
+        return new SongContextSnapshot(songContext, payloads, payloadWriters, version, 0);
+    }
+
+    public boolean isFresh() {
+        return System.currentTimeMillis() - fetchedAt < MAX_AGE_MS;
+    }
+
+    private boolean isChangedBy(SongContext next) {
+        if (!Objects.equals(songContext.getSongTitle(), next.getSongTitle())
+                || !Objects.equals(songContext.getArtist(), next.getArtist())
+                || !Objects.equals(songContext.getCurrentImgUrl(), next.getCurrentImgUrl())
+                || songContext.getSongDuration() != next.getSongDuration()
+                || songContext.isPlayingStatus() != next.isPlayingStatus()
+                || songContext.getPlaybackVersion() != next.getPlaybackVersion()
+                || songContext.getCurrentVotes() != next.getCurrentVotes()
+                || songContext.getNeededVotesToSkip() != next.getNeededVotesToSkip()) {
+            return true;
+        }
+
+        long expectedProgress = songContext.getCurrentProgress();
+        if (songContext.isPlayingStatus()) {
+            expectedProgress += next.getProgressTimestamp() - songContext.getProgressTimestamp();
+        }
+
+        return Math.abs(next.getCurrentProgress() - expectedProgress) > SEEK_TOLERANCE_MS;
+    }
+}
@@ -0,0 +1,33 @@
+package com.spotibot.backend;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
+
+/**
+ The userIdentifier every guest and host is known by, kept in their HTTP session.
+ */
+public final class UserIdentifiers {
+    public static final String SESSION_ATTRIBUTE = "userIdentifier";
+
+    private static final RandomStringGenerator randomStringGenerator = new RandomStringGenerator();
+
+    private UserIdentifiers() {
+    }
+
+    /**
+     Returns the userIdentifier of the requesting client, binding a new random one to its session if it has none.
+     @param request the incoming HTTP request, its session is created if missing
+     @return the userIdentifier of the client
+     */
+    public static String checkOrCreateUserIdentifierInSession(HttpServletRequest request) {
+        HttpSession httpSession = request.getSession();
+        String userIdentifier = (String) httpSession.getAttribute(SESSION_ATTRIBUTE);
+
+        if (userIdentifier == null || userIdentifier.isEmpty()) {
+            userIdentifier = randomStringGenerator.generateRandomIdentifier(10);
+            httpSession.setAttribute(SESSION_ATTRIBUTE, userIdentifier);
+        }
+
+        return userIdentifier;
+    }
+}
@@ -13,5 +13,6 @@ import lombok.Setter;
 @AllArgsConstructor
 public class UserSession {
     private Room userRoom;
-    private SpotifyToken userSpotifyToken;
+    private volatile SpotifyToken userSpotifyToken;
+    private volatile String spotifyAppId;
 }
@@ -0,0 +1,69 @@
+package com.spotibot.backend.hotkeys;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ Count-Min Sketch: estimates how often a key was added in a fixed number of counters. Every key increments one
+ counter per row, the estimate is the smallest of them, so it never undercounts and overcounts by at most the
+ collisions in its least crowded row. Rows are indexed by double hashing of the key's hash code.
+ */
+public class CountMinSketch {
+    private final int width;
+    private final int depth;
+    private final AtomicLongArray counters;
+
+    /**
+     @param width the counters per row, rounded up to a power of two
+     @param depth the number of rows
+     */
+    public CountMinSketch(int width, int depth) {
+        this.width = Integer.highestOneBit(Math.max(2, width - 1)) << 1;
+        this.depth = depth;
+        this.counters = new AtomicLongArray(this.width * depth);
+    }
+
+    /**
+     Counts the key once.
+     @param key the key to count
+     @return the estimated count of the key including this one
+     */
+    public long add(String key) {
+        int hash = spread(key.hashCode());
+        int step = spread(hash) | 1;
+        long estimate = Long.MAX_VALUE;
+
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.incrementAndGet(row * width + ((hash + row * step) & (width - 1))));
+        }
+
+        return estimate;
+    }
+
+    /**
+     Estimates how often the key was added.
+     @param key the key to look up
+     @return the estimated count, never less than the real one
+     */
+    public long estimate(String key) {
+        int hash = spread(key.hashCode());
+        int step = spread(hash) | 1;
+        long estimate = Long.MAX_VALUE;
+
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.get(row * width + ((hash + row * step) & (width - 1))));
+        }
+
+        return estimate;
+    }
+
+    public void clear() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+    }
+
+    private static int spread(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,37 @@
+package com.spotibot.backend.hotkeys;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+@Configuration
+@EnableConfigurationProperties(HotKeyProperties.class)
+@ConditionalOnProperty(name = "spotibot.hot-keys.enabled", matchIfMissing = true)
+public class HotKeyConfiguration {
+
+    @Bean
+    public HotKeyTracker hotKeyTracker(HotKeyProperties hotKeyProperties)
+    {
+        return new HotKeyTracker(hotKeyProperties);
+    }
+
+    /**
+     * Registered ahead of the unordered filters, admission control among them, but behind the LoggingContextFilter.
+     */
+    @Bean
+    public FilterRegistrationBean<HotKeyFilter> hotKeyFilter(HotKeyTracker hotKeyTracker)
+    {
+        FilterRegistrationBean<HotKeyFilter> registration = new FilterRegistrationBean<>(new HotKeyFilter(hotKeyTracker));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 20);
+        return registration;
+    }
+
+    @Bean
+    public HotKeyEndpoint hotKeyEndpoint(HotKeyTracker hotKeyTracker, HotKeyProperties hotKeyProperties)
+    {
+        return new HotKeyEndpoint(hotKeyTracker, hotKeyProperties);
+    }
+}
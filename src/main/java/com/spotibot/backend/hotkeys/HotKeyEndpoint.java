@@ -0,0 +1,60 @@
+package com.spotibot.backend.hotkeys;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.convert.DurationStyle;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ Actuator endpoint listing the hottest rooms, guests and endpoints: /actuator/hotkeys reports every configured
+ window, /actuator/hotkeys/{window}, e.g. /actuator/hotkeys/30s, a single one.
+ The report contains room and user identifiers, so the endpoint is not exposed over the web by default; expose it
+ only on a management port that is not reachable by guests, see application.properties.
+ */
+@Endpoint(id = "hotkeys")
+public class HotKeyEndpoint {
+    private final HotKeyTracker hotKeyTracker;
+    private final List<Duration> windows;
+
+    public HotKeyEndpoint(HotKeyTracker hotKeyTracker, HotKeyProperties properties)
+    {
+        this.hotKeyTracker = hotKeyTracker;
+        this.windows = properties.getWindows();
+    }
+
+    @ReadOperation
+    public Map<String, Map<String, List<HotKeyTracker.HotKey>>> hotKeys()
+    {
+        Map<String, Map<String, List<HotKeyTracker.HotKey>>> report = new LinkedHashMap<>();
+
+        for (Duration window : windows)
+        {
+            report.put(window.toString(), hotKeys(window));
+        }
+
+        return report;
+    }
+
+    @ReadOperation
+    public Map<String, List<HotKeyTracker.HotKey>> hotKeys(@Selector String window)
+    {
+        return hotKeys(DurationStyle.detectAndParse(window));
+    }
+
+    private Map<String, List<HotKeyTracker.HotKey>> hotKeys(Duration window)
+    {
+        Map<String, List<HotKeyTracker.HotKey>> report = new LinkedHashMap<>();
+
+        for (HotKeyTracker.Dimension dimension : HotKeyTracker.Dimension.values())
+        {
+            report.put(dimension.name().toLowerCase(), hotKeyTracker.top(dimension, window));
+        }
+
+        return report;
+    }
+}
@@ -0,0 +1,50 @@
+package com.spotibot.backend.hotkeys;
+
+import com.spotibot.backend.web.LoggingContextFilter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import org.slf4j.MDC;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ Counts every request to the room and Spotify endpoints in the {@link HotKeyTracker}, including the ones shed by
+ admission control. It runs inside the {@link LoggingContextFilter}, so after the request the MDC still holds the
+ roomIdentifier, also the one the controllers found in a request body.
+ */
+public class HotKeyFilter extends OncePerRequestFilter {
+    private final HotKeyTracker hotKeyTracker;
+
+    public HotKeyFilter(HotKeyTracker hotKeyTracker)
+    {
+        this.hotKeyTracker = hotKeyTracker;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException
+    {
+        try
+        {
+            filterChain.doFilter(request, response);
+        } finally
+        {
+            HttpSession session = request.getSession(false);
+
+            hotKeyTracker.record(
+                    MDC.get(LoggingContextFilter.ROOM_IDENTIFIER),
+                    session != null ? (String) session.getAttribute(LoggingContextFilter.USER_IDENTIFIER) : null,
+                    request.getRequestURI().substring(request.getContextPath().length()));
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request)
+    {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !path.startsWith("/room/") && !path.startsWith("/spotify/");
+    }
+}
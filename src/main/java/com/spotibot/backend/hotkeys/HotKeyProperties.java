@@ -0,0 +1,26 @@
+package com.spotibot.backend.hotkeys;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ Settings of the hot-key tracker. Requests are counted in a ring of buckets of bucketDuration, each holding a
+ Count-Min Sketch of sketchWidth x sketchDepth counters and the topK keys per dimension, so the memory stays the
+ same however many rooms and guests there are. The windows reported by default must fit into the ring.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "spotibot.hot-keys")
+public class HotKeyProperties {
+    private boolean enabled = true;
+    private Duration bucketDuration = Duration.ofMinutes(1);
+    private int buckets = 15;
+    private int topK = 20;
+    private int sketchWidth = 1024;
+    private int sketchDepth = 4;
+    private List<Duration> windows = List.of(Duration.ofMinutes(1), Duration.ofMinutes(5), Duration.ofMinutes(15));
+}
@@ -0,0 +1,154 @@
+package com.spotibot.backend.hotkeys;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ Tracks which rooms, guests and endpoints receive the most requests over sliding time windows, in constant memory.
+ Requests are counted in a ring of time buckets, each with a {@link CountMinSketch} and {@link TopKeys} per
+ {@link Dimension}. A window is answered by adding up the sketch estimates of the candidate keys of its buckets.
+ A bucket is reset when the ring comes round to it again. Requests counted while it is reset may be lost, which
+ is fine for telling hot keys apart.
+ */
+public class HotKeyTracker {
+    private final long bucketNanos;
+    private final int topK;
+    private final Bucket[] buckets;
+
+    public HotKeyTracker(HotKeyProperties properties) {
+        this.bucketNanos = properties.getBucketDuration().toNanos();
+        this.topK = properties.getTopK();
+        this.buckets = new Bucket[properties.getBuckets()];
+
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new Bucket(properties);
+        }
+    }
+
+    /**
+     Counts one request.
+     @param roomIdentifier the room the request was sent to, may be null
+     @param userIdentifier the guest who sent it, may be null
+     @param endpoint the endpoint it was sent to, may be null
+     */
+    public void record(String roomIdentifier, String userIdentifier, String endpoint) {
+        record(roomIdentifier, userIdentifier, endpoint, System.nanoTime());
+    }
+
+    void record(String roomIdentifier, String userIdentifier, String endpoint, long now) {
+        Bucket bucket = currentBucket(now / bucketNanos);
+
+        bucket.record(Dimension.ROOM, roomIdentifier);
+        bucket.record(Dimension.USER, userIdentifier);
+        bucket.record(Dimension.ENDPOINT, endpoint);
+    }
+
+    /**
+     Returns the keys of a dimension with the most requests in the given window, which is cut to the bucket ring.
+     @param dimension the dimension to rank
+     @param window the time window ending now
+     @return the hottest keys, most requests first
+     */
+    public List<HotKey> top(Dimension dimension, Duration window) {
+        return top(dimension, window, System.nanoTime());
+    }
+
+    List<HotKey> top(Dimension dimension, Duration window, long now) {
+        long epoch = now / bucketNanos;
+        int bucketCount = (int) Math.min(buckets.length, Math.max(1, (window.toNanos() + bucketNanos - 1) / bucketNanos));
+
+        List<Bucket> windowBuckets = new ArrayList<>(bucketCount);
+        for (long bucketEpoch = epoch - bucketCount + 1; bucketEpoch <= epoch; bucketEpoch++) {
+            Bucket bucket = buckets[(int) Math.floorMod(bucketEpoch, (long) buckets.length)];
+
+            if (bucket.epoch == bucketEpoch) {
+                windowBuckets.add(bucket);
+            }
+        }
+
+        long total = 0;
+        Set<String> candidates = new HashSet<>();
+        for (Bucket bucket : windowBuckets) {
+            total += bucket.totals[dimension.ordinal()].sum();
+            candidates.addAll(bucket.topKeys[dimension.ordinal()].snapshot().keySet());
+        }
+
+        List<HotKey> hotKeys = new ArrayList<>(candidates.size());
+        for (String candidate : candidates) {
+            long count = 0;
+            for (Bucket bucket : windowBuckets) {
+                count += bucket.sketches[dimension.ordinal()].estimate(candidate);
+            }
+            hotKeys.add(new HotKey(candidate, count, total == 0 ? 0 : (double) count / total));
+        }
+
+        hotKeys.sort(Comparator.comparingLong(HotKey::count).reversed());
+        return hotKeys.size() > topK ? List.copyOf(hotKeys.subList(0, topK)) : hotKeys;
+    }
+
+    private Bucket currentBucket(long epoch) {
+        Bucket bucket = buckets[(int) Math.floorMod(epoch, (long) buckets.length)];
+
+        if (bucket.epoch != epoch) {
+            synchronized (bucket) {
+                if (bucket.epoch != epoch) {
+                    bucket.reset(epoch);
+                }
+            }
+        }
+
+        return bucket;
+    }
+
+    public enum Dimension {
+        ROOM, USER, ENDPOINT
+    }
+
+    /**
+     A key and its estimated requests in a window.
+     @param key the roomIdentifier, userIdentifier or endpoint
+     @param count the estimated number of requests, never less than the real one
+     @param share the estimated share of all requests in the window
+     */
+    public record HotKey(String key, long count, double share) {
+    }
+
+    private static final class Bucket {
+        private final CountMinSketch[] sketches = new CountMinSketch[Dimension.values().length];
+        private final TopKeys[] topKeys = new TopKeys[Dimension.values().length];
+        private final LongAdder[] totals = new LongAdder[Dimension.values().length];
+        private volatile long epoch = Long.MIN_VALUE;
+
+        private Bucket(HotKeyProperties properties) {
+            for (int i = 0; i < sketches.length; i++) {
+                sketches[i] = new CountMinSketch(properties.getSketchWidth(), properties.getSketchDepth());
+                topKeys[i] = new TopKeys(properties.getTopK());
+                totals[i] = new LongAdder();
+            }
+        }
+
+        private void record(Dimension dimension, String key) {
+            if (key == null) {
+                return;
+            }
+
+            totals[dimension.ordinal()].increment();
+            topKeys[dimension.ordinal()].offer(key, sketches[dimension.ordinal()].add(key));
+        }
+
+        private void reset(long epoch) {
+            for (int i = 0; i < sketches.length; i++) {
+                sketches[i].clear();
+                topKeys[i].clear();
+                totals[i].reset();
+            }
+
+            this.epoch = epoch;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.spotibot.backend.hotkeys;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ The k keys with the highest estimated count seen so far. A key is only offered under the lock if its estimate
+ beats the smallest count held, which most requests of a busy app don't, so they only read one volatile field.
+ */
+public class TopKeys {
+    private final int capacity;
+    private final Map<String, Long> counts = new HashMap<>();
+    private volatile long threshold;
+
+    public TopKeys(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     Offers a key with its current estimate.
+     @param key the counted key
+     @param estimate the estimated count of the key
+     */
+    public void offer(String key, long estimate) {
+        if (estimate <= threshold) {
+            return;
+        }
+
+        synchronized (this) {
+            counts.put(key, estimate);
+
+            if (counts.size() > capacity) {
+                counts.remove(minKey());
+            }
+
+            threshold = counts.size() < capacity ? 0 : counts.get(minKey());
+        }
+    }
+
+    public synchronized Map<String, Long> snapshot() {
+        return Map.copyOf(counts);
+    }
+
+    public synchronized void clear() {
+        counts.clear();
+        threshold = 0;
+    }
+
+    private String minKey() {
+        String minKey = null;
+        long min = Long.MAX_VALUE;
+
+        for (Map.Entry<String, Long> entry : counts.entrySet()) {
+            if (entry.getValue() < min) {
+                min = entry.getValue();
+                minKey = entry.getKey();
+            }
+        }
+
+        return minKey;
+    }
+}
@@ -0,0 +1,91 @@
+package com.spotibot.backend.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import lombok.Getter;
+import lombok.Setter;
+import org.slf4j.Marker;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ Samples repeated warnings: every logger and message format may log {@link #allowedRepetitions} times per
+ {@link #intervalMillis}, further events with the same format are dropped until the next interval starts.
+ Events above WARN are never dropped, events below WARN are left to the logger levels.
+ Once more than {@link #cacheSize} formats are tracked, expired windows are evicted, and if that is not enough the
+ least recently logged ones, so a flood of distinct messages never resets the windows of the ones being sampled.
+ Configured from logback-spring.xml.
+ */
+@Getter
+@Setter
+public class RateLimitingTurboFilter extends TurboFilter {
+    private int allowedRepetitions = 5;
+    private long intervalMillis = 10_000;
+    private int cacheSize = 1024;
+
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private final AtomicLong uses = new AtomicLong();
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (level != Level.WARN || format == null) {
+            return FilterReply.NEUTRAL;
+        }
+
+        long now = System.currentTimeMillis();
+        if (windows.size() > cacheSize) {
+            evict(now);
+        }
+
+        Window window = windows.compute(logger.getName() + '|' + format, (key, current) ->
+                current == null || now - current.startedAt >= intervalMillis ? new Window(now) : current);
+
+        window.lastSeen = uses.incrementAndGet();
+        return window.count.incrementAndGet() <= allowedRepetitions ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+    /**
+     Removes the expired windows, then the least recently logged ones until the cache is back at {@link #cacheSize}.
+     Concurrent callers skip the eviction another thread is already doing.
+     */
+    private void evict(long now) {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            windows.values().removeIf(window -> now - window.startedAt >= intervalMillis);
+
+            int excess = windows.size() - cacheSize;
+            if (excess > 0) {
+                // Snapshot the recency first, concurrent loggers keep updating it while the entries are sorted
+                windows.entrySet().stream()
+                        .map(entry -> Map.entry(entry.getKey(), entry.getValue().lastSeen))
+                        .sorted(Map.Entry.comparingByValue())
+                        .limit(excess)
+                        .map(Map.Entry::getKey)
+                        .toList()
+                        .forEach(windows::remove);
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private static final class Window {
+        private final long startedAt;
+        private final AtomicInteger count = new AtomicInteger();
+        private volatile long lastSeen;
+
+        private Window(long startedAt) {
+            this.startedAt = startedAt;
+        }
+    }
+}
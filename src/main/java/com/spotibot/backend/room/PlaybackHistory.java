@@ -0,0 +1,84 @@
+package com.spotibot.backend.room;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ The last {@link #CAPACITY} tracks played in a room, newest last, in a fixed ring buffer, so the history of a
+ long-running room never grows and recording a track does not allocate beyond the entry itself.
+ A track is recorded when the playback poll first reports it, so it is only recorded once however often the
+ room is polled while it plays.
+ */
+public class PlaybackHistory {
+    public static final int CAPACITY = 50;
+
+    private final PlayedTrack[] tracks = new PlayedTrack[CAPACITY];
+    private int size;
+    private int next;
+
+    /**
+     Records the track reported as playing, unless it is still the latest recorded track.
+     @param playedTrack the playing track
+     @return true if the track was recorded, i.e. the song changed
+     */
+    public synchronized boolean record(PlayedTrack playedTrack) {
+        PlayedTrack latest = get(0);
+
+        if (latest != null && latest.getSongHref().equals(playedTrack.getSongHref())) {
+            return false;
+        }
+
+        tracks[next] = playedTrack;
+        next = (next + 1) % CAPACITY;
+        size = Math.min(size + 1, CAPACITY);
+        return true;
+    }
+
+    /**
+     Marks the latest recorded track as skipped, if it is the given track.
+     @param songHref the Spotify URI of the skipped track
+     @return true if the track was marked
+     */
+    public synchronized boolean markSkipped(String songHref) {
+        PlayedTrack latest = get(0);
+
+        if (latest == null || !latest.getSongHref().equals(songHref)) {
+            return false;
+        }
+
+        tracks[index(0)] = latest.markSkipped();
+        return true;
+    }
+
+    /**
+     Returns the most recently played tracks.
+     @param limit the maximum number of tracks to return
+     @return the tracks, newest first
+     */
+    public synchronized List<PlayedTrack> getRecent(int limit) {
+        int count = Math.min(Math.max(limit, 0), size);
+        List<PlayedTrack> recent = new ArrayList<>(count);
+
+        for (int age = 0; age < count; age++) {
+            recent.add(get(age));
+        }
+
+        return recent;
+    }
+
+    public synchronized PlayedTrack getLatest() {
+        return get(0);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private PlayedTrack get(int age) {
+        return age < size ? tracks[index(age)] : null;
+    }
+
+    private int index(int age) {
+        return Math.floorMod(next - 1 - age, CAPACITY);
+    }
+}
@@ -0,0 +1,47 @@
+package com.spotibot.backend.room;
+
+import lombok.Getter;
+
+/**
+ Immutable play/pause state of a room. Every change increments the version, so clients can tell a newer
+ state from an older one. A state is unconfirmed while it was only set optimistically by a control action
+ and Spotify has not reported it back yet.
+ */
+@Getter
+public final class PlaybackState {
+    public static final PlaybackState INITIAL = new PlaybackState(false, 0, true, 0);
+
+    private final boolean playing;
+    private final long version;
+    private final boolean confirmed;
+    private final long changedAt;
+
+    private PlaybackState(boolean playing, long version, boolean confirmed, long changedAt) {
+        this.playing = playing;
+        this.version = version;
+        this.confirmed = confirmed;
+        this.changedAt = changedAt;
+    }
+
+    /**
+     Returns the optimistic state after the given control action, not yet confirmed by Spotify.
+     @param playing whether the action starts or stops the playback
+     @return the next state
+     */
+    public PlaybackState change(boolean playing) {
+        return new PlaybackState(playing, version + 1, false, System.currentTimeMillis());
+    }
+
+    /**
+     Returns the state reported by Spotify. The version only moves on if the play state differs.
+     @param playing whether Spotify reports the playback as running
+     @return the confirmed state
+     */
+    public PlaybackState confirm(boolean playing) {
+        if (this.playing == playing) {
+            return confirmed ? this : new PlaybackState(playing, version, true, changedAt);
+        }
+
+        return new PlaybackState(playing, version + 1, true, System.currentTimeMillis());
+    }
+}
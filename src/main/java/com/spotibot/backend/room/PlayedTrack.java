@@ -0,0 +1,26 @@
+package com.spotibot.backend.room;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ A track played in a room, as kept by the {@link PlaybackHistory}.
+ */
+@Getter
+@AllArgsConstructor
+public final class PlayedTrack {
+    private final String songHref;
+    private final String songName;
+    private final String artistName;
+    private final String pictureURI;
+    private final long startedAt;
+    private final boolean skipped;
+
+    /**
+     Returns this track marked as skipped.
+     @return a copy of this track with skipped set
+     */
+    PlayedTrack markSkipped() {
+        return skipped ? this : new PlayedTrack(songHref, songName, artistName, pictureURI, startedAt, true);
+    }
+}
@@ -0,0 +1,56 @@
+package com.spotibot.backend.room;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Getter;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Getter
+@JsonIgnoreProperties(value = { "userIdentifier", "voters", "round", "sequence", "heapIndex", "pushedAt", "songsStartedSincePush" })
+public class QueuedTrack {
+    private final String songHref;
+    private final String songName;
+    private final String artistName;
+    private final String pictureURI;
+    private final String userIdentifier;
+    private final Set<String> voters = ConcurrentHashMap.newKeySet();
+    private final long round;
+    private final long sequence;
+    int heapIndex = -1;
+    long pushedAt;
+    int songsStartedSincePush;
+
+    QueuedTrack(String songHref, String songName, String artistName, String pictureURI, String userIdentifier, long round, long sequence) {
+        this.songHref = songHref;
+        this.songName = songName;
+        this.artistName = artistName;
+        this.pictureURI = pictureURI;
+        this.userIdentifier = userIdentifier;
+        this.round = round;
+        this.sequence = sequence;
+    }
+
+    /**
+     Returns the number of upvotes this track has collected while waiting in the queue.
+     @return the number of upvotes
+     */
+    public int getUpvotes() {
+        return voters.size();
+    }
+
+    /**
+     Orders tracks by fair-share round first, then by upvotes (more first), then by arrival.
+     @param other the track to compare against
+     @return true if this track should be played before the other track
+     */
+    boolean isBefore(QueuedTrack other) {
+        if (round != other.round) {
+            return round < other.round;
+        }
+        if (getUpvotes() != other.getUpvotes()) {
+            return getUpvotes() > other.getUpvotes();
+        }
+        return sequence < other.sequence;
+    }
+}
@@ -1,29 +1,51 @@
 package com.spotibot.backend.room;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.spotibot.backend.PayloadWriters;
 import com.spotibot.backend.RandomStringGenerator;
+import com.spotibot.backend.SongContext;
+import com.spotibot.backend.SongContextSnapshot;
 import com.spotibot.backend.Vote;
-import lombok.AllArgsConstructor;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Getter
 @Setter
 @NoArgsConstructor
-@AllArgsConstructor
-@JsonIgnoreProperties(value = { "randomStringGenerator" })
+@JsonIgnoreProperties(value = { "randomStringGenerator", "trackQueue", "songContextSnapshot", "playbackState", "playbackHistory", "state", "stats", "skippingVotes", "voters", "songContextRefresh" })
 public class Room {
+	private static final String ANONYMOUS_VOTER = "";
+
 	private String roomIdentifier;
 	private boolean guestCanPause;
-	private boolean currentlyPlaying;
 	private int votesToSkip;
 	private LocalDateTime createdAt;
 	private String currentSong;
-	private ArrayList<Vote> voteList = new ArrayList<>();
+	@Setter(AccessLevel.NONE)
+	private List<Vote> voteList = new CopyOnWriteArrayList<>();
+	private final Set<String> voters = ConcurrentHashMap.newKeySet();
+	private final List<Vote> skippingVotes = new ArrayList<>();
+	private TrackQueue trackQueue = new TrackQueue();
+	private final PlaybackHistory playbackHistory = new PlaybackHistory();
+	private final RoomStats stats = new RoomStats();
+	private volatile SongContextSnapshot songContextSnapshot;
+	@Getter(AccessLevel.NONE)
+	private final AtomicReference<CompletableFuture<SongContextSnapshot>> songContextRefresh = new AtomicReference<>();
+	private volatile PlaybackState playbackState = PlaybackState.INITIAL;
+	private volatile RoomState state = RoomState.INITIAL;
 	public RandomStringGenerator randomStringGenerator = new RandomStringGenerator();
 
 	public Room(
@@ -36,28 +58,297 @@ public class Room {
 		this.guestCanPause = guestCanPause;
 		this.votesToSkip = votesToSkip;
 		this.setCreatedAt(LocalDateTime.now());
+		publishState();
+	}
+
+	/*
+	 The mutators below, including those of the trackQueue, the play state and the song context, are only run by the
+	 RoomEngine shard owning the room, see RoomEngine#execute, so they take no lock. Each publishes what readers on
+	 other threads see: the RoomState, the PlaybackState and the SongContextSnapshot are immutable and volatile,
+	 voters is a concurrent set maintained vote by vote.
+	 */
+
+	public void setGuestCanPause(boolean guestCanPause) {
+		this.guestCanPause = guestCanPause;
+		publishState();
+	}
+
+	public void setVotesToSkip(int votesToSkip) {
+		this.votesToSkip = votesToSkip;
+		publishState();
+	}
+
+	public void setCurrentSong(String currentSong) {
+		this.currentSong = currentSong;
+		publishState();
+	}
+
+	/**
+	 Applies new room settings of the host. The published SongContext carries votesToSkip, so it is expired.
+	 @param guestCanPause whether guests may pause and resume the playback
+	 @param votesToSkip the number of guest votes needed to skip a song
+	 */
+	public void updateSettings(boolean guestCanPause, int votesToSkip) {
+		this.guestCanPause = guestCanPause;
+		this.votesToSkip = votesToSkip;
+		publishState();
+		expireSongContext();
 	}
 
 	/**
 	 Removes all elements from the voteList.
 	 */
-	public void clearVoteList() { voteList.clear(); }
+	public void clearVoteList() {
+		voteList.clear();
+		voters.clear();
+		publishState();
+		expireSongContext();
+	}
 
 	/**
 	 Adds the given vote to the voteList.
 	 @param vote the vote to be added to the voteList
 	 */
-	public void addVote(Vote vote) { voteList.add(vote); }
+	public void addVote(Vote vote) {
+		voteList.add(vote);
+		voters.add(voterKey(vote.getUserIdentifier()));
+		publishState();
+		expireSongContext();
+	}
+
+	/**
+	 Counts a skip vote unless its user already voted or it was cast against another song than the current one.
+	 The vote reaching votesToSkip moves the votes aside in the same step, so of any number of concurrent votes
+	 exactly one per threshold crossing leads to a skip. The caller ends the skip with {@link #completeSkip(String)}
+	 or, if Spotify refused it, {@link #abortSkip()}, which counts the votes again.
+	 @param vote the vote to be counted
+	 @return the outcome of the vote
+	 */
+	public VoteOutcome castVote(Vote vote) {
+		if (!Objects.equals(vote.getSongId(), currentSong)) {
+			return VoteOutcome.STALE_SONG;
+		}
+
+		if (hasUserAlreadyVoted(vote.getUserIdentifier())) {
+			return VoteOutcome.ALREADY_VOTED;
+		}
+
+		addVote(vote);
+		stats.skipVoteCast(vote.getUserIdentifier(), vote.getSongId());
+
+		if (voteList.size() < votesToSkip) {
+			return VoteOutcome.COUNTED;
+		}
+
+		skippingVotes.addAll(voteList);
+		clearVoteList();
+		return VoteOutcome.THRESHOLD_REACHED;
+	}
+
+	/**
+	 Records a successful skip of the given track and drops the votes that led to it.
+	 @param songHref the Spotify URI of the skipped track
+	 */
+	public void completeSkip(String songHref) {
+		skippingVotes.clear();
+		recordSkip(songHref);
+	}
+
+	/**
+	 Counts the votes that reached votesToSkip again after Spotify refused the skip, except those of guests who
+	 voted again in the meantime. The next vote retries the skip.
+	 */
+	public void abortSkip() {
+		for (Vote vote : skippingVotes) {
+			if (Objects.equals(vote.getSongId(), currentSong) && !hasUserAlreadyVoted(vote.getUserIdentifier())) {
+				voteList.add(vote);
+				voters.add(voterKey(vote.getUserIdentifier()));
+			}
+		}
+
+		skippingVotes.clear();
+		publishState();
+		expireSongContext();
+	}
+
+	/**
+	 Records the track reported as playing in the playbackHistory. If it is not the latest track played in the
+	 room, the song changed: the skip votes, which were cast against the previous song, are cleared and the track is
+	 counted in the stats.
+	 @param playedTrack the playing track
+	 @return true if the song changed
+	 */
+	public boolean recordPlaying(PlayedTrack playedTrack) {
+		if (!playbackHistory.record(playedTrack)) {
+			return false;
+		}
+
+		stats.trackStarted(playedTrack);
+		clearVoteList();
+		return true;
+	}
+
+	/**
+	 Records the skip of the given track in the playbackHistory and the stats.
+	 @param songHref the Spotify URI of the skipped track
+	 */
+	public void recordSkip(String songHref) {
+		playbackHistory.markSkipped(songHref);
+		stats.trackSkipped(songHref, System.currentTimeMillis());
+	}
+
+	/**
+	 Records a track added to the trackQueue in the stats.
+	 @param queuedTrack the queued track
+	 */
+	public void recordQueued(QueuedTrack queuedTrack) {
+		stats.trackQueued(queuedTrack);
+	}
 
 	/**
 	 Returns the length of the vote list.
 	 @return the length of the vote list
 	 */
 	public Integer getVoteListLength() {
-		return voteList.size();
+		return state.getVoteCount();
+	}
+
+	private void publishState() {
+		state = new RoomState(guestCanPause, votesToSkip, currentSong, voteList.size(), Collections.unmodifiableSet(voters));
+	}
+
+	/**
+	 Returns the key a voter is known by in voters, which cannot hold null.
+	 */
+	private static String voterKey(String userIdentifier) {
+		return userIdentifier != null ? userIdentifier : ANONYMOUS_VOTER;
+	}
+
+	public boolean isCurrentlyPlaying() {
+		return playbackState.isPlaying();
+	}
+
+	public void setCurrentlyPlaying(boolean currentlyPlaying) {
+		playbackState = playbackState.confirm(currentlyPlaying);
+	}
+
+	public PlaybackState getPlaybackState() {
+		return playbackState;
+	}
+
+	/**
+	 Optimistically flips the play state before the matching request is sent to Spotify.
+	 @return the new, unconfirmed state, deciding whether to pause or resume
+	 */
+	public PlaybackState togglePlayback() {
+		playbackState = playbackState.change(!playbackState.isPlaying());
+		return playbackState;
+	}
+
+	/**
+	 Undoes a toggle Spotify refused, unless the state changed again in the meantime. Spotify kept playing or
+	 paused as before, so the reverted state counts as confirmed and is not reconciled again.
+	 @param failed the state returned by {@link #togglePlayback()}
+	 @return true if the state was reverted
+	 */
+	public boolean revertPlayback(PlaybackState failed) {
+		if (playbackState != failed) {
+			return false;
+		}
+
+		playbackState = failed.confirm(!failed.isPlaying());
+		return true;
+	}
+
+	/**
+	 Reconciles the play state with the state reported by Spotify. An unconfirmed state younger than the
+	 grace period is kept, as Spotify may not reflect the control action yet.
+	 @param playing whether Spotify reports the playback as running
+	 @param graceMillis how long an optimistic state is trusted over Spotify
+	 @return the reconciled state
+	 */
+	public PlaybackState reconcilePlayback(boolean playing, long graceMillis) {
+		PlaybackState current = playbackState;
+
+		if (!current.isConfirmed() && current.isPlaying() != playing
+				&& System.currentTimeMillis() - current.getChangedAt() < graceMillis) {
+			return current;
+		}
+
+		playbackState = current.confirm(playing);
+		return playbackState;
 	}
 
 	public boolean hasUserAlreadyVoted(String userIdentifier) {
-		return voteList.stream().anyMatch(vote -> vote.getUserIdentifier().equals(userIdentifier));
+		return voters.contains(voterKey(userIdentifier));
+	}
+
+	/**
+	 Publishes a freshly fetched SongContext. The serialized bytes of the previous snapshot are kept
+	 if nothing but the progress moved on.
+	 @param songContext the SongContext built from the latest Spotify playback state
+	 @param payloadWriters the writers to serialize the SongContext with
+	 @return the published snapshot
+	 */
+	public SongContextSnapshot publishSongContext(SongContext songContext, PayloadWriters payloadWriters) {
+		songContextSnapshot = SongContextSnapshot.next(songContextSnapshot, songContext, payloadWriters);
+		return songContextSnapshot;
+	}
+
+	/**
+	 Applies a play state to the published SongContext without asking Spotify, so guests polling the room see
+	 a control action right away. The progress is moved on to now if the song was playing until now.
+	 @param state the play state to apply
+	 */
+	public void publishPlaybackState(PlaybackState state) {
+		if (songContextSnapshot == null) {
+			return;
+		}
+
+		SongContext current = songContextSnapshot.getSongContext();
+		long now = System.currentTimeMillis();
+		long progress = current.isPlayingStatus()
+				? Math.min(current.getSongDuration(), current.getCurrentProgress() + now - current.getProgressTimestamp())
+				: current.getCurrentProgress();
+
+		songContextSnapshot = songContextSnapshot.next(new SongContext(
+				current.getSongTitle(),
+				current.getArtist(),
+				current.getSongDuration(),
+				progress,
+				now,
+				current.getCurrentImgUrl(),
+				state.isPlaying(),
+				state.getVersion(),
+				current.getCurrentVotes(),
+				current.getNeededVotesToSkip()
+		));
+	}
+
+	/**
+	 Marks the published SongContext as outdated, so the next poll fetches the playback state again.
+	 */
+	public void expireSongContext() {
+		if (songContextSnapshot != null) {
+			songContextSnapshot = songContextSnapshot.expire();
+		}
+	}
+
+	/**
+	 Claims the refresh of a stale SongContext, so the requests polling it in the meantime share one fetch from
+	 Spotify. Unlike the mutators, this is called on the request threads, the fetch itself runs outside the engine.
+	 @param refresh the future the caller completes with the refreshed snapshot and then releases
+	 @return the refresh already in flight, which the caller waits for instead, or null if the caller claimed it
+	 */
+	public CompletableFuture<SongContextSnapshot> claimSongContextRefresh(CompletableFuture<SongContextSnapshot> refresh) {
+		return songContextRefresh.compareAndExchange(null, refresh);
+	}
+
+	/**
+	 Ends a refresh claimed with {@link #claimSongContextRefresh(CompletableFuture)}.
+	 @param refresh the claimed refresh
+	 */
+	public void releaseSongContextRefresh(CompletableFuture<SongContextSnapshot> refresh) {
+		songContextRefresh.compareAndSet(refresh, null);
 	}
 }
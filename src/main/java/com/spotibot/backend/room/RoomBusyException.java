@@ -0,0 +1,15 @@
+package com.spotibot.backend.room;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ Thrown if the {@link RoomEngine} shard of a room cannot take or run a mutation in time.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class RoomBusyException extends RuntimeException {
+
+    public RoomBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,17 @@
+package com.spotibot.backend.room;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(RoomEngineProperties.class)
+public class RoomConfiguration {
+
+    @Bean
+    public RoomEngine roomEngine(RoomEngineProperties roomEngineProperties, MeterRegistry meterRegistry)
+    {
+        return new RoomEngine(roomEngineProperties, meterRegistry);
+    }
+}
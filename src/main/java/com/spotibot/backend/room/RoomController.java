@@ -2,9 +2,9 @@ package com.spotibot.backend.room;
 
 import com.spotibot.backend.DataManagement;
 import com.spotibot.backend.RandomStringGenerator;
+import com.spotibot.backend.UserIdentifiers;
 import com.spotibot.backend.UserSession;
 import jakarta.servlet.http.HttpServletRequest;
-import jakarta.servlet.http.HttpSession;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.http.MediaType;
@@ -18,9 +18,15 @@ import java.util.Optional;
 
 @RestController
 @RequestMapping("/room")
-@CrossOrigin(origins = "http://localhost:4200", allowCredentials = "true")
+@CrossOrigin(origins = "http://localhost:4200", allowCredentials = "true", maxAge = 7200)
 public class RoomController {
     private final RandomStringGenerator randomStringGenerator = new RandomStringGenerator();
+    private final RoomEngine roomEngine;
+
+    public RoomController(RoomEngine roomEngine)
+    {
+        this.roomEngine = roomEngine;
+    }
 
     /**
      * Creates a new room or updates an existing room with the provided Room details.
@@ -32,30 +38,32 @@ public class RoomController {
      *         The response may include one of the following HTTP statuses:
      *         - HttpStatus.OK (200) if the room is successfully created or updated.
      *         - HttpStatus.INTERNAL_SERVER_ERROR (500) if an internal error occurs during the process of creating or updating the room.
+     *         - HttpStatus.SERVICE_UNAVAILABLE (503) if the room engine could not apply the new settings in time.
      *
      * @see Room
-     * @see DataManagement#userSessionCache
+     * @see DataManagement#createUserSession(String, java.util.function.Supplier, java.util.function.Function)
      * @see UserSession
-     * @see #checkOrCreateUserIdentifierInSession(HttpServletRequest)
+     * @see UserIdentifiers#checkOrCreateUserIdentifierInSession(HttpServletRequest)
      * @see RandomStringGenerator#generateRandomIdentifier(int)
+     * @see Room#updateSettings(boolean, int)
      */
     @PostMapping(path = "/create_room", consumes = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<Object> createRoom(HttpServletRequest request, @RequestBody Room createdRoom)
     {
-        String userIdentifier = checkOrCreateUserIdentifierInSession(request);
+        String userIdentifier = UserIdentifiers.checkOrCreateUserIdentifierInSession(request);
         UserSession userSession = DataManagement.userSessionCache.get(userIdentifier);
 
         if (userSession == null)
         {
-            userSession = new UserSession();
-            Room room = new Room(randomStringGenerator.generateRandomIdentifier(5), true, createdRoom.isGuestCanPause(), createdRoom.getVotesToSkip());
-            userSession.setUserRoom(room);
-            DataManagement.userSessionCache.put(userIdentifier, userSession);
+            userSession = DataManagement.createUserSession(
+                    userIdentifier,
+                    () -> randomStringGenerator.generateRandomIdentifier(5),
+                    roomIdentifier -> new Room(roomIdentifier, true, createdRoom.isGuestCanPause(), createdRoom.getVotesToSkip()));
         }
         else
         {
-            userSession.getUserRoom().setVotesToSkip(createdRoom.getVotesToSkip());
-            userSession.getUserRoom().setGuestCanPause(createdRoom.isGuestCanPause());
+            Room room = userSession.getUserRoom();
+            roomEngine.run(room.getRoomIdentifier(), () -> room.updateSettings(createdRoom.isGuestCanPause(), createdRoom.getVotesToSkip()));
         }
 
         return ResponseEntity.status(HttpStatus.OK).body(userSession.getUserRoom());
@@ -74,12 +82,12 @@ public class RoomController {
      * @see DataManagement#userSessionCache
      * @see UserSession
      * @see Room
-     * @see #checkOrCreateUserIdentifierInSession(HttpServletRequest)
+     * @see UserIdentifiers#checkOrCreateUserIdentifierInSession(HttpServletRequest)
      */
     @GetMapping(path = "/check-if-user-has-room")
     public ResponseEntity<Room> checkIfUserHasRoom(HttpServletRequest request)
     {
-        String userIdentifier = checkOrCreateUserIdentifierInSession(request);
+        String userIdentifier = UserIdentifiers.checkOrCreateUserIdentifierInSession(request);
         UserSession userSession = DataManagement.userSessionCache.get(userIdentifier);
 
         if (userSession == null)
@@ -104,12 +112,12 @@ public class RoomController {
      *         - HttpStatus.NOT_FOUND (404) if the user's session is not found or the specified room does not exist.
      *
      * @see DataManagement#getMatchingEntry(String)
-     * @see #checkOrCreateUserIdentifierInSession(HttpServletRequest)
+     * @see UserIdentifiers#checkOrCreateUserIdentifierInSession(HttpServletRequest)
      */
     @GetMapping(path = "/check-room-owner")
     public ResponseEntity<Boolean> checkRoomOwner(HttpServletRequest request, @RequestParam("roomIdentifier") String roomIdentifier)
     {
-        String userIdentifier = checkOrCreateUserIdentifierInSession(request);
+        String userIdentifier = UserIdentifiers.checkOrCreateUserIdentifierInSession(request);
         Optional<Map.Entry<String, UserSession>> userEntry = DataManagement.getMatchingEntry(roomIdentifier);
 
         return userEntry.map(stringUserSessionEntry -> ResponseEntity.ok().body(stringUserSessionEntry.getKey().equals(userIdentifier))).orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).build());
@@ -129,17 +137,55 @@ public class RoomController {
      *
      * @see DataManagement#getMatchingUserSession(String)
      * @see Room
-     * @see #checkOrCreateUserIdentifierInSession(HttpServletRequest)
+     * @see UserIdentifiers#checkOrCreateUserIdentifierInSession(HttpServletRequest)
      */
     @GetMapping(path = "/get_room")
     public ResponseEntity<Object> getRoom(HttpServletRequest request, @RequestParam String roomIdentifier)
     {
-        checkOrCreateUserIdentifierInSession(request);
+        UserIdentifiers.checkOrCreateUserIdentifierInSession(request);
         Optional<UserSession> matchingUserSession = DataManagement.getMatchingUserSession(roomIdentifier);
 
         return matchingUserSession.<ResponseEntity<Object>>map(userSession -> ResponseEntity.ok(userSession.getUserRoom())).orElseGet(() -> ResponseEntity.notFound().build());
     }
 
+    /**
+     * Retrieves the running stats of the room associated with the specified room identifier: skip rate and time-to-skip,
+     * the most skipped tracks, and the skip votes and queued tracks of the most active guests.
+     * The stats are maintained while the room is used, so nothing is recomputed for the request.
+     * They name guests by their userIdentifier, which is their session credential, so only the host may read them.
+     * This method is accessed via HTTP GET at the path "/stats".
+     *
+     * @param request The HttpServletRequest object representing the incoming HTTP request.
+     * @param roomIdentifier The unique identifier for the room to retrieve the stats of.
+     * @param limit The maximum number of tracks and of guests to return.
+     * @return ResponseEntity containing the RoomStatsSnapshot of the room.
+     *         The response may include one of the following HTTP statuses:
+     *         - HttpStatus.OK (200) if the room is found and the response body contains its stats.
+     *         - HttpStatus.NOT_FOUND (404) if the specified room does not exist.
+     *         - HttpStatus.FORBIDDEN (403) if the user is not the owner of the room.
+     *
+     * @see DataManagement#getMatchingEntry(String)
+     * @see RoomStats#snapshot(int, long)
+     * @see UserIdentifiers#checkOrCreateUserIdentifierInSession(HttpServletRequest)
+     */
+    @GetMapping(path = "/stats")
+    public ResponseEntity<RoomStatsSnapshot> getRoomStats(HttpServletRequest request, @RequestParam String roomIdentifier, @RequestParam(value = "limit", defaultValue = "10") int limit)
+    {
+        String userIdentifier = UserIdentifiers.checkOrCreateUserIdentifierInSession(request);
+        Optional<Map.Entry<String, UserSession>> matchingUserSession = DataManagement.getMatchingEntry(roomIdentifier);
+
+        if (matchingUserSession.isEmpty())
+        {
+            return ResponseEntity.notFound().build();
+        }
+        else if (!Objects.equals(userIdentifier, matchingUserSession.get().getKey()))
+        {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        return ResponseEntity.ok(matchingUserSession.get().getValue().getUserRoom().getStats().snapshot(limit, System.currentTimeMillis()));
+    }
+
     /**
      * Allows a user to leave the room associated with the specified room identifier.
      * This method is accessed via HTTP GET at the path "/leave_room".
@@ -153,13 +199,13 @@ public class RoomController {
      *         - HttpStatus.FORBIDDEN (403) if the user is not the owner of the room and not authorized to leave it.
      *
      * @see DataManagement#getMatchingEntry(String)
-     * @see DataManagement#userSessionCache
-     * @see #checkOrCreateUserIdentifierInSession(HttpServletRequest)
+     * @see DataManagement#removeUserSession(String)
+     * @see UserIdentifiers#checkOrCreateUserIdentifierInSession(HttpServletRequest)
      */
     @GetMapping(path = "/leave_room")
     public ResponseEntity<Object> leaveRoom(HttpServletRequest request, @RequestParam String roomIdentifier)
     {
-        String userIdentifier = checkOrCreateUserIdentifierInSession(request);
+        String userIdentifier = UserIdentifiers.checkOrCreateUserIdentifierInSession(request);
         Optional<Map.Entry<String, UserSession>> matchingUserSession = DataManagement.getMatchingEntry(roomIdentifier);
 
         if (matchingUserSession.isEmpty())
@@ -172,29 +218,8 @@ public class RoomController {
 
         }
 
-        DataManagement.userSessionCache.remove(userIdentifier);
+        DataManagement.removeUserSession(userIdentifier);
         return ResponseEntity.ok().build();
     }
 
-    private String checkOrCreateUserIdentifierInSession(HttpServletRequest request)
-    {
-        HttpSession httpSession = request.getSession();
-        String userIdentifier = (String) httpSession.getAttribute("userIdentifier");
-
-        if (userIdentifier == null || userIdentifier.isEmpty())
-        {
-            return bindUserIdentifierToSession(httpSession);
-        }
-
-        return userIdentifier;
-    }
-
-    private String bindUserIdentifierToSession(HttpSession httpSession)
-    {
-        String randomUserIdentifier = randomStringGenerator.generateRandomIdentifier(10);
-        httpSession.setAttribute("userIdentifier", randomUserIdentifier);
-
-        return randomUserIdentifier;
-    }
-
 }
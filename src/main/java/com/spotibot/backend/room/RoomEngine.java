@@ -0,0 +1,206 @@
+package com.spotibot.backend.room;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ Runs all mutations of a room on one thread. Rooms are hashed by roomIdentifier onto a fixed number of shards, each
+ a single thread draining a bounded mailbox that any request thread may post to. Mutations of one room therefore
+ run one after the other in the order they were posted, without contending for the room, while different shards
+ run in parallel. Readers don't go through the engine, they take the {@link RoomState} the room published last.
+ A caller that gives up waiting cancels its mutation if the shard did not start it yet, so a mutation answered
+ with 503 never runs later. One the shard already started is waited for, as it is bound to finish soon.
+ */
+public class RoomEngine implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(RoomEngine.class);
+
+    private final Shard[] shards;
+    private final long awaitTimeoutNanos;
+    private final Counter rejections;
+
+    public RoomEngine(RoomEngineProperties properties, MeterRegistry meterRegistry) {
+        int shardCount = properties.getShards() > 0 ? properties.getShards() : Runtime.getRuntime().availableProcessors();
+
+        this.shards = new Shard[shardCount];
+        this.awaitTimeoutNanos = properties.getAwaitTimeout().toNanos();
+        this.rejections = meterRegistry.counter("spotibot.room-engine.rejected");
+
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i, properties.getMailboxCapacity());
+            Gauge.builder("spotibot.room-engine.mailbox", shards[i].mailbox, BlockingQueue::size)
+                    .description("Room mutations waiting for their shard")
+                    .tag("shard", String.valueOf(i))
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     Posts a mutation to the shard of the room.
+     @param roomIdentifier the room the mutation changes
+     @param mutation the mutation, run on the shard's thread
+     @return a future completed with the result of the mutation, or with a RoomBusyException if the mailbox is full.
+     Cancelling it before the shard started the mutation drops the mutation.
+     */
+    public <T> CompletableFuture<T> submit(String roomIdentifier, Supplier<T> mutation) {
+        return post(roomIdentifier, mutation).result;
+    }
+
+    /**
+     Runs a mutation on the shard of the room and waits for its result. A mutation posted from the shard's own
+     thread is run right away.
+     @param roomIdentifier the room the mutation changes
+     @param mutation the mutation, run on the shard's thread
+     @return the result of the mutation
+     @throws RoomBusyException if the mailbox is full or the mutation did not start within the await timeout, in
+     which case it never runs
+     */
+    public <T> T execute(String roomIdentifier, Supplier<T> mutation) {
+        if (Thread.currentThread() == shardOf(roomIdentifier).thread) {
+            return mutation.get();
+        }
+
+        Task<T> task = post(roomIdentifier, mutation);
+
+        try {
+            task.result.get(awaitTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            if (task.cancel()) {
+                rejections.increment();
+                throw new RoomBusyException("Room " + roomIdentifier + " did not run the mutation in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (task.cancel()) {
+                throw new RoomBusyException("Interrupted while waiting for room " + roomIdentifier);
+            }
+        } catch (ExecutionException e) {
+            // Rethrown by join below
+        }
+
+        // The mutation ran or is running, so its outcome is the answer
+        try {
+            return task.result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     Like {@link #execute(String, Supplier)}, for mutations without result.
+     @param roomIdentifier the room the mutation changes
+     @param mutation the mutation, run on the shard's thread
+     */
+    public void run(String roomIdentifier, Runnable mutation) {
+        execute(roomIdentifier, () -> {
+            mutation.run();
+            return null;
+        });
+    }
+
+    @Override
+    public void close() {
+        for (Shard shard : shards) {
+            shard.thread.interrupt();
+        }
+    }
+
+    private <T> Task<T> post(String roomIdentifier, Supplier<T> mutation) {
+        Shard shard = shardOf(roomIdentifier);
+        Task<T> task = new Task<>(mutation);
+
+        if (!shard.mailbox.offer(task)) {
+            rejections.increment();
+            task.result.completeExceptionally(new RoomBusyException("Mailbox of room engine shard " + shard.index + " is full"));
+        }
+
+        return task;
+    }
+
+    private Shard shardOf(String roomIdentifier) {
+        int hash = roomIdentifier == null ? 0 : roomIdentifier.hashCode() * 0x9E3779B9;
+        return shards[Math.floorMod(hash ^ (hash >>> 16), shards.length)];
+    }
+
+    /**
+     A posted mutation. Either the shard starts it or the caller cancels it, never both.
+     */
+    private static final class Task<T> implements Runnable {
+        private static final int PENDING = 0;
+        private static final int STARTED = 1;
+        private static final int CANCELLED = 2;
+
+        private final Supplier<T> mutation;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+
+        private Task(Supplier<T> mutation) {
+            this.mutation = mutation;
+        }
+
+        private boolean cancel() {
+            if (!state.compareAndSet(PENDING, CANCELLED)) {
+                return false;
+            }
+
+            result.cancel(false);
+            return true;
+        }
+
+        @Override
+        public void run() {
+            if (result.isCancelled() || !state.compareAndSet(PENDING, STARTED)) {
+                return;
+            }
+
+            try {
+                result.complete(mutation.get());
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static final class Shard implements Runnable {
+        private final int index;
+        private final BlockingQueue<Runnable> mailbox;
+        private final Thread thread;
+
+        private Shard(int index, int mailboxCapacity) {
+            this.index = index;
+            this.mailbox = new ArrayBlockingQueue<>(mailboxCapacity);
+            this.thread = new Thread(this, "room-engine-" + index);
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        @Override
+        public void run() {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    mailbox.take().run();
+                } catch (InterruptedException e) {
+                    return;
+                } catch (RuntimeException e) {
+                    logger.error("run(): Room mutation failed outside of its future.", e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.spotibot.backend.room;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ Settings of the {@link RoomEngine}. With shards set to 0 there is one shard per available processor.
+ A mutation that does not fit into the mailbox of its shard, or is not started within awaitTimeout, is dropped
+ and answered with 503.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "spotibot.room-engine")
+public class RoomEngineProperties {
+    private int shards = 0;
+    private int mailboxCapacity = 4096;
+    private Duration awaitTimeout = Duration.ofSeconds(2);
+}
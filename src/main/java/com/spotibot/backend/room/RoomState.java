@@ -0,0 +1,33 @@
+package com.spotibot.backend.room;
+
+import lombok.Getter;
+
+import java.util.Set;
+
+/**
+ Immutable state of a room as published after its last mutation. Readers on any thread take the current state
+ from {@link Room#getState()} without waiting for the {@link RoomEngine} shard that owns the room. The voters are a
+ read-only view of the room's live voter set, so publishing a state does not copy them.
+ */
+@Getter
+public final class RoomState {
+    static final RoomState INITIAL = new RoomState(false, 0, null, 0, Set.of());
+
+    private final boolean guestCanPause;
+    private final int votesToSkip;
+    private final String currentSong;
+    private final int voteCount;
+    private final Set<String> voters;
+
+    RoomState(boolean guestCanPause, int votesToSkip, String currentSong, int voteCount, Set<String> voters) {
+        this.guestCanPause = guestCanPause;
+        this.votesToSkip = votesToSkip;
+        this.currentSong = currentSong;
+        this.voteCount = voteCount;
+        this.voters = voters;
+    }
+
+    public boolean hasVoted(String userIdentifier) {
+        return userIdentifier != null && voters.contains(userIdentifier);
+    }
+}
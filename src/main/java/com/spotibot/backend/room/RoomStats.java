@@ -0,0 +1,220 @@
+package com.spotibot.backend.room;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ Running aggregates of a room: plays, skips and time-to-skip per track, skip votes and queued tracks per guest,
+ and the time listened. Each event updates a few counters in constant time, so the stats never rescan the
+ playback history, which only keeps the latest tracks anyway. Tracks and guests are held in maps bounded to
+ {@link #MAX_TRACKS} and {@link #MAX_GUESTS} entries that evict the least recently active one; the counts of an
+ evicted entry stay in the room's totals.
+ Guests are known by a handle hashed from their userIdentifier with a salt of the room, so the stats tell guests
+ apart without revealing the identifiers their sessions are bound to.
+ Events are recorded on the RoomEngine shard of the room; the monitor only keeps snapshots consistent.
+ */
+public class RoomStats {
+    public static final int MAX_TRACKS = 256;
+    public static final int MAX_GUESTS = 256;
+    private static final int HANDLE_BYTES = 6;
+    private static final SecureRandom secureRandom = new SecureRandom();
+
+    private final Map<String, TrackCounts> tracks = bounded(MAX_TRACKS);
+    private final Map<String, GuestCounts> guests = bounded(MAX_GUESTS);
+    private final byte[] salt = salt();
+    private final MessageDigest digest = sha256();
+
+    private long tracksPlayed;
+    private long skips;
+    private long skipVotes;
+    private long tracksQueued;
+    private long listeningMillis;
+    private long timedSkips;
+    private long timeToSkipMillis;
+    private long maxTimeToSkipMillis;
+
+    private PlayedTrack currentTrack;
+    private boolean currentTrackSkipped;
+
+    /**
+     Records a track starting to play. The time since the previous track started is added to the listening time.
+     @param playedTrack the track, as recorded in the playback history
+     */
+    public synchronized void trackStarted(PlayedTrack playedTrack) {
+        if (currentTrack != null) {
+            listeningMillis += Math.max(0, playedTrack.getStartedAt() - currentTrack.getStartedAt());
+        }
+
+        currentTrack = playedTrack;
+        currentTrackSkipped = false;
+        tracksPlayed++;
+        track(playedTrack.getSongHref(), playedTrack.getSongName(), playedTrack.getArtistName()).plays++;
+    }
+
+    /**
+     Records a skip. The time-to-skip is only known if the skipped track is the one that started last, and a
+     track is counted as skipped once per play.
+     @param songHref the Spotify URI of the skipped track
+     @param skippedAt the time of the skip in epoch milliseconds
+     */
+    public synchronized void trackSkipped(String songHref, long skippedAt) {
+        if (songHref == null) {
+            return;
+        }
+
+        boolean current = currentTrack != null && currentTrack.getSongHref().equals(songHref);
+        if (current && currentTrackSkipped) {
+            return;
+        }
+
+        TrackCounts trackCounts = track(songHref, null, null);
+        skips++;
+        trackCounts.skips++;
+
+        if (current) {
+            long timeToSkip = Math.max(0, skippedAt - currentTrack.getStartedAt());
+            currentTrackSkipped = true;
+            timedSkips++;
+            timeToSkipMillis += timeToSkip;
+            maxTimeToSkipMillis = Math.max(maxTimeToSkipMillis, timeToSkip);
+            trackCounts.timedSkips++;
+            trackCounts.timeToSkipMillis += timeToSkip;
+        }
+    }
+
+    /**
+     Records a counted skip vote.
+     @param userIdentifier the voting guest
+     @param songHref the Spotify URI of the track voted against, may be null if no track was recorded yet
+     */
+    public synchronized void skipVoteCast(String userIdentifier, String songHref) {
+        skipVotes++;
+        guest(userIdentifier).skipVotes++;
+
+        if (songHref != null) {
+            track(songHref, null, null).skipVotes++;
+        }
+    }
+
+    /**
+     Records a track added to the room's queue.
+     @param queuedTrack the queued track
+     */
+    public synchronized void trackQueued(QueuedTrack queuedTrack) {
+        tracksQueued++;
+        guest(queuedTrack.getUserIdentifier()).tracksQueued++;
+        track(queuedTrack.getSongHref(), queuedTrack.getSongName(), queuedTrack.getArtistName()).timesQueued++;
+    }
+
+    /**
+     Returns the current aggregates. The listening time includes the track playing right now.
+     @param limit the maximum number of tracks and of guests to return
+     @param now the current time in epoch milliseconds
+     @return the aggregates, with the most skipped tracks and the most active guests first
+     */
+    public synchronized RoomStatsSnapshot snapshot(int limit, long now) {
+        int count = Math.max(limit, 0);
+
+        List<RoomStatsSnapshot.TrackStats> topTracks = tracks.entrySet().stream()
+                .map(entry -> entry.getValue().toStats(entry.getKey()))
+                .sorted(Comparator.comparingLong(RoomStatsSnapshot.TrackStats::getSkips)
+                        .thenComparingLong(RoomStatsSnapshot.TrackStats::getSkipVotes)
+                        .thenComparingLong(RoomStatsSnapshot.TrackStats::getPlays)
+                        .reversed())
+                .limit(count)
+                .toList();
+
+        List<RoomStatsSnapshot.GuestStats> topGuests = guests.entrySet().stream()
+                .map(entry -> new RoomStatsSnapshot.GuestStats(entry.getKey(), entry.getValue().skipVotes, entry.getValue().tracksQueued))
+                .sorted(Comparator.comparingLong((RoomStatsSnapshot.GuestStats guestStats) -> guestStats.getSkipVotes() + guestStats.getTracksQueued()).reversed())
+                .limit(count)
+                .toList();
+
+        long listening = listeningMillis + (currentTrack == null ? 0 : Math.max(0, now - currentTrack.getStartedAt()));
+
+        return new RoomStatsSnapshot(
+                tracksPlayed,
+                skips,
+                tracksPlayed == 0 ? 0 : (double) skips / tracksPlayed,
+                timedSkips == 0 ? 0 : timeToSkipMillis / timedSkips,
+                maxTimeToSkipMillis,
+                skipVotes,
+                tracksQueued,
+                listening,
+                topTracks,
+                topGuests
+        );
+    }
+
+    private TrackCounts track(String songHref, String songName, String artistName) {
+        TrackCounts trackCounts = tracks.computeIfAbsent(songHref, key -> new TrackCounts());
+
+        if (songName != null) {
+            trackCounts.songName = songName;
+            trackCounts.artistName = artistName;
+        }
+
+        return trackCounts;
+    }
+
+    private GuestCounts guest(String userIdentifier) {
+        return guests.computeIfAbsent(handle(userIdentifier == null ? "" : userIdentifier), key -> new GuestCounts());
+    }
+
+    private String handle(String userIdentifier) {
+        digest.update(salt);
+        byte[] hash = digest.digest(userIdentifier.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(hash, 0, HANDLE_BYTES);
+    }
+
+    private static byte[] salt() {
+        byte[] salt = new byte[16];
+        secureRandom.nextBytes(salt);
+        return salt;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static <V> Map<String, V> bounded(int capacity) {
+        return new LinkedHashMap<>(capacity * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    private static final class TrackCounts {
+        private String songName;
+        private String artistName;
+        private long plays;
+        private long skips;
+        private long skipVotes;
+        private long timesQueued;
+        private long timedSkips;
+        private long timeToSkipMillis;
+
+        private RoomStatsSnapshot.TrackStats toStats(String songHref) {
+            return new RoomStatsSnapshot.TrackStats(songHref, songName, artistName, plays, skips, skipVotes, timesQueued,
+                    timedSkips == 0 ? 0 : timeToSkipMillis / timedSkips);
+        }
+    }
+
+    private static final class GuestCounts {
+        private long skipVotes;
+        private long tracksQueued;
+    }
+}
@@ -0,0 +1,49 @@
+package com.spotibot.backend.room;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ The aggregates of a room at one point in time, as returned by {@link RoomStats#snapshot(int, long)}.
+ Times are in milliseconds.
+ */
+@Getter
+@AllArgsConstructor
+public final class RoomStatsSnapshot {
+    private final long tracksPlayed;
+    private final long skips;
+    private final double skipRate;
+    private final long meanTimeToSkipMillis;
+    private final long maxTimeToSkipMillis;
+    private final long skipVotes;
+    private final long tracksQueued;
+    private final long listeningMillis;
+    private final List<TrackStats> tracks;
+    private final List<GuestStats> guests;
+
+    @Getter
+    @AllArgsConstructor
+    public static final class TrackStats {
+        private final String songHref;
+        private final String songName;
+        private final String artistName;
+        private final long plays;
+        private final long skips;
+        private final long skipVotes;
+        private final long timesQueued;
+        private final long meanTimeToSkipMillis;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static final class GuestStats {
+        /**
+         The guest's handle, see {@link RoomStats}.
+         */
+        private final String guest;
+        private final long skipVotes;
+        private final long tracksQueued;
+    }
+}
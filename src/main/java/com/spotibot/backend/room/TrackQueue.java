@@ -0,0 +1,249 @@
+package com.spotibot.backend.room;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ In-memory song queue of a room.
+ Tracks are scheduled round-robin across guests: the n-th pending track of a guest is placed in round n,
+ so one guest can never push the tracks of others back by queueing many songs. Inside a round, tracks
+ are ordered by upvotes and then by arrival. The pending tracks are kept in an indexed binary heap so that
+ an upvote only has to sift the voted track instead of re-sorting the whole queue.
+ Only the first {@link #PUSH_AHEAD} tracks are handed to Spotify, the rest stays here until it is due.
+ A pushed track leaves the queue when it starts playing. Spotify may drop it from its queue or the host may
+ play something else, so a pushed track is also given up once more than PUSH_AHEAD other songs started since
+ it was pushed, or after {@link #PUSHED_TRACK_MAX_AGE_MS}, and the next tracks are pushed instead.
+ The queue is not thread-safe: it is only used by the {@link RoomEngine} shard owning its room.
+ */
+public class TrackQueue {
+    public static final int PUSH_AHEAD = 2;
+    public static final long PUSHED_TRACK_MAX_AGE_MS = 20 * 60 * 1000;
+
+    private final List<QueuedTrack> heap = new ArrayList<>();
+    private final Map<String, QueuedTrack> pendingTracks = new HashMap<>();
+    private final Map<String, Long> lastRoundOfUser = new HashMap<>();
+    private final Deque<QueuedTrack> pushedTracks = new ArrayDeque<>();
+    private final LongSupplier clock;
+    private long currentRound;
+    private long sequence;
+    private String playingSongHref;
+
+    public TrackQueue() {
+        this(System::currentTimeMillis);
+    }
+
+    TrackQueue(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     Adds a track to the queue of the given user.
+     @param userIdentifier the user who requested the track
+     @param songHref the Spotify URI of the track
+     @param songName the name of the track, may be null
+     @param artistName the artist of the track, may be null
+     @param pictureURI the artwork of the track, may be null
+     @return the queued track, or null if the track is already waiting in the queue
+     */
+    public QueuedTrack enqueue(String userIdentifier, String songHref, String songName, String artistName, String pictureURI) {
+        if (pendingTracks.containsKey(songHref)) {
+            return null;
+        }
+
+        long round = Math.max(currentRound, lastRoundOfUser.getOrDefault(userIdentifier, currentRound - 1) + 1);
+        lastRoundOfUser.put(userIdentifier, round);
+
+        QueuedTrack queuedTrack = new QueuedTrack(songHref, songName, artistName, pictureURI, userIdentifier, round, sequence++);
+        pendingTracks.put(songHref, queuedTrack);
+        queuedTrack.heapIndex = heap.size();
+        heap.add(queuedTrack);
+        siftUp(queuedTrack.heapIndex);
+
+        return queuedTrack;
+    }
+
+    /**
+     Upvotes a pending track. Every user can upvote a track once.
+     @param userIdentifier the user who upvotes the track
+     @param songHref the Spotify URI of the track
+     @return true if the vote was counted, false if the track is not pending or the user already voted
+     */
+    public boolean upvote(String userIdentifier, String songHref) {
+        QueuedTrack queuedTrack = pendingTracks.get(songHref);
+
+        if (queuedTrack == null || !queuedTrack.getVoters().add(userIdentifier)) {
+            return false;
+        }
+
+        siftUp(queuedTrack.heapIndex);
+        return true;
+    }
+
+    /**
+     Takes the tracks that have to be handed to Spotify now, so that at most {@link #PUSH_AHEAD}
+     of our tracks are waiting in the Spotify queue at any time. Pushed tracks older than
+     {@link #PUSHED_TRACK_MAX_AGE_MS} are given up first.
+     @return the tracks to add to the Spotify playback queue, in order
+     */
+    public List<QueuedTrack> takeTracksToPush() {
+        long now = clock.getAsLong();
+        pushedTracks.removeIf(pushed -> now - pushed.pushedAt > PUSHED_TRACK_MAX_AGE_MS);
+
+        List<QueuedTrack> tracksToPush = new ArrayList<>();
+
+        while (pushedTracks.size() < PUSH_AHEAD && !heap.isEmpty()) {
+            QueuedTrack next = removeAt(0);
+            advanceRound(next.getRound());
+            next.pushedAt = now;
+            next.songsStartedSincePush = 0;
+            pushedTracks.addLast(next);
+            tracksToPush.add(next);
+        }
+
+        return tracksToPush;
+    }
+
+    /**
+     Drops a pushed track that Spotify refused for good, e.g. because the track does not exist.
+     @param queuedTrack the refused track
+     */
+    public void discard(QueuedTrack queuedTrack) {
+        pushedTracks.remove(queuedTrack);
+    }
+
+    /**
+     Puts a track back into the queue after Spotify refused it.
+     @param queuedTrack the track that could not be pushed
+     */
+    public void restore(QueuedTrack queuedTrack) {
+        if (!pushedTracks.remove(queuedTrack) || pendingTracks.containsKey(queuedTrack.getSongHref())) {
+            return;
+        }
+
+        pendingTracks.put(queuedTrack.getSongHref(), queuedTrack);
+        queuedTrack.heapIndex = heap.size();
+        heap.add(queuedTrack);
+        siftUp(queuedTrack.heapIndex);
+    }
+
+    /**
+     Marks the given track as playing, as reported by every playback poll. If it is a pushed track, every pushed
+     track up to and including it has left the Spotify queue. Otherwise a song the room did not push started,
+     and pushed tracks passed over by more than {@link #PUSH_AHEAD} such songs are given up.
+     @param songHref the Spotify URI of the currently playing track
+     */
+    public void markPlaying(String songHref) {
+        if (songHref == null || songHref.equals(playingSongHref)) {
+            return;
+        }
+        playingSongHref = songHref;
+
+        if (pushedTracks.stream().noneMatch(track -> track.getSongHref().equals(songHref))) {
+            pushedTracks.removeIf(pushed -> ++pushed.songsStartedSincePush > PUSH_AHEAD);
+            return;
+        }
+
+        Iterator<QueuedTrack> iterator = pushedTracks.iterator();
+        while (iterator.hasNext()) {
+            QueuedTrack pushed = iterator.next();
+            iterator.remove();
+            if (pushed.getSongHref().equals(songHref)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     Returns the tracks in the order they will be played, starting with the ones already handed to Spotify.
+     @return a copy of the queue
+     */
+    public List<QueuedTrack> getTracks() {
+        List<QueuedTrack> pending = new ArrayList<>(heap);
+        pending.sort((first, second) -> first.isBefore(second) ? -1 : 1);
+
+        List<QueuedTrack> tracks = new ArrayList<>(pushedTracks);
+        tracks.addAll(pending);
+        return tracks;
+    }
+
+    public int size() {
+        return heap.size() + pushedTracks.size();
+    }
+
+    int trackedUsers() {
+        return lastRoundOfUser.size();
+    }
+
+    /**
+     Moves the queue to the given round. Users whose last track is in an earlier round are placed in the
+     current round by {@link #enqueue} anyway, so their entries are dropped.
+     */
+    private void advanceRound(long round) {
+        if (round > currentRound) {
+            currentRound = round;
+            lastRoundOfUser.values().removeIf(lastRound -> lastRound < currentRound);
+        }
+    }
+
+    private QueuedTrack removeAt(int index) {
+        QueuedTrack removed = heap.get(index);
+        QueuedTrack last = heap.remove(heap.size() - 1);
+
+        if (index < heap.size()) {
+            heap.set(index, last);
+            last.heapIndex = index;
+            siftDown(index);
+            siftUp(last.heapIndex);
+        }
+
+        removed.heapIndex = -1;
+        pendingTracks.remove(removed.getSongHref());
+        return removed;
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (!heap.get(index).isBefore(heap.get(parent))) {
+                return;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int left = 2 * index + 1;
+            int right = left + 1;
+            int first = index;
+
+            if (left < heap.size() && heap.get(left).isBefore(heap.get(first))) {
+                first = left;
+            }
+            if (right < heap.size() && heap.get(right).isBefore(heap.get(first))) {
+                first = right;
+            }
+            if (first == index) {
+                return;
+            }
+            swap(index, first);
+            index = first;
+        }
+    }
+
+    private void swap(int first, int second) {
+        QueuedTrack firstTrack = heap.get(first);
+        QueuedTrack secondTrack = heap.get(second);
+        heap.set(first, secondTrack);
+        heap.set(second, firstTrack);
+        firstTrack.heapIndex = second;
+        secondTrack.heapIndex = first;
+    }
+}
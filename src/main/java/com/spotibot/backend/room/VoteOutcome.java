@@ -0,0 +1,15 @@
+package com.spotibot.backend.room;
+
+/**
+ Outcome of a guest's skip vote, see {@link Room#castVote(com.spotibot.backend.Vote)}.
+ */
+public enum VoteOutcome {
+    /** The vote was cast against another song than the one playing, the vote was not counted. */
+    STALE_SONG,
+    /** The guest already voted to skip the current song, the vote was not counted. */
+    ALREADY_VOTED,
+    /** The vote was counted, the room still needs more votes to skip. */
+    COUNTED,
+    /** The vote reached the room's votesToSkip. The votes were moved aside, the caller has to skip the song. */
+    THRESHOLD_REACHED
+}
@@ -0,0 +1,49 @@
+package com.spotibot.backend.spotify;
+
+import org.apache.hc.core5.concurrent.Cancellable;
+
+/**
+ Handle to abort the upstream request a thread is about to send.
+ While a call is bound to the current thread, {@link PooledSpotifyHttpManager} registers every request it executes
+ with it, so {@link #cancel()} from another thread aborts the connection instead of waiting for the response.
+ */
+public final class CancellableCall implements Cancellable {
+    private static final ThreadLocal<CancellableCall> CURRENT = new ThreadLocal<>();
+
+    private volatile Cancellable request;
+    private volatile boolean cancelled;
+
+    public void bind() {
+        CURRENT.set(this);
+    }
+
+    public void unbind() {
+        CURRENT.remove();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public boolean cancel() {
+        cancelled = true;
+        Cancellable current = request;
+        return current == null || current.cancel();
+    }
+
+    /**
+     Registers the request with the call bound to the current thread, if any.
+     @param upstreamRequest the request about to be executed
+     */
+    static void register(Cancellable upstreamRequest) {
+        CancellableCall call = CURRENT.get();
+
+        if (call != null) {
+            call.request = upstreamRequest;
+            if (call.cancelled) {
+                upstreamRequest.cancel();
+            }
+        }
+    }
+}
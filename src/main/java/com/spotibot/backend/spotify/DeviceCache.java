@@ -0,0 +1,221 @@
+package com.spotibot.backend.spotify;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.hc.core5.http.ParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+import se.michaelthelin.spotify.model_objects.miscellaneous.Device;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ Caches the device list per Spotify token for a short time, so hosts polling /devices while picking a speaker
+ do not cause one upstream request each. Clients may also wait for the next change of the device set: while
+ anyone waits on a token, its device list is refetched once per TTL and the waiters are completed as soon as
+ a new version appears.
+ Entries are held weakly by token and disappear together with the room.
+ */
+public class DeviceCache implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(DeviceCache.class);
+
+    private final SpotifyController spotifyController;
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+    private final long ttlMillis;
+    private final ThreadPoolTaskScheduler taskScheduler;
+    private final Map<SpotifyToken, Entry> entries = Collections.synchronizedMap(new WeakHashMap<>());
+
+    DeviceCache(SpotifyController spotifyController, MeterRegistry meterRegistry, SpotifyDeviceProperties properties)
+    {
+        this.spotifyController = spotifyController;
+        this.cacheHits = meterRegistry.counter("spotibot.cache.requests", "cache", "devices", "result", "hit");
+        this.cacheMisses = meterRegistry.counter("spotibot.cache.requests", "cache", "devices", "result", "miss");
+        this.ttlMillis = properties.getTtl().toMillis();
+
+        taskScheduler = new ThreadPoolTaskScheduler();
+        taskScheduler.setPoolSize(properties.getSchedulerPoolSize());
+        taskScheduler.setThreadNamePrefix("spotify-devices-");
+        taskScheduler.setRemoveOnCancelPolicy(true);
+        taskScheduler.initialize();
+    }
+
+    /**
+     * Returns the device list of the token, fetching it from Spotify if the cached list is older than the TTL.
+     *
+     * @param spotifyToken The token of the room owner.
+     * @return The current device snapshot.
+     */
+    public DeviceSnapshot get(SpotifyToken spotifyToken) throws IOException, ParseException, SpotifyWebApiException
+    {
+        DeviceSnapshot deviceSnapshot = entry(spotifyToken).deviceSnapshot;
+
+        if (deviceSnapshot != null && deviceSnapshot.isFresh(ttlMillis))
+        {
+            cacheHits.increment();
+            return deviceSnapshot;
+        }
+
+        cacheMisses.increment();
+        return refresh(spotifyToken);
+    }
+
+    /**
+     * Waits for the device list of the token to differ from the given version.
+     *
+     * @param spotifyToken The token of the room owner.
+     * @param eTag         The ETag of the device list the client knows, null to get the current list.
+     * @return A future completed with the first snapshot of a different version. Cancelling it stops the wait.
+     */
+    public CompletableFuture<DeviceSnapshot> awaitChange(SpotifyToken spotifyToken, String eTag) throws IOException, ParseException, SpotifyWebApiException
+    {
+        DeviceSnapshot deviceSnapshot = get(spotifyToken);
+
+        if (!deviceSnapshot.matches(eTag))
+        {
+            return CompletableFuture.completedFuture(deviceSnapshot);
+        }
+
+        Entry entry = entry(spotifyToken);
+        CompletableFuture<DeviceSnapshot> waiter = new CompletableFuture<>();
+
+        synchronized (entry)
+        {
+            if (entry.deviceSnapshot != null && !entry.deviceSnapshot.matches(eTag))
+            {
+                return CompletableFuture.completedFuture(entry.deviceSnapshot);
+            }
+
+            entry.waiters.add(waiter);
+
+            if (entry.poll == null)
+            {
+                entry.poll = taskScheduler.schedule(() -> poll(spotifyToken, entry), Instant.now().plusMillis(ttlMillis));
+            }
+        }
+
+        return waiter;
+    }
+
+    /**
+     * Expires the cached device list of the token, e.g. after playback was moved to another device or failed
+     * because the device went away. Waiting clients get the refetched list right away.
+     *
+     * @param spotifyToken The token of the room owner.
+     */
+    public void invalidate(SpotifyToken spotifyToken)
+    {
+        if (spotifyToken == null)
+        {
+            return;
+        }
+
+        Entry entry = entries.get(spotifyToken);
+
+        if (entry == null)
+        {
+            return;
+        }
+
+        synchronized (entry)
+        {
+            if (entry.deviceSnapshot != null)
+            {
+                entry.deviceSnapshot = entry.deviceSnapshot.expire();
+            }
+
+            if (entry.poll != null && entry.poll.cancel(false))
+            {
+                entry.poll = taskScheduler.schedule(() -> poll(spotifyToken, entry), Instant.now());
+            }
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        taskScheduler.shutdown();
+    }
+
+    private DeviceSnapshot refresh(SpotifyToken spotifyToken) throws IOException, ParseException, SpotifyWebApiException
+    {
+        spotifyController.checkSpotifyAuthenticationStatus(spotifyToken);
+        Device[] devices = spotifyController.getDevices(spotifyToken);
+
+        Entry entry = entry(spotifyToken);
+        DeviceSnapshot deviceSnapshot;
+        List<CompletableFuture<DeviceSnapshot>> changedWaiters = List.of();
+
+        synchronized (entry)
+        {
+            DeviceSnapshot previousSnapshot = entry.deviceSnapshot;
+            deviceSnapshot = DeviceSnapshot.next(previousSnapshot, devices);
+            entry.deviceSnapshot = deviceSnapshot;
+
+            if (previousSnapshot != null && !previousSnapshot.getVersion().equals(deviceSnapshot.getVersion()))
+            {
+                changedWaiters = new ArrayList<>(entry.waiters);
+                entry.waiters.clear();
+            }
+        }
+
+        for (CompletableFuture<DeviceSnapshot> waiter : changedWaiters)
+        {
+            waiter.complete(deviceSnapshot);
+        }
+
+        return deviceSnapshot;
+    }
+
+    private void poll(SpotifyToken spotifyToken, Entry entry)
+    {
+        synchronized (entry)
+        {
+            entry.waiters.removeIf(CompletableFuture::isDone);
+
+            if (entry.waiters.isEmpty())
+            {
+                entry.poll = null;
+                return;
+            }
+        }
+
+        try
+        {
+            refresh(spotifyToken);
+        } catch (IOException | ParseException | SpotifyWebApiException e)
+        {
+            logger.warn("poll(): Error refreshing devices.", e);
+        }
+
+        synchronized (entry)
+        {
+            entry.poll = entry.waiters.isEmpty()
+                    ? null
+                    : taskScheduler.schedule(() -> poll(spotifyToken, entry), Instant.now().plusMillis(ttlMillis));
+        }
+    }
+
+    private Entry entry(SpotifyToken spotifyToken)
+    {
+        return entries.computeIfAbsent(spotifyToken, key -> new Entry());
+    }
+
+    private static final class Entry
+    {
+        private volatile DeviceSnapshot deviceSnapshot;
+        private final List<CompletableFuture<DeviceSnapshot>> waiters = new ArrayList<>();
+        private ScheduledFuture<?> poll;
+    }
+}
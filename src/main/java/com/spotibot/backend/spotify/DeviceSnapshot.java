@@ -0,0 +1,98 @@
+package com.spotibot.backend.spotify;
+
+import com.spotibot.backend.PayloadFormat;
+import lombok.Getter;
+import org.springframework.util.DigestUtils;
+import se.michaelthelin.spotify.model_objects.miscellaneous.Device;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Collectors;
+
+/**
+ Immutable device list of a Spotify account as last fetched.
+ A new version is only published if a device appeared, disappeared, was renamed or became (in)active,
+ volume changes alone keep the version. The version is a hash of the device set, so an ETag stays valid
+ across restarts and never matches a different device set.
+ */
+@Getter
+public final class DeviceSnapshot {
+    private final Device[] devices;
+    private final String fingerprint;
+    private final String version;
+    private final String eTag;
+    private final long fetchedAt;
+
+    private DeviceSnapshot(Device[] devices, String fingerprint, String version, long fetchedAt) {
+        this.devices = devices;
+        this.fingerprint = fingerprint;
+        this.version = version;
+        this.eTag = "\"d" + version + "\"";
+        this.fetchedAt = fetchedAt;
+    }
+
+    /**
+     Creates the snapshot following the given one, keeping its version if the device set did not change.
+     @param previous the current snapshot, may be null
+     @param devices the freshly fetched devices
+     @return the snapshot to publish
+     */
+    public static DeviceSnapshot next(DeviceSnapshot previous, Device[] devices) {
+        String fingerprint = fingerprint(devices);
+        long now = System.currentTimeMillis();
+
+        if (previous != null && previous.fingerprint.equals(fingerprint)) {
+            return new DeviceSnapshot(devices, fingerprint, previous.version, now);
+        }
+
+        return new DeviceSnapshot(devices, fingerprint, DigestUtils.md5DigestAsHex(fingerprint.getBytes(StandardCharsets.UTF_8)), now);
+    }
+
+    /**
+     Returns the ETag of the device list in the given format, so a cache never answers one format with the other.
+     @param format the format of the response
+     @return the quoted ETag
+     */
+    public String getETag(PayloadFormat format) {
+        return "\"d" + version + format.getETagSuffix() + "\"";
+    }
+
+    /**
+     Checks whether the given ETag identifies this device set in any format.
+     @param eTag the ETag a client sent, may be null
+     @return true if it belongs to this version
+     */
+    public boolean matches(String eTag) {
+        if (eTag == null) {
+            return false;
+        }
+
+        for (PayloadFormat format : PayloadFormat.values()) {
+            if (eTag.equals(getETag(format))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     Returns a copy of this snapshot that is due for a refetch, but still carries the same version.
+     @return the expired snapshot
+     */
+    public DeviceSnapshot expire() {
+        return new DeviceSnapshot(devices, fingerprint, version, 0);
+    }
+
+    public boolean isFresh(long ttlMillis) {
+        return System.currentTimeMillis() - fetchedAt < ttlMillis;
+    }
+
+    private static String fingerprint(Device[] devices) {
+        return Arrays.stream(devices)
+                .sorted(Comparator.comparing(Device::getId, Comparator.nullsFirst(Comparator.naturalOrder())))
+                .map(device -> device.getId() + "|" + device.getName() + "|" + device.getType() + "|" + device.getIs_active())
+                .collect(Collectors.joining(";"));
+    }
+}
@@ -0,0 +1,135 @@
+package com.spotibot.backend.spotify;
+
+import com.spotibot.backend.DataManagement;
+import com.spotibot.backend.UserSession;
+import com.spotibot.backend.room.PlaybackState;
+import org.apache.hc.core5.http.ParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ Confirms optimistic play states nobody polled the room for, by fetching the playback state of every room whose
+ last control action is older than the confirmation grace period and still unconfirmed.
+ Each run hands at most spotify.playback.reconcile-batch-size rooms, the longest unconfirmed first, to a pool of
+ spotify.playback.reconcile-pool-size threads. A room is never reconciled twice at the same time, and a failing
+ room neither stops the run nor the schedule.
+ */
+public class PlaybackReconciler implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(PlaybackReconciler.class);
+
+    private final PlaybackRefresh playbackRefresh;
+    private final long graceMillis;
+    private final int batchSize;
+    private final ThreadPoolTaskExecutor taskExecutor;
+    private final Set<String> reconciling = ConcurrentHashMap.newKeySet();
+
+    PlaybackReconciler(PlaybackRefresh playbackRefresh, SpotifyPlaybackProperties properties)
+    {
+        this.playbackRefresh = playbackRefresh;
+        this.graceMillis = properties.getConfirmGrace().toMillis();
+        this.batchSize = properties.getReconcileBatchSize();
+
+        taskExecutor = new ThreadPoolTaskExecutor();
+        taskExecutor.setCorePoolSize(properties.getReconcilePoolSize());
+        taskExecutor.setMaxPoolSize(properties.getReconcilePoolSize());
+        taskExecutor.setQueueCapacity(batchSize);
+        taskExecutor.setThreadNamePrefix("playback-reconcile-");
+        taskExecutor.initialize();
+    }
+
+    @Scheduled(fixedDelayString = "${spotify.playback.reconcile-interval-ms:5000}")
+    public void reconcileUnconfirmedPlayback()
+    {
+        reconcile(DataManagement.userSessionCache.values(), System.currentTimeMillis());
+    }
+
+    /**
+     * Submits the unconfirmed rooms of the given sessions that are due for reconciliation.
+     *
+     * @param userSessions The sessions to check.
+     * @param now          The current time in epoch milliseconds.
+     * @return The number of rooms submitted.
+     */
+    int reconcile(Collection<UserSession> userSessions, long now)
+    {
+        List<UserSession> due = userSessions.stream()
+                .filter(userSession -> isDue(userSession, now))
+                .sorted(Comparator.comparingLong(userSession -> userSession.getUserRoom().getPlaybackState().getChangedAt()))
+                .limit(batchSize)
+                .toList();
+
+        int submitted = 0;
+
+        for (UserSession userSession : due)
+        {
+            String roomIdentifier = userSession.getUserRoom().getRoomIdentifier();
+
+            if (!reconciling.add(roomIdentifier))
+            {
+                continue;
+            }
+
+            try
+            {
+                taskExecutor.execute(() -> reconcile(userSession, roomIdentifier));
+                submitted++;
+            } catch (RejectedExecutionException e)
+            {
+                // The pool is still busy with earlier rooms, the next run picks this one up again
+                reconciling.remove(roomIdentifier);
+                break;
+            }
+        }
+
+        return submitted;
+    }
+
+    @Override
+    public void close()
+    {
+        taskExecutor.shutdown();
+    }
+
+    private boolean isDue(UserSession userSession, long now)
+    {
+        PlaybackState playbackState = userSession.getUserRoom().getPlaybackState();
+
+        return userSession.getUserSpotifyToken() != null && !playbackState.isConfirmed()
+                && now - playbackState.getChangedAt() >= graceMillis;
+    }
+
+    private void reconcile(UserSession userSession, String roomIdentifier)
+    {
+        try
+        {
+            playbackRefresh.refresh(userSession);
+        } catch (IOException | ParseException | SpotifyWebApiException | RuntimeException e)
+        {
+            logger.warn("reconcile(): Error fetching playback state of room {}.", roomIdentifier, e);
+        } finally
+        {
+            reconciling.remove(roomIdentifier);
+        }
+    }
+
+    /**
+     * Fetches the playback state of a room from Spotify and reconciles the room's play state with it.
+     */
+    @FunctionalInterface
+    interface PlaybackRefresh
+    {
+        void refresh(UserSession userSession) throws IOException, ParseException, SpotifyWebApiException;
+    }
+}
@@ -0,0 +1,192 @@
+package com.spotibot.backend.spotify;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import lombok.Getter;
+import org.apache.hc.client5.http.classic.methods.HttpDelete;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.client5.http.classic.methods.HttpPut;
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.ParseException;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import se.michaelthelin.spotify.IHttpManager;
+import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+import se.michaelthelin.spotify.exceptions.detailed.*;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ IHttpManager backed by one shared, pooled Apache HttpClient.
+ Unlike the library's default SpotifyHttpManager, the pool limits, timeouts and keep-alive are configurable
+ through {@link SpotifyHttpProperties}, and the connection pool is exposed for metrics.
+ Error responses are mapped to the same SpotifyWebApiException subclasses the default manager throws.
+ */
+public class PooledSpotifyHttpManager implements IHttpManager, Closeable {
+    static final int DEFAULT_RETRY_AFTER_SECONDS = 5;
+
+    @Getter
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+
+    public PooledSpotifyHttpManager(SpotifyHttpProperties properties) {
+        connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(properties.getMaxConnectionsTotal())
+                .setMaxConnPerRoute(properties.getMaxConnectionsPerRoute())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(properties.getConnectTimeout()))
+                        .setSocketTimeout(Timeout.of(properties.getReadTimeout()))
+                        .setValidateAfterInactivity(TimeValue.of(properties.getValidateAfterInactivity()))
+                        .build())
+                .build();
+
+        httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(properties.getPoolAcquireTimeout()))
+                        .setResponseTimeout(Timeout.of(properties.getReadTimeout()))
+                        .setConnectionKeepAlive(TimeValue.of(properties.getKeepAlive()))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(properties.getMaxIdleTime()))
+                .disableCookieManagement()
+                .build();
+    }
+
+    @Override
+    public String get(URI uri, Header[] headers) throws IOException, SpotifyWebApiException, ParseException {
+        return execute(new HttpGet(uri), headers, null);
+    }
+
+    @Override
+    public String post(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException, ParseException {
+        return execute(new HttpPost(uri), headers, body);
+    }
+
+    @Override
+    public String put(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException, ParseException {
+        return execute(new HttpPut(uri), headers, body);
+    }
+
+    @Override
+    public String delete(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException, ParseException {
+        return execute(new HttpDelete(uri), headers, body);
+    }
+
+    @Override
+    public void close() throws IOException {
+        httpClient.close();
+    }
+
+    private String execute(HttpUriRequestBase request, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException, ParseException {
+        request.setHeaders(headers);
+        if (body != null) {
+            request.setEntity(body);
+        }
+        CancellableCall.register(request);
+
+        try (CloseableHttpResponse response = httpClient.execute(request)) {
+            String responseBody = response.getEntity() != null
+                    ? EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8)
+                    : null;
+
+            throwOnError(response, responseBody);
+            return responseBody;
+        }
+    }
+
+    private void throwOnError(CloseableHttpResponse response, String responseBody) throws SpotifyWebApiException {
+        if (response.getCode() < 400) {
+            return;
+        }
+
+        String errorMessage = getErrorMessage(responseBody, response.getReasonPhrase());
+
+        switch (response.getCode()) {
+            case 400 -> throw new BadRequestException(errorMessage);
+            case 401 -> throw new UnauthorizedException(errorMessage);
+            case 403 -> throw new ForbiddenException(errorMessage);
+            case 404 -> throw new NotFoundException(errorMessage);
+            case 429 -> {
+                Header retryAfter = response.getFirstHeader("Retry-After");
+                if (retryAfter != null) {
+                    throw new TooManyRequestsException(errorMessage, parseRetryAfter(retryAfter.getValue(), System.currentTimeMillis()));
+                }
+                throw new TooManyRequestsException(errorMessage);
+            }
+            case 500 -> throw new InternalServerErrorException(errorMessage);
+            case 502 -> throw new BadGatewayException(errorMessage);
+            case 503 -> throw new ServiceUnavailableException(errorMessage);
+            default -> throw new SpotifyWebApiException(errorMessage);
+        }
+    }
+
+    /**
+     Parses a Retry-After header, given either as delay in seconds or as HTTP-date. A date in the past means
+     no delay, anything else that is not a valid value the {@link #DEFAULT_RETRY_AFTER_SECONDS}.
+     @param value the header value
+     @param now the current time in epoch milliseconds
+     @return the delay in seconds
+     */
+    static int parseRetryAfter(String value, long now) {
+        String trimmed = value.trim();
+
+        try {
+            long seconds = Long.parseLong(trimmed);
+            return seconds < 0 ? DEFAULT_RETRY_AFTER_SECONDS : (int) Math.min(seconds, Integer.MAX_VALUE);
+        } catch (NumberFormatException e) {
+            // Not delay-seconds, try the HTTP-date form
+        }
+
+        try {
+            long millis = ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli() - now;
+            return (int) Math.min(Math.max(0, (millis + 999) / 1000), Integer.MAX_VALUE);
+        } catch (DateTimeParseException e) {
+            return DEFAULT_RETRY_AFTER_SECONDS;
+        }
+    }
+
+    private String getErrorMessage(String responseBody, String reasonPhrase) {
+        if (responseBody == null || responseBody.isEmpty()) {
+            return reasonPhrase;
+        }
+
+        try {
+            JsonElement json = JsonParser.parseString(responseBody);
+            if (!json.isJsonObject() || !json.getAsJsonObject().has("error")) {
+                return reasonPhrase;
+            }
+
+            JsonObject jsonObject = json.getAsJsonObject();
+            if (jsonObject.has("error_description")) {
+                return jsonObject.get("error_description").getAsString();
+            }
+            if (jsonObject.get("error").isJsonObject() && jsonObject.getAsJsonObject("error").has("message")) {
+                return jsonObject.getAsJsonObject("error").get("message").getAsString();
+            }
+        } catch (JsonSyntaxException e) {
+            return reasonPhrase;
+        }
+
+        return reasonPhrase;
+    }
+}
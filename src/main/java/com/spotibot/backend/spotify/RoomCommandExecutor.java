@@ -0,0 +1,322 @@
+package com.spotibot.backend.spotify;
+
+import com.spotibot.backend.UserSession;
+import com.spotibot.backend.room.PlaybackState;
+import com.spotibot.backend.room.Room;
+import com.spotibot.backend.room.RoomBusyException;
+import com.spotibot.backend.room.RoomEngine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.hc.core5.http.ParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ Executes the playback control commands of a room one at a time, collapsing redundant ones.
+ Commands are collected for a short window before the room's mailbox is drained by a single task, so at most one
+ upstream call per room is in flight. Within a mailbox, toggles collapse into one that is skipped entirely if
+ the play state ends up where it started, and repeated skips or rollbacks of the same song collapse into one.
+ A skip or rollback of a song that was just skipped or rolled back is dropped as well, until a playback state
+ fetched after the command shows where the playback moved on to, see {@link #playbackFetched(Room, long)}.
+ The room itself is only changed through the {@link RoomEngine}.
+ */
+public class RoomCommandExecutor implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(RoomCommandExecutor.class);
+
+    private final SpotifyController spotifyController;
+    private final DeviceCache deviceCache;
+    private final RoomEngine roomEngine;
+    private final Map<CommandType, Map<CommandOutcome, Counter>> commandCounters = new EnumMap<>(CommandType.class);
+    private final long windowMillis;
+    private final ThreadPoolTaskScheduler taskScheduler;
+    private final Map<Room, Mailbox> mailboxes = Collections.synchronizedMap(new WeakHashMap<>());
+
+    RoomCommandExecutor(SpotifyController spotifyController, DeviceCache deviceCache, RoomEngine roomEngine, MeterRegistry meterRegistry, SpotifyPlaybackProperties properties)
+    {
+        this.spotifyController = spotifyController;
+        this.deviceCache = deviceCache;
+        this.roomEngine = roomEngine;
+        this.windowMillis = properties.getCommandWindow().toMillis();
+
+        for (CommandType type : CommandType.values())
+        {
+            Map<CommandOutcome, Counter> counters = new EnumMap<>(CommandOutcome.class);
+            for (CommandOutcome outcome : CommandOutcome.values())
+            {
+                counters.put(outcome, meterRegistry.counter("spotibot.commands", "type", type.name().toLowerCase(), "outcome", outcome.name().toLowerCase()));
+            }
+            commandCounters.put(type, counters);
+        }
+
+        taskScheduler = new ThreadPoolTaskScheduler();
+        taskScheduler.setPoolSize(properties.getCommandPoolSize());
+        taskScheduler.setThreadNamePrefix("room-commands-");
+        taskScheduler.initialize();
+    }
+
+    /**
+     * Sends the play state of the room to Spotify. The state was already flipped optimistically by the caller.
+     *
+     * @param userSession   The session of the room owner.
+     * @param playbackState The state returned by {@link Room#togglePlayback()}.
+     * @return A future completed once the state reached Spotify or turned out to be unchanged.
+     */
+    public CompletableFuture<Void> toggle(UserSession userSession, PlaybackState playbackState)
+    {
+        return submit(userSession, CommandType.TOGGLE, null, !playbackState.isPlaying());
+    }
+
+    /**
+     * Skips the given song of the room.
+     *
+     * @param userSession The session of the room owner.
+     * @param songUri     The song playing when the skip was requested.
+     * @return A future completed once the skip was executed or collapsed into another one.
+     */
+    public CompletableFuture<Void> skip(UserSession userSession, String songUri)
+    {
+        return submit(userSession, CommandType.SKIP, songUri, false);
+    }
+
+    /**
+     * Rolls the room back from the given song to the previous one.
+     *
+     * @param userSession The session of the room owner.
+     * @param songUri     The song playing when the rollback was requested.
+     * @return A future completed once the rollback was executed or collapsed into another one.
+     */
+    public CompletableFuture<Void> rollback(UserSession userSession, String songUri)
+    {
+        return submit(userSession, CommandType.ROLLBACK, songUri, false);
+    }
+
+    /**
+     * Tells the executor that a playback state of the room was fetched from Spotify, so the skips and rollbacks
+     * executed before the fetch started are reflected in the room's current song and no longer drop new ones.
+     *
+     * @param room          The room.
+     * @param fetchStartedAt The epoch milliseconds at which the fetch was sent.
+     */
+    public void playbackFetched(Room room, long fetchStartedAt)
+    {
+        Mailbox mailbox = mailboxes.get(room);
+
+        if (mailbox == null)
+        {
+            return;
+        }
+
+        synchronized (mailbox)
+        {
+            mailbox.lastExecuted.values().removeIf(executed -> executed.executedAt < fetchStartedAt);
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        taskScheduler.shutdown();
+    }
+
+    private CompletableFuture<Void> submit(UserSession userSession, CommandType type, String songUri, boolean initiallyPlaying)
+    {
+        Mailbox mailbox = mailboxes.computeIfAbsent(userSession.getUserRoom(), room -> new Mailbox());
+
+        synchronized (mailbox)
+        {
+            Executed executed = mailbox.lastExecuted.get(type);
+
+            if (songUri != null && executed != null && songUri.equals(executed.songUri))
+            {
+                countCommand(type, CommandOutcome.COALESCED);
+                return CompletableFuture.completedFuture(null);
+            }
+
+            for (Command command : mailbox.commands)
+            {
+                if (command.type == type && Objects.equals(command.songUri, songUri))
+                {
+                    countCommand(type, CommandOutcome.COALESCED);
+                    return command.result;
+                }
+            }
+
+            Command command = new Command(type, songUri, initiallyPlaying);
+            mailbox.commands.add(command);
+
+            if (!mailbox.scheduled)
+            {
+                mailbox.scheduled = true;
+                taskScheduler.schedule(() -> drain(userSession, mailbox), Instant.now().plusMillis(windowMillis));
+            }
+
+            return command.result;
+        }
+    }
+
+    private void drain(UserSession userSession, Mailbox mailbox)
+    {
+        while (true)
+        {
+            List<Command> commands;
+
+            synchronized (mailbox)
+            {
+                if (mailbox.commands.isEmpty())
+                {
+                    mailbox.scheduled = false;
+                    return;
+                }
+
+                commands = new ArrayList<>(mailbox.commands);
+                mailbox.commands.clear();
+            }
+
+            for (Command command : commands)
+            {
+                execute(userSession, mailbox, command);
+            }
+        }
+    }
+
+    private void execute(UserSession userSession, Mailbox mailbox, Command command)
+    {
+        SpotifyToken spotifyToken = userSession.getUserSpotifyToken();
+        Room room = userSession.getUserRoom();
+        PlaybackState playbackState = room.getPlaybackState();
+
+        try
+        {
+            spotifyController.checkSpotifyAuthenticationStatus(spotifyToken);
+
+            switch (command.type)
+            {
+                case TOGGLE ->
+                {
+                    if (playbackState.isPlaying() == command.initiallyPlaying)
+                    {
+                        countCommand(command.type, CommandOutcome.CANCELLED);
+                        command.result.complete(null);
+                        return;
+                    }
+
+                    if (playbackState.isPlaying())
+                    {
+                        spotifyController.resumeCurrentlyPausedSong(spotifyToken);
+                    }
+                    else
+                    {
+                        spotifyController.pauseCurrentlyPlayingSong(spotifyToken);
+                    }
+                }
+                case SKIP -> spotifyController.skipCurrentlyPlayingSong(spotifyToken);
+                case ROLLBACK -> spotifyController.rollBackToPreviousSong(spotifyToken);
+            }
+
+            if (command.type != CommandType.TOGGLE)
+            {
+                synchronized (mailbox)
+                {
+                    mailbox.lastExecuted.put(command.type, new Executed(command.songUri, System.currentTimeMillis()));
+                }
+                roomEngine.submit(room.getRoomIdentifier(), () -> {
+                    room.expireSongContext();
+                    return null;
+                });
+            }
+
+            countCommand(command.type, CommandOutcome.EXECUTED);
+            command.result.complete(null);
+        } catch (IOException | ParseException | SpotifyWebApiException | RuntimeException e)
+        {
+            logger.warn("execute(): Error executing {} command.", command.type, e);
+
+            if (command.type == CommandType.TOGGLE)
+            {
+                revert(room, playbackState);
+            }
+
+            deviceCache.invalidate(spotifyToken);
+            countCommand(command.type, CommandOutcome.FAILED);
+            command.result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Reverts a toggle Spotify refused, so the room shows the play state Spotify kept.
+     *
+     * @param room          The room.
+     * @param playbackState The state returned by {@link Room#togglePlayback()}.
+     */
+    private void revert(Room room, PlaybackState playbackState)
+    {
+        try
+        {
+            roomEngine.run(room.getRoomIdentifier(), () -> {
+                if (room.revertPlayback(playbackState))
+                {
+                    room.publishPlaybackState(room.getPlaybackState());
+                }
+            });
+        } catch (RoomBusyException e)
+        {
+            // The next playback poll reconciles the state instead
+            logger.warn("revert(): Could not revert the play state of room {}.", room.getRoomIdentifier(), e);
+        }
+    }
+
+    private void countCommand(CommandType type, CommandOutcome outcome)
+    {
+        commandCounters.get(type).get(outcome).increment();
+    }
+
+    private enum CommandType
+    {
+        TOGGLE, SKIP, ROLLBACK
+    }
+
+    private enum CommandOutcome
+    {
+        COALESCED, CANCELLED, EXECUTED, FAILED
+    }
+
+    private static final class Command
+    {
+        private final CommandType type;
+        private final String songUri;
+        private final boolean initiallyPlaying;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        private Command(CommandType type, String songUri, boolean initiallyPlaying)
+        {
+            this.type = type;
+            this.songUri = songUri;
+            this.initiallyPlaying = initiallyPlaying;
+        }
+    }
+
+    private record Executed(String songUri, long executedAt)
+    {
+    }
+
+    private static final class Mailbox
+    {
+        private final List<Command> commands = new ArrayList<>();
+        private final Map<CommandType, Executed> lastExecuted = new EnumMap<>(CommandType.class);
+        private boolean scheduled;
+    }
+}
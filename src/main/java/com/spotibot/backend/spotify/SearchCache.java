@@ -0,0 +1,99 @@
+package com.spotibot.backend.spotify;
+
+import com.spotibot.backend.SearchSongResult;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ Size-bounded LRU cache of search results keyed by the normalized query string.
+ Besides exact hits it can answer a query provisionally from the results of its longest cached prefix,
+ e.g. "bohemian" from "bohem", by keeping only the tracks whose title or artist still match every word.
+ */
+public class SearchCache {
+    private final int maxSize;
+    private final long ttlMillis;
+    private final int minPrefixLength;
+    private final Map<String, Entry> entries;
+
+    public SearchCache(int maxSize, long ttlMillis, int minPrefixLength) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.minPrefixLength = minPrefixLength;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > SearchCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     Normalizes a query, so "  Bohemian   Rhapsody" and "bohemian rhapsody" share one cache entry.
+     @param queryString the query as typed
+     @return the lower-cased query with collapsed whitespace
+     */
+    public static String normalize(String queryString) {
+        return queryString == null ? "" : queryString.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    public synchronized List<SearchSongResult> get(String key) {
+        Entry entry = entries.get(key);
+
+        if (entry == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - entry.storedAt > ttlMillis) {
+            entries.remove(key);
+            return null;
+        }
+
+        return entry.results;
+    }
+
+    public synchronized void put(String key, List<SearchSongResult> results) {
+        entries.put(key, new Entry(List.copyOf(results), System.currentTimeMillis()));
+    }
+
+    /**
+     Answers a query from the results of its longest cached prefix.
+     @param key the normalized query
+     @return the matching tracks of the prefix results, or null if no prefix is cached
+     */
+    public List<SearchSongResult> getByPrefix(String key) {
+        String[] words = key.split(" ");
+
+        for (int end = key.length() - 1; end >= minPrefixLength; end--) {
+            List<SearchSongResult> prefixResults = get(key.substring(0, end));
+
+            if (prefixResults != null) {
+                return prefixResults.stream().filter(result -> matchesAll(result, words)).toList();
+            }
+        }
+
+        return null;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static boolean matchesAll(SearchSongResult result, String[] words) {
+        String[] resultWords = normalize(result.getSongName() + " " + result.getArtistName()).split(" ");
+
+        return Arrays.stream(words).allMatch(word -> Arrays.stream(resultWords).anyMatch(resultWord -> resultWord.startsWith(word)));
+    }
+
+    private static final class Entry {
+        private final List<SearchSongResult> results;
+        private final long storedAt;
+
+        private Entry(List<SearchSongResult> results, long storedAt) {
+            this.results = results;
+            this.storedAt = storedAt;
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package com.spotibot.backend.spotify;
+
+import com.spotibot.backend.SearchSongEvent;
+import com.spotibot.backend.SearchSongResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.hc.core5.http.ParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+import se.michaelthelin.spotify.model_objects.specification.Track;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ Song search shared by the plain search endpoint and the search-as-you-type streams.
+ Results are cached per normalized query for the cache TTL, after that a query is searched on Spotify again.
+ Tracks of the {@link TrackMetadataStore} are only ever sent as provisional result while the Spotify search runs,
+ since the store only knows tracks searched before. Every guest may hold one search stream: queries sent to it are
+ debounced, and a newer query cancels the pending or in-flight upstream search of the previous one, so only
+ the latest query of a guest is ever answered.
+ */
+public class SearchService implements Closeable {
+    public static final int SEARCH_RESULT_COUNT = 5;
+
+    private static final Logger logger = LoggerFactory.getLogger(SearchService.class);
+
+    private final SpotifyController spotifyController;
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+    private final Counter partialSearches;
+    private final Counter supersededWhileDebounced;
+    private final Counter supersededInFlight;
+    private final SpotifySearchProperties properties;
+    private final SearchCache searchCache;
+    private final TrackMetadataStore trackMetadataStore;
+    private final ThreadPoolTaskScheduler taskScheduler;
+    private final Map<String, SearchStream> searchStreams = new ConcurrentHashMap<>();
+
+    SearchService(SpotifyController spotifyController, TrackMetadataStore trackMetadataStore, MeterRegistry meterRegistry, SpotifySearchProperties properties)
+    {
+        this.trackMetadataStore = trackMetadataStore;
+        this.spotifyController = spotifyController;
+        this.cacheHits = meterRegistry.counter("spotibot.cache.requests", "cache", "search", "result", "hit");
+        this.cacheMisses = meterRegistry.counter("spotibot.cache.requests", "cache", "search", "result", "miss");
+        this.partialSearches = meterRegistry.counter("spotibot.search.partial");
+        this.supersededWhileDebounced = meterRegistry.counter("spotibot.search.superseded", "stage", "debounce");
+        this.supersededInFlight = meterRegistry.counter("spotibot.search.superseded", "stage", "in-flight");
+        this.properties = properties;
+        this.searchCache = new SearchCache(properties.getCacheSize(), properties.getCacheTtl().toMillis(), properties.getMinPrefixLength());
+
+        taskScheduler = new ThreadPoolTaskScheduler();
+        taskScheduler.setPoolSize(properties.getSchedulerPoolSize());
+        taskScheduler.setThreadNamePrefix("spotify-search-");
+        taskScheduler.setRemoveOnCancelPolicy(true);
+        taskScheduler.initialize();
+    }
+
+    /**
+     * Searches for tracks on Spotify, answering from the cache if the same query was searched within the cache TTL.
+     *
+     * @param spotifyToken The token of the room owner.
+     * @param queryString  The query as typed by the guest.
+     * @return The search results.
+     */
+    public List<SearchSongResult> search(SpotifyToken spotifyToken, String queryString) throws IOException, ParseException, SpotifyWebApiException
+    {
+        String key = SearchCache.normalize(queryString);
+        List<SearchSongResult> cachedResults = searchCache.get(key);
+
+        if (cachedResults != null)
+        {
+            cacheHits.increment();
+            return cachedResults;
+        }
+
+        spotifyController.checkSpotifyAuthenticationStatus(spotifyToken);
+        return fetch(spotifyToken, key, queryString);
+    }
+
+    /**
+     * Opens the search stream of a guest, replacing a stream the guest opened before.
+     *
+     * @param guestIdentifier The identifier of the guest.
+     * @return The emitter the results of {@link #submit(String, SpotifyToken, String)} are sent to.
+     */
+    public SseEmitter openStream(String guestIdentifier)
+    {
+        SseEmitter emitter = new SseEmitter(properties.getStreamTimeout().toMillis());
+        SearchStream searchStream = new SearchStream(emitter);
+        SearchStream previousStream = searchStreams.put(guestIdentifier, searchStream);
+
+        if (previousStream != null)
+        {
+            previousStream.emitter.complete();
+        }
+
+        try
+        {
+            // Commits the response, so the client sees the stream open before the first result
+            emitter.send(SseEmitter.event().comment("open"));
+        } catch (IOException e)
+        {
+            emitter.completeWithError(e);
+        }
+
+        emitter.onCompletion(() -> {
+            searchStreams.remove(guestIdentifier, searchStream);
+            synchronized (searchStream)
+            {
+                supersede(searchStream);
+            }
+        });
+
+        return emitter;
+    }
+
+    /**
+     * Submits the current query of a guest to the guest's search stream.
+     * A cached result is sent at once. Otherwise the tracks of a cached prefix that still match, or else the locally
+     * known matches, are sent as partial result, and the upstream search starts once the guest stopped typing for the debounce delay.
+     *
+     * @param guestIdentifier The identifier of the guest.
+     * @param spotifyToken    The token of the room owner.
+     * @param queryString     The query as typed by the guest.
+     * @return false if the guest has no open search stream.
+     */
+    public boolean submit(String guestIdentifier, SpotifyToken spotifyToken, String queryString)
+    {
+        SearchStream searchStream = searchStreams.get(guestIdentifier);
+
+        if (searchStream == null)
+        {
+            return false;
+        }
+
+        String key = SearchCache.normalize(queryString);
+
+        synchronized (searchStream)
+        {
+            long generation = supersede(searchStream);
+
+            if (key.isEmpty())
+            {
+                send(searchStream, generation, new SearchSongEvent(queryString, false, List.of()));
+                return true;
+            }
+
+            List<SearchSongResult> cachedResults = searchCache.get(key);
+
+            if (cachedResults != null)
+            {
+                cacheHits.increment();
+                send(searchStream, generation, new SearchSongEvent(queryString, false, cachedResults));
+                return true;
+            }
+
+            List<SearchSongResult> prefixResults = searchCache.getByPrefix(key);
+
+            if (prefixResults == null || prefixResults.isEmpty())
+            {
+                prefixResults = findLocally(key);
+            }
+
+            if (prefixResults != null && !prefixResults.isEmpty())
+            {
+                partialSearches.increment();
+                send(searchStream, generation, new SearchSongEvent(queryString, true, prefixResults));
+            }
+
+            searchStream.pendingSearch = taskScheduler.schedule(
+                    () -> runSearch(searchStream, generation, spotifyToken, key, queryString),
+                    Instant.now().plus(properties.getDebounce()));
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns whether an upstream search of the guest's stream is running right now.
+     *
+     * @param guestIdentifier The identifier of the guest.
+     * @return false if no search is running or the guest has no open search stream.
+     */
+    boolean isSearchInFlight(String guestIdentifier)
+    {
+        SearchStream searchStream = searchStreams.get(guestIdentifier);
+
+        if (searchStream == null)
+        {
+            return false;
+        }
+
+        synchronized (searchStream)
+        {
+            return searchStream.inFlightSearch != null;
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        searchStreams.values().forEach(searchStream -> searchStream.emitter.complete());
+        taskScheduler.shutdown();
+    }
+
+    private void runSearch(SearchStream searchStream, long generation, SpotifyToken spotifyToken, String key, String queryString)
+    {
+        // A query superseded while the debounce fired must not refresh the token for nothing
+        if (isSuperseded(searchStream, generation))
+        {
+            return;
+        }
+
+        spotifyController.checkSpotifyAuthenticationStatus(spotifyToken);
+        CancellableCall call = new CancellableCall();
+
+        synchronized (searchStream)
+        {
+            if (searchStream.generation != generation)
+            {
+                return;
+            }
+            searchStream.pendingSearch = null;
+            searchStream.inFlightSearch = call;
+        }
+
+        call.bind();
+        try
+        {
+            List<SearchSongResult> results = fetch(spotifyToken, key, queryString);
+            send(searchStream, generation, new SearchSongEvent(queryString, false, results));
+        } catch (IOException | ParseException | SpotifyWebApiException e)
+        {
+            if (!call.isCancelled())
+            {
+                logger.warn("runSearch(): Error searching song.", e);
+            }
+        } finally
+        {
+            call.unbind();
+            synchronized (searchStream)
+            {
+                // A finished search is no longer in flight, the next query must not cancel or count it
+                if (searchStream.inFlightSearch == call)
+                {
+                    searchStream.inFlightSearch = null;
+                }
+            }
+        }
+    }
+
+    private static boolean isSuperseded(SearchStream searchStream, long generation)
+    {
+        synchronized (searchStream)
+        {
+            return searchStream.generation != generation;
+        }
+    }
+
+    private List<SearchSongResult> fetch(SpotifyToken spotifyToken, String key, String queryString) throws IOException, ParseException, SpotifyWebApiException
+    {
+        cacheMisses.increment();
+        Track[] searchResult = spotifyController.searchSong(spotifyToken, queryString);
+
+        List<SearchSongResult> results = Arrays.stream(searchResult)
+                .map(TrackMetadata::of)
+                .peek(trackMetadataStore::put)
+                .map(TrackMetadata::toSearchSongResult)
+                .toList();
+
+        searchCache.put(key, results);
+        return results;
+    }
+
+    /**
+     * Cancels the pending and in-flight search of the stream. Must be called holding the stream's lock.
+     *
+     * @return The generation of the next query.
+     */
+    private long supersede(SearchStream searchStream)
+    {
+        if (searchStream.pendingSearch != null && searchStream.pendingSearch.cancel(false))
+        {
+            supersededWhileDebounced.increment();
+        }
+
+        if (searchStream.inFlightSearch != null && !searchStream.inFlightSearch.isCancelled())
+        {
+            searchStream.inFlightSearch.cancel();
+            supersededInFlight.increment();
+        }
+
+        searchStream.pendingSearch = null;
+        searchStream.inFlightSearch = null;
+        return ++searchStream.generation;
+    }
+
+    private void send(SearchStream searchStream, long generation, SearchSongEvent searchSongEvent)
+    {
+        synchronized (searchStream)
+        {
+            if (searchStream.generation != generation)
+            {
+                return;
+            }
+
+            try
+            {
+                searchStream.emitter.send(SseEmitter.event().name("results").data(searchSongEvent, MediaType.APPLICATION_JSON));
+            } catch (IOException | IllegalStateException e)
+            {
+                // The guest went away, completing the emitter removes the stream
+                searchStream.emitter.completeWithError(e);
+            }
+        }
+    }
+
+    private List<SearchSongResult> findLocally(String key)
+    {
+        return trackMetadataStore.find(key, SEARCH_RESULT_COUNT).stream()
+                .map(TrackMetadata::toSearchSongResult)
+                .toList();
+    }
+
+    private static final class SearchStream
+    {
+        private final SseEmitter emitter;
+        private long generation;
+        private ScheduledFuture<?> pendingSearch;
+        private CancellableCall inFlightSearch;
+
+        private SearchStream(SseEmitter emitter)
+        {
+            this.emitter = emitter;
+        }
+    }
+}
@@ -1,18 +1,41 @@
 package com.spotibot.backend.spotify;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.spotibot.backend.*;
+import com.spotibot.backend.room.PlaybackHistory;
+import com.spotibot.backend.room.PlaybackState;
+import com.spotibot.backend.room.PlayedTrack;
+import com.spotibot.backend.room.QueuedTrack;
 import com.spotibot.backend.room.Room;
+import com.spotibot.backend.room.RoomBusyException;
+import com.spotibot.backend.room.RoomEngine;
+import com.spotibot.backend.room.RoomState;
+import com.spotibot.backend.room.TrackQueue;
+import com.spotibot.backend.room.VoteOutcome;
+import com.spotibot.backend.tracing.TracingConfiguration;
+import com.spotibot.backend.web.InboundRateLimiter;
+import com.spotibot.backend.web.LoggingContextFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
 import org.apache.hc.core5.http.ParseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+import se.michaelthelin.spotify.exceptions.detailed.BadRequestException;
+import se.michaelthelin.spotify.exceptions.detailed.ForbiddenException;
+import se.michaelthelin.spotify.exceptions.detailed.NotFoundException;
 import se.michaelthelin.spotify.model_objects.miscellaneous.CurrentlyPlayingContext;
 import se.michaelthelin.spotify.model_objects.miscellaneous.Device;
 import se.michaelthelin.spotify.model_objects.specification.Track;
@@ -20,20 +43,63 @@ import se.michaelthelin.spotify.model_objects.specification.Track;
 import java.io.IOException;
 import java.net.URI;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
-@CrossOrigin(origins = "http://localhost:4200", allowCredentials = "true")
+@CrossOrigin(origins = "http://localhost:4200", allowCredentials = "true", maxAge = 7200)
 @RestController
 @RequestMapping("/spotify")
 public class SpotifyApiController {
-    private static final String SESSION_ATTRIBUTE = "userIdentifier";
+    private static final String SESSION_ATTRIBUTE = UserIdentifiers.SESSION_ATTRIBUTE;
     private static final String ERROR_NOT_AUTHENTICATED = "Not authenticated!";
-
-    SpotifyController spotifyController = new SpotifyController();
+    private static final String CLOSE_TAB_PAGE = "<html><head><script>window.close();</script></head><body>Closing tab...</body></html>";
+
+    private final SpotifyController spotifyController;
+    private final SearchService searchService;
+    private final TrackMetadataStore trackMetadataStore;
+    private final DeviceCache deviceCache;
+    private final RoomCommandExecutor roomCommandExecutor;
+    private final SpotifyDeviceProperties spotifyDeviceProperties;
+    private final SpotifyPlaybackProperties spotifyPlaybackProperties;
+    private final Counter votes;
+    private final Counter hostSkips;
+    private final Counter voteSkips;
+    private final Counter songContextHits;
+    private final Counter songContextMisses;
+    private final Counter songContextShared;
+    private final ObservationRegistry observationRegistry;
+    private final InboundRateLimiter inboundRateLimiter;
+    private final RoomEngine roomEngine;
+    private final PayloadWriters payloadWriters;
     private static final Logger logger = LoggerFactory.getLogger(SpotifyApiController.class);
-    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public SpotifyApiController(SpotifyController spotifyController, SearchService searchService, TrackMetadataStore trackMetadataStore, DeviceCache deviceCache, RoomCommandExecutor roomCommandExecutor, SpotifyDeviceProperties spotifyDeviceProperties, SpotifyPlaybackProperties spotifyPlaybackProperties, MeterRegistry meterRegistry, ObservationRegistry observationRegistry, InboundRateLimiter inboundRateLimiter, RoomEngine roomEngine, PayloadWriters payloadWriters)
+    {
+        this.deviceCache = deviceCache;
+        this.roomCommandExecutor = roomCommandExecutor;
+        this.spotifyDeviceProperties = spotifyDeviceProperties;
+        this.spotifyPlaybackProperties = spotifyPlaybackProperties;
+        this.spotifyController = spotifyController;
+        this.searchService = searchService;
+        this.trackMetadataStore = trackMetadataStore;
+        this.votes = meterRegistry.counter("spotibot.votes");
+        this.hostSkips = meterRegistry.counter("spotibot.skips", "trigger", "host");
+        this.voteSkips = meterRegistry.counter("spotibot.skips", "trigger", "votes");
+        this.songContextHits = meterRegistry.counter("spotibot.cache.requests", "cache", "song-context", "result", "hit");
+        this.songContextMisses = meterRegistry.counter("spotibot.cache.requests", "cache", "song-context", "result", "miss");
+        this.songContextShared = meterRegistry.counter("spotibot.cache.requests", "cache", "song-context", "result", "shared");
+        this.observationRegistry = observationRegistry;
+        this.inboundRateLimiter = inboundRateLimiter;
+        this.roomEngine = roomEngine;
+        this.payloadWriters = payloadWriters;
+    }
 
     /**
      * Handles the Spotify login process for a specific room identified by 'roomIdentifier'.
+     * The room is pinned to the least loaded Spotify app of the pool, whose login URI is returned.
      * This method is accessed via HTTP GET at the path "/login".
      *
      * @param request        The HttpServletRequest object representing the incoming HTTP request.
@@ -44,7 +110,7 @@ public class SpotifyApiController {
      * - HttpStatus.CREATED (201) if the user is allowed to join the room and is already authenticated with Spotify.
      * - HttpStatus.NOT_ACCEPTABLE (406) if the user is not allowed to join the room as a guest.
      * - HttpStatus.NOT_FOUND (404) if the room with the specified 'roomIdentifier' does not exist.
-     * @see SpotifyController#authorizationCodeUriRequest()
+     * @see SpotifyController#authorizationCodeUriRequest(UserSession)
      * @see DataManagement#getMatchingEntry(String)
      */
     @GetMapping(path = "/login")
@@ -72,7 +138,7 @@ public class SpotifyApiController {
         SpotifyToken spotifyToken = userSession.getUserSpotifyToken();
         if (spotifyToken == null)
         {
-            return ResponseEntity.ok(spotifyController.authorizationCodeUriRequest().execute());
+            return ResponseEntity.ok(spotifyController.authorizationCodeUriRequest(userSession).execute());
         }
 
         // Already authenticated
@@ -81,6 +147,7 @@ public class SpotifyApiController {
 
     /**
      * Retrieves the Spotify user code from the request and processes it to obtain an access token and other related data.
+     * The access token is installed in the user's session by the room engine.
      * This method is accessed via HTTP GET at the path "/get-user-code".
      *
      * @param request         The HttpServletRequest object representing the incoming HTTP request.
@@ -91,14 +158,14 @@ public class SpotifyApiController {
      * - HttpStatus.INTERNAL_SERVER_ERROR (500) if an internal error occurs during the processing of the user code.
      * - HttpStatus.BAD_REQUEST (400) if the user's session is not found or is invalid.
      * @see SpotifyController#authorizationCodeRequest(UserSession, String)
-     * @see DataManagement#userSessionCache
+     * @see DataManagement#getUserSession(String)
      */
     @GetMapping(path = "/get-user-code")
     public ResponseEntity<String> getSpotifyUserCode(HttpServletRequest request, @RequestParam("code") String spotifyUserCode)
     {
         HttpSession httpSession = request.getSession();
         String userIdentifier = (String) httpSession.getAttribute(SESSION_ATTRIBUTE);
-        UserSession userSession = DataManagement.userSessionCache.get(userIdentifier);
+        UserSession userSession = DataManagement.getUserSession(userIdentifier);
 
         if (userSession == null)
         {
@@ -107,8 +174,9 @@ public class SpotifyApiController {
 
         try
         {
-            String requestResponse = spotifyController.authorizationCodeRequest(userSession, spotifyUserCode);
-            return ResponseEntity.ok(requestResponse);
+            SpotifyToken spotifyToken = spotifyController.authorizationCodeRequest(userSession, spotifyUserCode);
+            submitFollowUp(userSession.getUserRoom().getRoomIdentifier(), () -> userSession.setUserSpotifyToken(spotifyToken));
+            return ResponseEntity.ok(CLOSE_TAB_PAGE);
         } catch (IOException | ParseException | SpotifyWebApiException e)
         {
             logger.warn("getSpotifyUserCode(): An error occurred: ", e);
@@ -118,31 +186,39 @@ public class SpotifyApiController {
 
     /**
      * Retrieves the current song information for the specified room identified by 'roomIdentifier'.
+     * The serialized song context is cached per room and only refetched from Spotify once it is older than
+     * {@link SongContextSnapshot#MAX_AGE_MS}. Every response carries the snapshot version as ETag.
      * This method is accessed via HTTP GET at the path "/current-song".
      *
+     * @param request        The HttpServletRequest object representing the incoming HTTP request.
      * @param roomIdentifier The unique identifier for the room to fetch the current song information.
-     * @return ResponseEntity containing a String representing the current song context information in JSON format.
+     * @return ResponseEntity containing the serialized current song context in JSON format.
      * The response may include one of the following HTTP statuses:
      * - HttpStatus.OK (200) if the current song information is successfully retrieved and authenticated with Spotify.
+     * - HttpStatus.NOT_MODIFIED (304) if the request's If-None-Match header matches the current snapshot version.
      * - HttpStatus.BAD_REQUEST (400) if the room is not authenticated with Spotify.
      * - HttpStatus.UPGRADE_REQUIRED (426) if playing context is null and a device has to be choosen.
      * - HttpStatus.NOT_FOUND (404) if the specified room does not exist.
-     * @see DataManagement#getMatchingUserSession(String)
-     * @see SpotifyController#checkSpotifyAuthenticationStatus(SpotifyToken)
-     * @see SpotifyController#currentlyPlayingContext(SpotifyToken)
-     * @see SpotifyController#getDevices(SpotifyToken)
-     * @see #buildCurrentSongContextJSON(CurrentlyPlayingContext, UserSession)
+     * - HttpStatus.TOO_MANY_REQUESTS (429) if the guest or the room exceeded the rate limit of the endpoint, with Retry-After.
+     * @see #lookupRoom(String)
+     * @see #currentSongContext(UserSession)
      */
     @RequestMapping(path = "/current-song")
-    public ResponseEntity<String> currentSong(@RequestParam("code") String roomIdentifier)
+    public ResponseEntity<Object> currentSong(HttpServletRequest request, @RequestParam("code") String roomIdentifier)
     {
-        Optional<UserSession> userSession = DataManagement.getMatchingUserSession(roomIdentifier);
+        Optional<UserSession> userSession = lookupRoom(roomIdentifier);
 
         if (userSession.isEmpty())
         {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
         }
 
+        ResponseEntity<Object> rateLimited = rateLimit("current-song", request, roomIdentifier);
+        if (rateLimited != null)
+        {
+            return rateLimited;
+        }
+
         UserSession currentUserSession = userSession.get();
         SpotifyToken spotifyToken = currentUserSession.getUserSpotifyToken();
 
@@ -151,47 +227,137 @@ public class SpotifyApiController {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ERROR_NOT_AUTHENTICATED);
         }
 
-        spotifyController.checkSpotifyAuthenticationStatus(spotifyToken);
-        CurrentlyPlayingContext currentlyPlayingContext;
+        SongContextSnapshot songContextSnapshot;
 
         try
         {
-            currentlyPlayingContext = spotifyController.currentlyPlayingContext(spotifyToken);
+            songContextSnapshot = currentSongContext(currentUserSession);
         } catch (IOException | ParseException | SpotifyWebApiException e)
         {
             logger.warn("currentSong(): An error occurred: ", e);
             return ResponseEntity.internalServerError().build();
         }
 
-        if (currentlyPlayingContext == null)
+        if (songContextSnapshot == null)
         {
             return ResponseEntity.status(HttpStatus.UPGRADE_REQUIRED).build();
         }
 
-        currentUserSession.getUserRoom().setCurrentlyPlaying(currentlyPlayingContext.getIs_playing());
-        return ResponseEntity.ok(buildCurrentSongContextJSON(currentlyPlayingContext, userSession.get()).toString());
+        return songContextResponse(request, songContextSnapshot);
     }
 
 
+    /**
+     * Retrieves everything the room screen shows in one response: the room settings, whether the requesting user
+     * owns it or another room, the current song, the skip vote state and, for the room owner, the devices.
+     * It replaces the separate calls to "/room/get_room", "/room/check-room-owner", "/room/check-if-user-has-room"
+     * and "/current-song". The room is looked up once, and the song context and devices are taken from their caches,
+     * so Spotify is only asked if they are outdated. If either fails, or the room engine is busy, only that part is
+     * left out instead of failing the snapshot.
+     * Like "/room/get_room", the request binds a userIdentifier to the session of a new guest.
+     * This method is accessed via HTTP GET at the path "/room-snapshot".
+     *
+     * @param request        The HttpServletRequest object representing the incoming HTTP request.
+     * @param roomIdentifier The unique identifier for the room to take the snapshot of.
+     * @param withDevices    Whether to include the devices of the room owner, only honoured for the room owner.
+     * @return ResponseEntity containing the RoomSnapshot, written to the response as JSON.
+     * The response may include one of the following HTTP statuses:
+     * - HttpStatus.OK (200) if the snapshot is returned, with a null songContext if the room is not authenticated with Spotify
+     * or nothing is playing.
+     * - HttpStatus.NOT_FOUND (404) if the specified room does not exist.
+     * - HttpStatus.TOO_MANY_REQUESTS (429) if the guest or the room exceeded the rate limit of the endpoint, with Retry-After.
+     * @see RoomSnapshot
+     * @see #currentSongContext(UserSession)
+     * @see DeviceCache#get(SpotifyToken)
+     */
+    @GetMapping(path = "/room-snapshot")
+    public ResponseEntity<RoomSnapshot> roomSnapshot(HttpServletRequest request, @RequestParam("code") String roomIdentifier, @RequestParam(value = "devices", defaultValue = "false") boolean withDevices)
+    {
+        String userIdentifier = UserIdentifiers.checkOrCreateUserIdentifierInSession(request);
+        Optional<Map.Entry<String, UserSession>> userSessionEntry = lookupRoomEntry(roomIdentifier);
+
+        if (userSessionEntry.isEmpty())
+        {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+
+        ResponseEntity<RoomSnapshot> rateLimited = rateLimit("room-snapshot", request, roomIdentifier);
+        if (rateLimited != null)
+        {
+            return rateLimited;
+        }
+
+        boolean owner = userSessionEntry.get().getKey().equals(userIdentifier);
+        UserSession userSession = userSessionEntry.get().getValue();
+        Room room = userSession.getUserRoom();
+        SpotifyToken spotifyToken = userSession.getUserSpotifyToken();
+
+        UserSession ownUserSession = owner ? userSession : DataManagement.getUserSession(userIdentifier);
+        String ownRoomIdentifier = ownUserSession != null ? ownUserSession.getUserRoom().getRoomIdentifier() : null;
+
+        SongContext songContext = null;
+        Device[] devices = null;
+
+        if (spotifyToken != null)
+        {
+            try
+            {
+                SongContextSnapshot songContextSnapshot = currentSongContext(userSession);
+                songContext = songContextSnapshot != null ? songContextSnapshot.getSongContext() : null;
+            } catch (IOException | ParseException | SpotifyWebApiException | RoomBusyException e)
+            {
+                logger.warn("roomSnapshot(): Error fetching the playback state.", e);
+            }
+
+            if (withDevices && owner)
+            {
+                try
+                {
+                    devices = deviceCache.get(spotifyToken).getDevices();
+                } catch (IOException | ParseException | SpotifyWebApiException e)
+                {
+                    logger.warn("roomSnapshot(): Error fetching the devices.", e);
+                }
+            }
+        }
+
+        RoomState roomState = room.getState();
+
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .body(new RoomSnapshot(
+                        room,
+                        owner,
+                        ownRoomIdentifier,
+                        spotifyToken != null,
+                        songContext,
+                        roomState.getVoteCount(),
+                        roomState.getVotesToSkip(),
+                        roomState.hasVoted(userIdentifier),
+                        devices
+                ));
+    }
+
     /**
      * Retrieves a list of available devices associated with the user's authenticated Spotify account.
+     * The list is cached per token for a few seconds and carries its version as ETag, so polling clients
+     * sending If-None-Match get a 304 as long as the device set did not change.
      * This method is accessed via HTTP GET at the path "/devices".
      *
      * @param request The HttpServletRequest object representing the incoming HTTP request.
-     * @return ResponseEntity containing a String representing a JSON array of available devices.
+     * @return ResponseEntity containing the available devices, written to the response as a JSON array.
      * The response may include one of the following HTTP statuses:
      * - HttpStatus.OK (200) if the list of devices is successfully retrieved and authenticated with Spotify.
+     * - HttpStatus.NOT_MODIFIED (304) if the request's If-None-Match header matches the current device list.
+     * - HttpStatus.BAD_REQUEST (400) if the user is not authenticated with Spotify.
      * - HttpStatus.INTERNAL_SERVER_ERROR (500) if an internal error occurs during the retrieval of devices.
      * - HttpStatus.NOT_FOUND (404) if the user's session is not found or is invalid.
-     * @see SpotifyController#checkSpotifyAuthenticationStatus(SpotifyToken)
-     * @see SpotifyController#getDevices(SpotifyToken)
+     * @see DeviceCache#get(SpotifyToken)
      */
     @GetMapping(path = "/devices")
-    public ResponseEntity<String> getDevices(HttpServletRequest request)
+    public ResponseEntity<Object> getDevices(HttpServletRequest request)
     {
-        HttpSession session = request.getSession();
-        String userIdentifier = (String) session.getAttribute(SESSION_ATTRIBUTE);
-        UserSession userSession = DataManagement.userSessionCache.get(userIdentifier);
+        UserSession userSession = DataManagement.getUserSession((String) request.getSession().getAttribute(SESSION_ATTRIBUTE));
 
         if (userSession == null)
         {
@@ -205,20 +371,70 @@ public class SpotifyApiController {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ERROR_NOT_AUTHENTICATED);
         }
 
-        spotifyController.checkSpotifyAuthenticationStatus(spotifyToken);
-        Device[] devices;
-
         try
         {
-            devices = spotifyController.getDevices(spotifyToken);
+            return devicesResponse(deviceCache.get(spotifyToken), PayloadFormat.negotiate(request.getHeader(HttpHeaders.ACCEPT)));
         } catch (IOException | ParseException | SpotifyWebApiException e)
         {
             logger.warn("getDevices(): Error retrieving devices.", e);
             return ResponseEntity.internalServerError().build();
         }
+    }
 
-        String devicesJson = valueAsString(devices);
-        return ResponseEntity.status(HttpStatus.OK).body(devicesJson);
+    /**
+     * Long-polls the device list: answers once the device set differs from the one identified by the
+     * If-None-Match header, e.g. because a speaker was switched on, instead of letting the client re-poll.
+     * Without If-None-Match the current list is returned right away.
+     * This method is accessed via HTTP GET at the path "/devices/changes".
+     *
+     * @param request The HttpServletRequest object representing the incoming HTTP request.
+     * @param eTag    The ETag of the device list known to the client.
+     * @return DeferredResult completed with the changed device list, written to the response as a JSON array.
+     * The response may include one of the following HTTP statuses:
+     * - HttpStatus.OK (200) if the device list changed.
+     * - HttpStatus.NOT_MODIFIED (304) if the device list did not change within the long-poll timeout.
+     * - HttpStatus.BAD_REQUEST (400) if the user is not authenticated with Spotify.
+     * - HttpStatus.INTERNAL_SERVER_ERROR (500) if an internal error occurs during the retrieval of devices.
+     * - HttpStatus.NOT_FOUND (404) if the user's session is not found or is invalid.
+     * @see DeviceCache#awaitChange(SpotifyToken, String)
+     */
+    @GetMapping(path = "/devices/changes")
+    public DeferredResult<ResponseEntity<Object>> awaitDeviceChange(HttpServletRequest request, @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String eTag)
+    {
+        DeferredResult<ResponseEntity<Object>> deferredResult = new DeferredResult<>(
+                spotifyDeviceProperties.getLongPollTimeout().toMillis(),
+                () -> ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build());
+
+        UserSession userSession = DataManagement.getUserSession((String) request.getSession().getAttribute(SESSION_ATTRIBUTE));
+
+        if (userSession == null)
+        {
+            deferredResult.setResult(ResponseEntity.notFound().build());
+            return deferredResult;
+        }
+
+        SpotifyToken spotifyToken = userSession.getUserSpotifyToken();
+
+        if (spotifyToken == null)
+        {
+            deferredResult.setResult(ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ERROR_NOT_AUTHENTICATED));
+            return deferredResult;
+        }
+
+        PayloadFormat payloadFormat = PayloadFormat.negotiate(request.getHeader(HttpHeaders.ACCEPT));
+
+        try
+        {
+            CompletableFuture<DeviceSnapshot> deviceChange = deviceCache.awaitChange(spotifyToken, eTag);
+            deviceChange.thenAccept(deviceSnapshot -> deferredResult.setResult(devicesResponse(deviceSnapshot, payloadFormat)));
+            deferredResult.onCompletion(() -> deviceChange.cancel(false));
+        } catch (IOException | ParseException | SpotifyWebApiException e)
+        {
+            logger.warn("awaitDeviceChange(): Error retrieving devices.", e);
+            deferredResult.setResult(ResponseEntity.internalServerError().build());
+        }
+
+        return deferredResult;
     }
 
     /**
@@ -234,13 +450,14 @@ public class SpotifyApiController {
      * - HttpStatus.INTERNAL_SERVER_ERROR (500) if an internal error occurs during the process of forcing the device to play.
      * @see SpotifyController#checkSpotifyAuthenticationStatus(SpotifyToken)
      * @see SpotifyController#forceDeviceToPlay(SpotifyToken, String)
+     * @see DeviceCache#invalidate(SpotifyToken)
      */
     @GetMapping(path = "/force-play")
     public ResponseEntity<Boolean> forceDeviceToPlay(HttpServletRequest request, @RequestParam("deviceId") String deviceId)
     {
         HttpSession session = request.getSession();
         String userIdentifier = (String) session.getAttribute(SESSION_ATTRIBUTE);
-        UserSession userSession = DataManagement.userSessionCache.get(userIdentifier);
+        UserSession userSession = DataManagement.getUserSession(userIdentifier);
 
         if (userSession == null)
         {
@@ -257,41 +474,55 @@ public class SpotifyApiController {
         {
             logger.warn("forceDeviceToPlay(): Error forcing device to play.", e);
             return ResponseEntity.internalServerError().build();
+        } finally
+        {
+            deviceCache.invalidate(userSession.getUserSpotifyToken());
         }
 
     }
 
     /**
      * Toggles the playing status of the current song for the specified room identified by 'roomIdentifier'.
+     * The room's play state is flipped optimistically and published to the room's song context right away.
+     * The state is sent to Spotify by the room's command executor, which collapses a burst of toggles into at
+     * most one call, and is reverted if Spotify refuses it. The response waits for the executor, so a refused
+     * toggle is reported to the caller. Later polls or the {@link PlaybackReconciler} confirm the state.
      * This method is accessed via HTTP GET at the path "/toggle-playing-status".
      *
      * @param request        The HttpServletRequest object representing the incoming HTTP request.
      * @param roomIdentifier The unique identifier for the room to toggle the playing status of the current song.
-     * @return ResponseEntity containing a String representing the result of toggling the playing status.
+     * @return ResponseEntity containing the new PlaybackState, written to the response as JSON.
      * The response may include one of the following HTTP statuses:
-     * - HttpStatus.OK (200) if the playing status is successfully toggled and authenticated with Spotify.
-     * - HttpStatus.INTERNAL_SERVER_ERROR (500) if an internal error occurs during the process of toggling the playing status.
+     * - HttpStatus.OK (200) if the playing status is toggled.
+     * - HttpStatus.BAD_GATEWAY (502) if Spotify refused the toggle or did not answer in time, with the current PlaybackState.
      * - HttpStatus.NOT_FOUND (404) if the user is not authenticated with Spotify.
      * - HttpStatus.NOT_ACCEPTABLE (406) if the user does not have the privilege to toggle the playing status.
      * - HttpStatus.BAD_REQUEST (400) if the specified room does not exist.
-     * @see DataManagement#getMatchingUserSession(String)
-     * @see SpotifyController#checkSpotifyAuthenticationStatus(SpotifyToken)
-     * @see SpotifyController#pauseCurrentlyPlayingSong(SpotifyToken)
-     * @see SpotifyController#resumeCurrentlyPausedSong(SpotifyToken)
+     * - HttpStatus.SERVICE_UNAVAILABLE (503) if the room engine could not toggle the play state in time.
+     * - HttpStatus.TOO_MANY_REQUESTS (429) if the guest or the room exceeded the rate limit of the endpoint, with Retry-After.
+     * @see #lookupRoom(String)
+     * @see Room#togglePlayback()
+     * @see RoomCommandExecutor#toggle(UserSession, PlaybackState)
      * @see #hasHostPrivileges(UserSession, String)
      */
     @RequestMapping(path = "/toggle-playing-status")
-    public ResponseEntity<String> togglePlayingStatus(HttpServletRequest request, @RequestParam("code") String roomIdentifier)
+    public ResponseEntity<Object> togglePlayingStatus(HttpServletRequest request, @RequestParam("code") String roomIdentifier)
     {
         HttpSession session = request.getSession();
         String userIdentifier = (String) session.getAttribute(SESSION_ATTRIBUTE);
-        Optional<UserSession> userSession = DataManagement.getMatchingUserSession(roomIdentifier);
+        Optional<UserSession> userSession = lookupRoom(roomIdentifier);
 
         if (userSession.isEmpty())
         {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
         }
 
+        ResponseEntity<Object> rateLimited = rateLimit("toggle-playing-status", request, roomIdentifier);
+        if (rateLimited != null)
+        {
+            return rateLimited;
+        }
+
         SpotifyToken spotifyToken = userSession.get().getUserSpotifyToken();
 
         if (spotifyToken == null)
@@ -302,72 +533,74 @@ public class SpotifyApiController {
         spotifyController.checkSpotifyAuthenticationStatus(spotifyToken);
         Room userRoom = userSession.get().getUserRoom();
 
-        if (!userRoom.isGuestCanPause() && !hasHostPrivileges(userSession.get(), userIdentifier))
+        if (!userRoom.getState().isGuestCanPause() && !hasHostPrivileges(userSession.get(), userIdentifier))
         {
             return ResponseEntity.status(HttpStatus.NOT_ACCEPTABLE).build();
         }
 
-        if (userRoom.isCurrentlyPlaying())
-        {
+        PlaybackState playbackState = roomEngine.execute(roomIdentifier, () -> {
+            PlaybackState toggled = userRoom.togglePlayback();
+            userRoom.publishPlaybackState(toggled);
+            return toggled;
+        });
+        CompletableFuture<Void> toggle = roomCommandExecutor.toggle(userSession.get(), playbackState);
 
-            try
-            {
-                spotifyController.pauseCurrentlyPlayingSong(spotifyToken);
-                return ResponseEntity.status(HttpStatus.OK).build();
-            } catch (ParseException | SpotifyWebApiException | IOException e)
-            {
-                logger.warn("togglePlayingStatus(): Error pause currently playing song.");
-                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
-            }
-
-        }
-        else
+        if (!awaitCommand(toggle))
         {
-
-            try
-            {
-                spotifyController.resumeCurrentlyPausedSong(spotifyToken);
-                return ResponseEntity.status(HttpStatus.OK).build();
-            } catch (ParseException | SpotifyWebApiException | IOException e)
-            {
-                logger.warn("togglePlayingStatus(): Error resuming currently paused song.");
-                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
-            }
-
+            // The executor reverted the state already, unless another toggle changed it in the meantime
+            return ResponseEntity.status(HttpStatus.BAD_GATEWAY).body(userRoom.getPlaybackState());
         }
+
+        return ResponseEntity.status(HttpStatus.OK).body(playbackState);
     }
 
 
     /**
      * Skips the currently playing song in the specified room identified by 'roomIdentifier'.
+     * The host skips right away, a guest casts a vote. The vote reaching the room's votesToSkip skips the song,
+     * votes and threshold check are atomic, so concurrent votes lead to exactly one skip per threshold crossing.
+     * The votes only count for the song they were cast against and are cleared once Spotify skipped it. If Spotify
+     * refuses the skip the votes count again and the next vote retries it.
      * This method is accessed via HTTP GET at the path "/skip-song".
      *
      * @param request        The HttpServletRequest object representing the incoming HTTP request.
      * @param roomIdentifier The unique identifier for the room to skip the currently playing song.
+     * @param songId         The Spotify URI of the song the guest wants to skip, the current song if absent.
      * @return ResponseEntity containing a String representing the result of skipping the song or a message indicating a vote cast.
      * The response may include one of the following HTTP statuses:
-     * - HttpStatus.OK (200) if the song is successfully skipped and authenticated with Spotify.
+     * - HttpStatus.OK (200) if the song is successfully skipped or the vote is counted.
      * - HttpStatus.INTERNAL_SERVER_ERROR (500) if an internal error occurs during the process of skipping the song.
      * - HttpStatus.NOT_FOUND (404) if the user is not authenticated with Spotify or the specified room does not exist.
      * - HttpStatus.NOT_ACCEPTABLE (406) if the user has already cast a vote to skip the song.
-     * @see DataManagement#getMatchingUserSession(String)
+     * - HttpStatus.CONFLICT (409) if the song voted for is no longer the current song.
+     * - HttpStatus.SERVICE_UNAVAILABLE (503) if the room engine could not count the vote in time.
+     * - HttpStatus.TOO_MANY_REQUESTS (429) if the guest or the room exceeded the rate limit of the endpoint, with Retry-After.
+     * @see #lookupRoom(String)
      * @see SpotifyController#checkSpotifyAuthenticationStatus(SpotifyToken)
-     * @see SpotifyController#skipCurrentlyPlayingSong(SpotifyToken)
+     * @see RoomCommandExecutor#skip(UserSession, String)
      * @see #hasHostPrivileges(UserSession, String)
-     * @see Vote
+     * @see Room#castVote(Vote)
+     * @see RoomEngine#execute(String, java.util.function.Supplier)
      */
     @GetMapping(path = "skip-song")
-    public ResponseEntity<String> skipSong(HttpServletRequest request, @RequestParam("code") String roomIdentifier)
+    public ResponseEntity<byte[]> skipSong(HttpServletRequest request, @RequestParam("code") String roomIdentifier,
+                                           @RequestParam(value = "songId", required = false) String songId)
     {
         HttpSession session = request.getSession();
         String userIdentifier = (String) session.getAttribute(SESSION_ATTRIBUTE);
-        Optional<UserSession> userSession = DataManagement.getMatchingUserSession(roomIdentifier);
+        Optional<UserSession> userSession = lookupRoom(roomIdentifier);
 
         if (userSession.isEmpty())
         {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
         }
 
+        ResponseEntity<byte[]> rateLimited = rateLimit("skip-song", request, roomIdentifier);
+        if (rateLimited != null)
+        {
+            return rateLimited;
+        }
+
         SpotifyToken spotifyToken = userSession.get().getUserSpotifyToken();
         spotifyController.checkSpotifyAuthenticationStatus(spotifyToken);
         UserSession currentUserSession = userSession.get();
@@ -378,35 +611,55 @@ public class SpotifyApiController {
         }
 
 
-        if (!hasHostPrivileges(currentUserSession, userIdentifier) && !currentUserSession.getUserRoom().hasUserAlreadyVoted(userIdentifier))
+        Room room = currentUserSession.getUserRoom();
+        String currentSong = room.getState().getCurrentSong();
+        boolean hostPrivileges = hasHostPrivileges(currentUserSession, userIdentifier);
+
+        if (!hostPrivileges)
         {
-            currentUserSession.getUserRoom().getVoteList().add(new Vote(userIdentifier, currentUserSession.getUserRoom().getCurrentSong()));
-            if (currentUserSession.getUserRoom().getVoteListLength() < currentUserSession.getUserRoom().getVotesToSkip())
+            String votedSong = songId != null ? songId : currentSong;
+            VoteOutcome voteOutcome = roomEngine.execute(roomIdentifier, () -> room.castVote(new Vote(userIdentifier, votedSong)));
+
+            if (voteOutcome == VoteOutcome.STALE_SONG)
             {
-                return ResponseEntity.ok(createSimpleJsonMessage("voted"));
+                return ResponseEntity.status(HttpStatus.CONFLICT).build();
             }
-            else
+
+            if (voteOutcome == VoteOutcome.ALREADY_VOTED)
             {
-                return ResponseEntity.status(HttpStatus.NOT_ACCEPTABLE).body("");
+                return ResponseEntity.status(HttpStatus.NOT_ACCEPTABLE).build();
             }
-        }
 
+            votes.increment();
+            if (voteOutcome == VoteOutcome.COUNTED)
+            {
+                return jsonMessage(JsonPayloads.MESSAGE_VOTED);
+            }
+        }
 
-        if (hasHostPrivileges(currentUserSession, userIdentifier) || currentUserSession.getUserRoom().getVoteListLength() >= currentUserSession.getUserRoom().getVotesToSkip())
+        if (!awaitCommand(roomCommandExecutor.skip(currentUserSession, currentSong)))
         {
-            try
-            {
-                spotifyController.skipCurrentlyPlayingSong(currentUserSession.getUserSpotifyToken());
-                currentUserSession.getUserRoom().clearVoteList();
-                return ResponseEntity.ok().body(createSimpleJsonMessage("skipped"));
-            } catch (ParseException | SpotifyWebApiException | IOException e)
+            logger.warn("skipSong(): Error skipping currently playing song.");
+
+            if (!hostPrivileges)
             {
-                logger.warn("skipSong(): Error skipping currently playing song.");
-                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("");
+                submitFollowUp(roomIdentifier, room::abortSkip);
             }
+
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
 
-        return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        submitFollowUp(roomIdentifier, () -> {
+            room.completeSkip(currentSong);
+
+            if (hostPrivileges)
+            {
+                room.clearVoteList();
+            }
+        });
+
+        (hostPrivileges ? hostSkips : voteSkips).increment();
+        return jsonMessage(JsonPayloads.MESSAGE_SKIPPED);
     }
 
     /**
@@ -421,17 +674,17 @@ public class SpotifyApiController {
      * - HttpStatus.INTERNAL_SERVER_ERROR (500) if an internal error occurs during the process of the rollback.
      * - HttpStatus.NOT_FOUND (404) if the user is not authenticated with Spotify or the specified room does not exist.
      * - HttpStatus.NOT_ACCEPTABLE (406) if the user does not have the privilege to perform the rollback.
-     * @see DataManagement#getMatchingUserSession(String)
+     * @see #lookupRoom(String)
      * @see SpotifyController#checkSpotifyAuthenticationStatus(SpotifyToken)
-     * @see SpotifyController#rollBackToPreviousSong(SpotifyToken)
+     * @see RoomCommandExecutor#rollback(UserSession, String)
      * @see #hasHostPrivileges(UserSession, String)
      */
     @GetMapping(path = "rollback-song")
-    public ResponseEntity<String> rollBack(HttpServletRequest request, @RequestParam("code") String roomIdentifier)
+    public ResponseEntity<byte[]> rollBack(HttpServletRequest request, @RequestParam("code") String roomIdentifier)
     {
         HttpSession session = request.getSession();
         String userIdentifier = (String) session.getAttribute(SESSION_ATTRIBUTE);
-        Optional<UserSession> userSession = DataManagement.getMatchingUserSession(roomIdentifier);
+        Optional<UserSession> userSession = lookupRoom(roomIdentifier);
 
         if (userSession.isEmpty())
         {
@@ -450,15 +703,13 @@ public class SpotifyApiController {
         if (hasHostPrivileges(currentUserSession, userIdentifier))
         {
 
-            try
-            {
-                spotifyController.rollBackToPreviousSong(spotifyToken);
-                return ResponseEntity.ok().body(createSimpleJsonMessage("rollback"));
-            } catch (IOException | ParseException | SpotifyWebApiException e)
+            if (!awaitCommand(roomCommandExecutor.rollback(currentUserSession, currentUserSession.getUserRoom().getState().getCurrentSong())))
             {
                 logger.warn("rollBack() - Error rolling back to the previous song.");
                 return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
             }
+
+            return jsonMessage(JsonPayloads.MESSAGE_ROLLBACK);
         }
         else
         {
@@ -469,46 +720,41 @@ public class SpotifyApiController {
 
     /**
      * Searches for songs based on the specified query string and returns the search results in JSON format.
+     * Queries searched before are answered from the search cache without a request to Spotify.
      * This method is accessed via HTTP POST at the path "/search-song".
      *
+     * @param request           The HttpServletRequest object representing the incoming HTTP request.
      * @param searchSongRequest The SearchSongRequest object containing the search query string and room identifier.
-     * @return ResponseEntity containing a String representing the search results in JSON format.
+     * @return ResponseEntity containing the search results, written to the response as JSON.
      * The response may include one of the following HTTP statuses:
      * - HttpStatus.OK (200) if the search is successful, and the response body contains the search results in JSON format.
      * - HttpStatus.NOT_FOUND (404) if the user's session is not found or is invalid, or the specified room does not exist.
+     * - HttpStatus.INTERNAL_SERVER_ERROR (500) if the search request to Spotify fails.
+     * - HttpStatus.TOO_MANY_REQUESTS (429) if the guest or the room exceeded the rate limit of the endpoint, with Retry-After.
      * @see SearchSongRequest
-     * @see DataManagement#getMatchingUserSession(String)
-     * @see SpotifyController#checkSpotifyAuthenticationStatus(SpotifyToken)
-     * @see SpotifyController#searchSong(SpotifyToken, String)
-     * @see Track
+     * @see #lookupRoom(String)
+     * @see SearchService#search(SpotifyToken, String)
      */
     @PostMapping(path = "/search-song")
-    public ResponseEntity<String> searchSong(@RequestBody SearchSongRequest searchSongRequest)
+    public ResponseEntity<List<SearchSongResult>> searchSong(HttpServletRequest request, @RequestBody SearchSongRequest searchSongRequest)
     {
-        Optional<UserSession> userSession = DataManagement.getMatchingUserSession(searchSongRequest.getRoomIdentifier());
+        Optional<UserSession> userSession = lookupRoom(searchSongRequest.getRoomIdentifier());
 
         if (userSession.isEmpty())
         {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
         }
 
-        SpotifyToken spotifyToken = userSession.get().getUserSpotifyToken();
-        spotifyController.checkSpotifyAuthenticationStatus(spotifyToken);
+        ResponseEntity<List<SearchSongResult>> rateLimited = rateLimit("search-song", request, searchSongRequest.getRoomIdentifier());
+        if (rateLimited != null)
+        {
+            return rateLimited;
+        }
 
         try
         {
-            Track[] searchResult = spotifyController.searchSong(spotifyToken, searchSongRequest.getQueryString());
-
-            List<SearchSongResult> searchResults = Arrays.stream(searchResult)
-                    .map(result -> new SearchSongResult(
-                            result.getArtists()[0].getName(),
-                            result.getName(),
-                            result.getAlbum().getImages()[2].getUrl(),
-                            result.getUri()
-                    ))
-                    .toList();
-
-            return ResponseEntity.status(HttpStatus.OK).body(valueAsString(searchResults));
+            List<SearchSongResult> searchResults = searchService.search(userSession.get().getUserSpotifyToken(), searchSongRequest.getQueryString());
+            return ResponseEntity.status(HttpStatus.OK).body(searchResults);
         } catch (IOException | ParseException | SpotifyWebApiException e)
         {
             logger.warn("searchSong() - Error searching song.");
@@ -516,25 +762,108 @@ public class SpotifyApiController {
         }
     }
 
+    /**
+     * Opens the search-as-you-type stream of the requesting guest for the room identified by 'roomIdentifier'.
+     * The results of the queries posted to "/search-stream" are sent as server-sent events named "results",
+     * each carrying a SearchSongEvent. Partial events are answered from the results of a cached prefix of the
+     * query and are followed by the full result, unless the guest typed on in the meantime.
+     * Opening a new stream closes the previous stream of the same guest.
+     * This method is accessed via HTTP GET at the path "/search-stream".
+     *
+     * @param request        The HttpServletRequest object representing the incoming HTTP request.
+     * @param roomIdentifier The unique identifier for the room to search songs for.
+     * @return ResponseEntity containing the event stream.
+     * The response may include one of the following HTTP statuses:
+     * - HttpStatus.OK (200) if the stream is opened.
+     * - HttpStatus.NOT_FOUND (404) if the specified room does not exist.
+     * @see SearchService#openStream(String)
+     * @see SearchSongEvent
+     */
+    @GetMapping(path = "/search-stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> openSearchStream(HttpServletRequest request, @RequestParam("code") String roomIdentifier)
+    {
+        if (lookupRoom(roomIdentifier).isEmpty())
+        {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+
+        return ResponseEntity.ok(searchService.openStream(UserIdentifiers.checkOrCreateUserIdentifierInSession(request)));
+    }
 
     /**
-     * Adds a track to the playback queue for the specified room identified by 'addTrackToPlaybackRequest.getRoomIdentifier()'.
+     * Submits the current query of the requesting guest to the guest's open search stream.
+     * The upstream search is debounced, and any search still pending or running for the guest's previous
+     * query is cancelled, so typing a word letter by letter costs a single request to Spotify.
+     * This method is accessed via HTTP POST at the path "/search-stream".
+     *
+     * @param request           The HttpServletRequest object representing the incoming HTTP request.
+     * @param searchSongRequest The SearchSongRequest object containing the search query string and room identifier.
+     * @return ResponseEntity without body, the results are sent to the search stream.
+     * The response may include one of the following HTTP statuses:
+     * - HttpStatus.ACCEPTED (202) if the query is submitted.
+     * - HttpStatus.BAD_REQUEST (400) if the room owner is not authenticated with Spotify.
+     * - HttpStatus.NOT_FOUND (404) if the specified room does not exist.
+     * - HttpStatus.CONFLICT (409) if the guest has no open search stream.
+     * - HttpStatus.TOO_MANY_REQUESTS (429) if the guest or the room exceeded the rate limit of the endpoint, with Retry-After.
+     * @see SearchService#submit(String, SpotifyToken, String)
+     */
+    @PostMapping(path = "/search-stream")
+    public ResponseEntity<Void> submitSearchQuery(HttpServletRequest request, @RequestBody SearchSongRequest searchSongRequest)
+    {
+        Optional<UserSession> userSession = lookupRoom(searchSongRequest.getRoomIdentifier());
+
+        if (userSession.isEmpty())
+        {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+
+        ResponseEntity<Void> rateLimited = rateLimit("search-stream", request, searchSongRequest.getRoomIdentifier());
+        if (rateLimited != null)
+        {
+            return rateLimited;
+        }
+
+        SpotifyToken spotifyToken = userSession.get().getUserSpotifyToken();
+
+        if (spotifyToken == null)
+        {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+
+        if (!searchService.submit(UserIdentifiers.checkOrCreateUserIdentifierInSession(request), spotifyToken, searchSongRequest.getQueryString()))
+        {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+
+        return ResponseEntity.status(HttpStatus.ACCEPTED).build();
+    }
+
+
+    /**
+     * Adds a track to the queue of the room identified by 'addTrackToPlaybackRequest.getRoomIdentifier()'.
+     * The track is first placed in the room's own queue, which schedules tracks round-robin across guests.
+     * Only the next {@link TrackQueue#PUSH_AHEAD} tracks are handed to the Spotify playback queue.
      * This method is accessed via HTTP POST at the path "/add-track-to-playback".
      *
+     * @param request                   The HttpServletRequest object representing the incoming HTTP request.
      * @param addTrackToPlaybackRequest The AddTrackToPlaybackRequest object containing the room identifier and track URI to add.
-     * @return ResponseEntity containing a Boolean indicating the success of adding the track to the playback queue.
+     * @return ResponseEntity containing a Boolean indicating the success of adding the track to the queue.
      * The response may include one of the following HTTP statuses:
-     * - HttpStatus.OK (200) if the track is successfully added to the playback queue and authenticated with Spotify.
+     * - HttpStatus.OK (200) if the track is successfully added to the queue.
      * - HttpStatus.NOT_FOUND (404) if the user's session is not found or is invalid, or the specified room does not exist.
+     * - HttpStatus.NOT_ACCEPTABLE (406) if the track is already waiting in the queue.
+     * - HttpStatus.BAD_GATEWAY (502) if the track was due right away and Spotify refused it, it is not kept in the queue.
+     * - HttpStatus.SERVICE_UNAVAILABLE (503) if the room engine could not queue the track in time.
+     * - HttpStatus.TOO_MANY_REQUESTS (429) if the guest or the room exceeded the rate limit of the endpoint, with Retry-After.
      * @see AddTrackToPlaybackRequest
-     * @see DataManagement#getMatchingUserSession(String)
-     * @see SpotifyController#checkSpotifyAuthenticationStatus(SpotifyToken)
-     * @see SpotifyController#addTrackToPlayBack(SpotifyToken, String)
+     * @see TrackQueue#enqueue(String, String, String, String, String)
+     * @see Room#recordQueued(QueuedTrack)
+     * @see #pushQueuedTracks(UserSession)
      */
     @PostMapping(path = "add-track-to-playback")
-    public ResponseEntity<Boolean> putSongInPlaybackQueue(@RequestBody AddTrackToPlaybackRequest addTrackToPlaybackRequest)
+    public ResponseEntity<Boolean> putSongInPlaybackQueue(HttpServletRequest request, @RequestBody AddTrackToPlaybackRequest addTrackToPlaybackRequest)
     {
-        Optional<UserSession> userSession = DataManagement.getMatchingUserSession(addTrackToPlaybackRequest.getRoomIdentifier());
+        Optional<UserSession> userSession = lookupRoom(addTrackToPlaybackRequest.getRoomIdentifier());
 
         if (userSession.isEmpty())
         {
@@ -542,69 +871,544 @@ public class SpotifyApiController {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
         }
 
-        SpotifyToken spotifyToken = userSession.get().getUserSpotifyToken();
-        spotifyController.checkSpotifyAuthenticationStatus(spotifyToken);
+        ResponseEntity<Boolean> rateLimited = rateLimit("add-track-to-playback", request, addTrackToPlaybackRequest.getRoomIdentifier());
+        if (rateLimited != null)
+        {
+            return rateLimited;
+        }
 
-        try
+        Room room = userSession.get().getUserRoom();
+        String userIdentifier = UserIdentifiers.checkOrCreateUserIdentifierInSession(request);
+        QueuedTrack queuedTrack = roomEngine.execute(room.getRoomIdentifier(), () -> {
+            QueuedTrack enqueued = room.getTrackQueue().enqueue(
+                    userIdentifier,
+                    addTrackToPlaybackRequest.getTrackHref(),
+                    addTrackToPlaybackRequest.getSongName(),
+                    addTrackToPlaybackRequest.getArtistName(),
+                    addTrackToPlaybackRequest.getPictureURI()
+            );
+
+            if (enqueued != null)
+            {
+                room.recordQueued(enqueued);
+            }
+            return enqueued;
+        });
+
+        if (queuedTrack == null)
         {
-            spotifyController.addTrackToPlayBack(spotifyToken, addTrackToPlaybackRequest.getTrackHref());
-            return ResponseEntity.status(HttpStatus.OK).body(true);
-        } catch (IOException | ParseException | SpotifyWebApiException e)
+            return ResponseEntity.status(HttpStatus.NOT_ACCEPTABLE).body(false);
+        }
+
+        if (pushQueuedTracks(userSession.get()).contains(queuedTrack))
         {
-            return ResponseEntity.internalServerError().build();
+            return ResponseEntity.status(HttpStatus.BAD_GATEWAY).body(false);
+        }
+
+        return ResponseEntity.status(HttpStatus.OK).body(true);
+    }
+
+    /**
+     * Retrieves the queue of the specified room identified by 'roomIdentifier' in playing order.
+     * The queue is served from memory, no request is sent to Spotify.
+     * This method is accessed via HTTP GET at the path "/queue".
+     *
+     * @param roomIdentifier The unique identifier for the room to fetch the queue of.
+     * @return ResponseEntity containing the queued tracks, written to the response as JSON.
+     * The response may include one of the following HTTP statuses:
+     * - HttpStatus.OK (200) if the queue is returned successfully.
+     * - HttpStatus.NOT_FOUND (404) if the specified room does not exist.
+     * - HttpStatus.SERVICE_UNAVAILABLE (503) if the room engine could not read the queue in time.
+     * @see TrackQueue#getTracks()
+     */
+    @GetMapping(path = "/queue")
+    public ResponseEntity<List<QueuedTrack>> getQueue(@RequestParam("code") String roomIdentifier)
+    {
+        Optional<UserSession> userSession = lookupRoom(roomIdentifier);
+
+        if (userSession.isEmpty())
+        {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+
+        TrackQueue trackQueue = userSession.get().getUserRoom().getTrackQueue();
+        return ResponseEntity.ok(roomEngine.execute(roomIdentifier, trackQueue::getTracks));
+    }
+
+    /**
+     * Retrieves the tracks recently played in the specified room from the room's playback history,
+     * without a request to Spotify.
+     * This method is accessed via HTTP GET at the path "/recently-played".
+     *
+     * @param roomIdentifier The unique identifier for the room to fetch the played tracks of.
+     * @param limit          The maximum number of tracks to return, at most {@link PlaybackHistory#CAPACITY}.
+     * @return ResponseEntity containing the played tracks, newest first, written to the response as JSON.
+     * The response may include one of the following HTTP statuses:
+     * - HttpStatus.OK (200) if the played tracks are returned successfully.
+     * - HttpStatus.NOT_FOUND (404) if the specified room does not exist.
+     * @see PlaybackHistory#getRecent(int)
+     */
+    @GetMapping(path = "/recently-played")
+    public ResponseEntity<List<PlayedTrack>> getRecentlyPlayed(@RequestParam("code") String roomIdentifier, @RequestParam(value = "limit", defaultValue = "20") int limit)
+    {
+        Optional<UserSession> userSession = lookupRoom(roomIdentifier);
+
+        if (userSession.isEmpty())
+        {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
         }
+
+        return ResponseEntity.ok(userSession.get().getUserRoom().getPlaybackHistory().getRecent(limit));
+    }
+
+    /**
+     * Upvotes a track waiting in the queue of the specified room, which moves it ahead of less popular tracks of the same round.
+     * This method is accessed via HTTP GET at the path "/upvote-track".
+     *
+     * @param request        The HttpServletRequest object representing the incoming HTTP request.
+     * @param roomIdentifier The unique identifier for the room the track is queued in.
+     * @param trackHref      The Spotify URI of the queued track.
+     * @return ResponseEntity containing a String representing the result of the upvote.
+     * The response may include one of the following HTTP statuses:
+     * - HttpStatus.OK (200) if the upvote is counted.
+     * - HttpStatus.NOT_ACCEPTABLE (406) if the user already upvoted the track or the track is not waiting in the queue.
+     * - HttpStatus.NOT_FOUND (404) if the specified room does not exist.
+     * - HttpStatus.SERVICE_UNAVAILABLE (503) if the room engine could not count the upvote in time.
+     * - HttpStatus.TOO_MANY_REQUESTS (429) if the guest or the room exceeded the rate limit of the endpoint, with Retry-After.
+     * @see TrackQueue#upvote(String, String)
+     */
+    @GetMapping(path = "/upvote-track")
+    public ResponseEntity<byte[]> upvoteTrack(HttpServletRequest request, @RequestParam("code") String roomIdentifier, @RequestParam("trackHref") String trackHref)
+    {
+        Optional<UserSession> userSession = lookupRoom(roomIdentifier);
+
+        if (userSession.isEmpty())
+        {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+
+        ResponseEntity<byte[]> rateLimited = rateLimit("upvote-track", request, roomIdentifier);
+        if (rateLimited != null)
+        {
+            return rateLimited;
+        }
+
+        TrackQueue trackQueue = userSession.get().getUserRoom().getTrackQueue();
+        String userIdentifier = UserIdentifiers.checkOrCreateUserIdentifierInSession(request);
+
+        if (!roomEngine.execute(roomIdentifier, () -> trackQueue.upvote(userIdentifier, trackHref)))
+        {
+            return ResponseEntity.status(HttpStatus.NOT_ACCEPTABLE).build();
+        }
+
+        return jsonMessage(JsonPayloads.MESSAGE_UPVOTED);
     }
 
     //################
     //HELPER FUNCTIONS
     //################
 
-    private String createSimpleJsonMessage(String message)
+    /**
+     * Wraps a pre-serialized JSON message into a response, so the bytes are written as they are.
+     *
+     * @param payload The serialized message, see {@link JsonPayloads}.
+     * @return ResponseEntity with HttpStatus.OK (200) and the payload as JSON body.
+     */
+    private ResponseEntity<byte[]> jsonMessage(byte[] payload)
     {
-        return "{\"message\": \"" + message + "\"}";
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(payload);
     }
 
-    private SongContext buildCurrentSongContextJSON(CurrentlyPlayingContext currentlyPlayingContext, UserSession userSession)
+    /**
+     * Serves the cached bytes of a song context snapshot in the format negotiated from the Accept header.
+     * Spring answers requests whose If-None-Match header matches the ETag with HttpStatus.NOT_MODIFIED (304)
+     * and without a body.
+     *
+     * @param request             The HttpServletRequest object representing the incoming HTTP request.
+     * @param songContextSnapshot The snapshot to serve.
+     * @return ResponseEntity with the snapshot's ETag and serialized song context.
+     */
+    private ResponseEntity<Object> songContextResponse(HttpServletRequest request, SongContextSnapshot songContextSnapshot)
     {
-        Track track = (Track) currentlyPlayingContext.getItem();
-        int votesToSkip = userSession.getUserRoom().getVotesToSkip();
-        int currentVotesToSkip = userSession.getUserRoom().getVoteList().size();
+        PayloadFormat payloadFormat = PayloadFormat.negotiate(request.getHeader(HttpHeaders.ACCEPT));
+
+        return ResponseEntity.ok()
+                .eTag(songContextSnapshot.getETag(payloadFormat))
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT)
+                .contentType(payloadFormat.getMediaType())
+                .body(songContextSnapshot.getPayload(payloadFormat));
+    }
 
-        return new SongContext(
-                track.getName(),
-                track.getArtists()[0].getName(),
-                track.getDurationMs(),
-                currentlyPlayingContext.getProgress_ms(),
-                track.getAlbum().getImages()[0].getUrl(),
-                currentlyPlayingContext.getIs_playing(),
-                currentVotesToSkip,
-                votesToSkip
-        );
+    /**
+     * Waits for a command handed to the room's command executor.
+     *
+     * @param command The future returned by the executor.
+     * @return true if the command was executed or collapsed into one that was, false if it failed or timed out.
+     */
+    private boolean awaitCommand(CompletableFuture<Void> command)
+    {
+        try
+        {
+            command.get(spotifyPlaybackProperties.getCommandTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            return true;
+        } catch (ExecutionException | TimeoutException e)
+        {
+            return false;
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return false;
+        }
     }
 
-    private boolean hasHostPrivileges(UserSession userSession, String userIdentifier)
+    /**
+     * Answers with the device list in the negotiated format, whose ETag differs per format like the song context's.
+     */
+    private ResponseEntity<Object> devicesResponse(DeviceSnapshot deviceSnapshot, PayloadFormat payloadFormat)
     {
-        UserSession currentSession = DataManagement.userSessionCache.get(userIdentifier);
-        return userSession.equals(currentSession);
+        return ResponseEntity.ok()
+                .eTag(deviceSnapshot.getETag(payloadFormat))
+                .contentType(payloadFormat.getMediaType())
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(deviceSnapshot.getDevices());
+    }
+
+    /**
+     * Returns the published song context of the room if it is fresh, otherwise fetches it from Spotify first.
+     * Only one request per room fetches it, the requests finding the snapshot stale in the meantime wait for
+     * that fetch and share its result or failure.
+     *
+     * @param userSession The session of the room owner.
+     * @return The current snapshot, or null if nothing is playing and a device has to be chosen.
+     * @see SongContextSnapshot#isFresh()
+     * @see Room#claimSongContextRefresh(CompletableFuture)
+     * @see #refreshSongContext(UserSession)
+     */
+    private SongContextSnapshot currentSongContext(UserSession userSession) throws IOException, ParseException, SpotifyWebApiException
+    {
+        Room room = userSession.getUserRoom();
+        SongContextSnapshot songContextSnapshot = room.getSongContextSnapshot();
+
+        if (songContextSnapshot != null && songContextSnapshot.isFresh())
+        {
+            songContextHits.increment();
+            return songContextSnapshot;
+        }
+
+        CompletableFuture<SongContextSnapshot> refresh = new CompletableFuture<>();
+        CompletableFuture<SongContextSnapshot> inFlight = room.claimSongContextRefresh(refresh);
+
+        if (inFlight != null)
+        {
+            songContextShared.increment();
+            return awaitRefresh(inFlight);
+        }
+
+        try
+        {
+            // A refresh may have ended between reading the snapshot and claiming the next one
+            songContextSnapshot = room.getSongContextSnapshot();
+
+            if (songContextSnapshot == null || !songContextSnapshot.isFresh())
+            {
+                songContextMisses.increment();
+                songContextSnapshot = refreshSongContext(userSession);
+            }
+            else
+            {
+                songContextHits.increment();
+            }
+
+            refresh.complete(songContextSnapshot);
+            return songContextSnapshot;
+        } catch (IOException | ParseException | SpotifyWebApiException | RuntimeException e)
+        {
+            refresh.completeExceptionally(e);
+            throw e;
+        } finally
+        {
+            room.releaseSongContextRefresh(refresh);
+        }
     }
 
-    String valueAsString(Object value)
+    /**
+     * Waits for the song context refresh of another request and rethrows its failure.
+     *
+     * @param refresh The refresh in flight.
+     * @return The refreshed snapshot, or null if nothing is playing and a device has to be chosen.
+     */
+    private SongContextSnapshot awaitRefresh(CompletableFuture<SongContextSnapshot> refresh) throws IOException, ParseException, SpotifyWebApiException
     {
         try
         {
-            return objectMapper.writeValueAsString(value);
-        } catch (JsonProcessingException e)
+            return refresh.join();
+        } catch (CompletionException e)
         {
-            logger.warn("valueAsString(): Error parsing  devices.", e);
-            return "";
+            if (e.getCause() instanceof IOException ioException)
+            {
+                throw ioException;
+            }
+            if (e.getCause() instanceof ParseException parseException)
+            {
+                throw parseException;
+            }
+            if (e.getCause() instanceof SpotifyWebApiException spotifyWebApiException)
+            {
+                throw spotifyWebApiException;
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException)
+            {
+                throw runtimeException;
+            }
+            throw e;
         }
     }
-}
 
+    /**
+     * Fetches the playback state of the room from Spotify and publishes it as the room's song context.
+     * The play state reported by Spotify reconciles the room's optimistic play state, and a track not played
+     * before is recorded in the room's playback history, which clears the skip votes of the previous song.
+     *
+     * @param userSession The session of the room owner.
+     * @return The published snapshot, or null if nothing is playing and a device has to be chosen.
+     * @see Room#reconcilePlayback(boolean, long)
+     * @see Room#recordPlaying(PlayedTrack)
+     * @see RoomEngine#execute(String, java.util.function.Supplier)
+     * @see Room#publishSongContext(SongContext, PayloadWriters)
+     */
+    SongContextSnapshot refreshSongContext(UserSession userSession) throws IOException, ParseException, SpotifyWebApiException
+    {
+        SpotifyToken spotifyToken = userSession.getUserSpotifyToken();
+        Room room = userSession.getUserRoom();
+
+        spotifyController.checkSpotifyAuthenticationStatus(spotifyToken);
+        long fetchStartedAt = System.currentTimeMillis();
+        CurrentlyPlayingContext currentlyPlayingContext = spotifyController.currentlyPlayingContext(spotifyToken);
+        roomCommandExecutor.playbackFetched(room, fetchStartedAt);
 
+        if (currentlyPlayingContext == null)
+        {
+            deviceCache.invalidate(spotifyToken);
+            return null;
+        }
+
+        String songUri = currentlyPlayingContext.getItem() != null ? currentlyPlayingContext.getItem().getUri() : null;
+        PlayedTrack playedTrack = null;
+
+        if (currentlyPlayingContext.getItem() instanceof Track track)
+        {
+            TrackMetadata trackMetadata = TrackMetadata.of(track);
+            trackMetadataStore.put(trackMetadata);
+            playedTrack = new PlayedTrack(
+                    trackMetadata.getUri(),
+                    trackMetadata.getSongName(),
+                    trackMetadata.getArtistName(),
+                    trackMetadata.getPictureURI(),
+                    System.currentTimeMillis() - currentlyPlayingContext.getProgress_ms(),
+                    false
+            );
+        }
 
+        // Spotify's answer is applied to the room in one mutation, so no other mutation sees it half applied
+        PlayedTrack startedTrack = playedTrack;
+        SongContextSnapshot songContextSnapshot = roomEngine.execute(room.getRoomIdentifier(), () -> {
+            PlaybackState playbackState = room.reconcilePlayback(currentlyPlayingContext.getIs_playing(), spotifyPlaybackProperties.getConfirmGrace().toMillis());
 
+            if (songUri != null)
+            {
+                if (startedTrack != null)
+                {
+                    room.recordPlaying(startedTrack);
+                }
+                room.setCurrentSong(songUri);
+                room.getTrackQueue().markPlaying(songUri);
+            }
 
+            return room.publishSongContext(buildCurrentSongContextJSON(currentlyPlayingContext, playbackState, userSession), payloadWriters);
+        });
 
+        if (songUri != null)
+        {
+            pushQueuedTracks(userSession);
+        }
 
+        return songContextSnapshot;
+    }
 
+    /**
+     * Looks up the session owning the given room inside a spotibot.room.lookup observation.
+     * The roomIdentifier is also attached to the observation of the current request, from where
+     * it is copied onto every nested span.
+     *
+     * @param roomIdentifier The unique identifier for the room to look up.
+     * @return The session of the room owner, or an empty Optional if the room does not exist.
+     * @see DataManagement#getMatchingUserSession(String)
+     * @see TracingConfiguration#roomIdentifierObservationFilter()
+     */
+    private Optional<UserSession> lookupRoom(String roomIdentifier)
+    {
+        return lookupRoomEntry(roomIdentifier).map(Map.Entry::getValue);
+    }
+
+    /**
+     * Like {@link #lookupRoom(String)}, but also returns the userIdentifier of the room owner.
+     *
+     * @param roomIdentifier The unique identifier for the room to look up.
+     * @return The room owner and their session, or an empty Optional if the room does not exist.
+     * @see DataManagement#getMatchingEntry(String)
+     */
+    private Optional<Map.Entry<String, UserSession>> lookupRoomEntry(String roomIdentifier)
+    {
+        Observation requestObservation = observationRegistry.getCurrentObservation();
+
+        if (requestObservation != null && roomIdentifier != null)
+        {
+            requestObservation.highCardinalityKeyValue(TracingConfiguration.ROOM_IDENTIFIER, roomIdentifier);
+        }
+
+        if (roomIdentifier != null)
+        {
+            // Request bodies are not visible to the LoggingContextFilter, which clears the MDC after the request
+            MDC.put(LoggingContextFilter.ROOM_IDENTIFIER, roomIdentifier);
+        }
+
+        return Observation.createNotStarted("spotibot.room.lookup", observationRegistry)
+                .highCardinalityKeyValue(TracingConfiguration.ROOM_IDENTIFIER, String.valueOf(roomIdentifier))
+                .observe(() -> DataManagement.getMatchingEntry(roomIdentifier));
+    }
+
+    /**
+     * Hands the next due tracks of the room queue to the Spotify playback queue.
+     * Tracks Spotify refuses for good, e.g. unknown tracks, are dropped. Tracks that failed for any other reason
+     * are put back into the room queue and pushed again later. The room queue is only changed through the room engine,
+     * the tracks are handed to Spotify outside of it.
+     *
+     * @param userSession The session of the room owner.
+     * @return The tracks Spotify refused.
+     */
+    private List<QueuedTrack> pushQueuedTracks(UserSession userSession)
+    {
+        SpotifyToken spotifyToken = userSession.getUserSpotifyToken();
+
+        if (spotifyToken == null)
+        {
+            return List.of();
+        }
+
+        spotifyController.checkSpotifyAuthenticationStatus(spotifyToken);
+        String roomIdentifier = userSession.getUserRoom().getRoomIdentifier();
+        TrackQueue trackQueue = userSession.getUserRoom().getTrackQueue();
+
+        List<QueuedTrack> refusedTracks = new ArrayList<>();
+
+        for (QueuedTrack queuedTrack : roomEngine.execute(roomIdentifier, trackQueue::takeTracksToPush))
+        {
+            try
+            {
+                spotifyController.addTrackToPlayBack(spotifyToken, queuedTrack.getSongHref());
+            } catch (BadRequestException | NotFoundException | ForbiddenException e)
+            {
+                logger.warn("pushQueuedTracks(): Spotify refused track {}, dropping it.", queuedTrack.getSongHref(), e);
+                submitFollowUp(roomIdentifier, () -> trackQueue.discard(queuedTrack));
+                refusedTracks.add(queuedTrack);
+            } catch (IOException | ParseException | SpotifyWebApiException e)
+            {
+                logger.warn("pushQueuedTracks(): Error adding track to playback queue.", e);
+                submitFollowUp(roomIdentifier, () -> trackQueue.restore(queuedTrack));
+            }
+        }
+
+        return refusedTracks;
+    }
+
+    /**
+     * Posts the room mutation following a Spotify call that already happened, without waiting for it. The response
+     * reports the Spotify call, so a busy room engine does not fail it, the mutation is logged if it is not run.
+     *
+     * @param roomIdentifier The unique identifier for the room the mutation changes.
+     * @param mutation       The mutation, run on the shard owning the room.
+     * @see RoomEngine#submit(String, java.util.function.Supplier)
+     */
+    private void submitFollowUp(String roomIdentifier, Runnable mutation)
+    {
+        roomEngine.submit(roomIdentifier, () -> {
+            mutation.run();
+            return null;
+        }).whenComplete((result, e) -> {
+            if (e != null)
+            {
+                logger.warn("submitFollowUp(): Room {} was not updated after the Spotify call.", roomIdentifier, e);
+            }
+        });
+    }
+
+    /**
+     * Counts the request of the requesting guest against the inbound rate limit of the endpoint.
+     *
+     * @param endpoint       The endpoint name of the rate limit policy.
+     * @param request        The HttpServletRequest object representing the incoming HTTP request.
+     * @param roomIdentifier The unique identifier for the room the request is sent to.
+     * @return null if the request is admitted, otherwise a response with HttpStatus.TOO_MANY_REQUESTS (429) and Retry-After.
+     * @see InboundRateLimiter#tryAcquire(String, String, String)
+     */
+    private <T> ResponseEntity<T> rateLimit(String endpoint, HttpServletRequest request, String roomIdentifier)
+    {
+        long retryAfterSeconds = inboundRateLimiter.tryAcquire(endpoint, getClientIdentifier(request), roomIdentifier);
+
+        if (retryAfterSeconds == 0)
+        {
+            return null;
+        }
+
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .build();
+    }
+
+    /**
+     * Identifies the requesting client for rate limiting without creating a session: by its userIdentifier,
+     * otherwise by its session id or, for clients without session, by their address. Behind a reverse proxy the
+     * address is the client's from X-Forwarded-For, see server.forward-headers-strategy.
+     */
+    private String getClientIdentifier(HttpServletRequest request)
+    {
+        HttpSession session = request.getSession(false);
+        String userIdentifier = session != null ? (String) session.getAttribute(SESSION_ATTRIBUTE) : null;
+
+        if (userIdentifier != null)
+        {
+            return userIdentifier;
+        }
+
+        return session != null ? session.getId() : request.getRemoteAddr();
+    }
+
+    private SongContext buildCurrentSongContextJSON(CurrentlyPlayingContext currentlyPlayingContext, PlaybackState playbackState, UserSession userSession)
+    {
+        Track track = (Track) currentlyPlayingContext.getItem();
+        RoomState roomState = userSession.getUserRoom().getState();
+        int votesToSkip = roomState.getVotesToSkip();
+        int currentVotesToSkip = roomState.getVoteCount();
+
+        return new SongContext(
+                track.getName(),
+                track.getArtists()[0].getName(),
+                track.getDurationMs(),
+                currentlyPlayingContext.getProgress_ms(),
+                System.currentTimeMillis(),
+                track.getAlbum().getImages()[0].getUrl(),
+                playbackState.isPlaying(),
+                playbackState.getVersion(),
+                currentVotesToSkip,
+                votesToSkip
+        );
+    }
+
+    private boolean hasHostPrivileges(UserSession userSession, String userIdentifier)
+    {
+        UserSession currentSession = DataManagement.getUserSession(userIdentifier);
+        return userSession.equals(currentSession);
+    }
+}
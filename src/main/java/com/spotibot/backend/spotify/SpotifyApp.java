@@ -0,0 +1,80 @@
+package com.spotibot.backend.spotify;
+
+import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ One Spotify app of the {@link SpotifyAppPool} and its recent load. Requests are counted in a ring of one-second
+ buckets covering the load window; a bucket is reset by the first request of a new second, a request racing
+ that reset may be lost, which does not matter for an estimate.
+ */
+public final class SpotifyApp {
+    private static final long BUCKET_MILLIS = 1000;
+
+    @Getter
+    private final String id;
+    @Getter
+    private final String clientId;
+    @Getter
+    private final String clientSecret;
+    private final AtomicLongArray counts;
+    private final AtomicLongArray seconds;
+    private volatile long throttledUntil;
+
+    SpotifyApp(String id, String clientId, String clientSecret, int windowSeconds) {
+        this.id = id;
+        this.clientId = clientId;
+        this.clientSecret = clientSecret;
+        this.counts = new AtomicLongArray(Math.max(windowSeconds, 1));
+        this.seconds = new AtomicLongArray(Math.max(windowSeconds, 1));
+    }
+
+    /**
+     Counts requests sent with this app.
+     @param requests the number of requests
+     @param now the current time in epoch milliseconds
+     */
+    void record(long requests, long now) {
+        long second = now / BUCKET_MILLIS;
+        int slot = (int) (second % counts.length());
+        long slotSecond = seconds.get(slot);
+
+        if (slotSecond != second && seconds.compareAndSet(slot, slotSecond, second)) {
+            counts.set(slot, 0);
+        }
+
+        counts.addAndGet(slot, requests);
+    }
+
+    /**
+     Marks the app as rate limited by Spotify, so no new room is pinned to it while another app is not.
+     @param retryAfterSeconds the Retry-After of the rate limited response, 0 if it had none
+     @param now the current time in epoch milliseconds
+     */
+    void throttle(int retryAfterSeconds, long now) {
+        throttledUntil = now + Math.max(retryAfterSeconds, 1) * 1000L;
+    }
+
+    boolean isThrottled(long now) {
+        return now < throttledUntil;
+    }
+
+    /**
+     Returns the requests counted within the load window.
+     @param now the current time in epoch milliseconds
+     @return the recent load of the app
+     */
+    long load(long now) {
+        long oldestSecond = now / BUCKET_MILLIS - counts.length() + 1;
+        long load = 0;
+
+        for (int slot = 0; slot < counts.length(); slot++) {
+            if (seconds.get(slot) >= oldestSecond) {
+                load += counts.get(slot);
+            }
+        }
+
+        return load;
+    }
+}
@@ -0,0 +1,112 @@
+package com.spotibot.backend.spotify;
+
+import com.spotibot.backend.Credentials;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ The Spotify apps of the deployment. A room is pinned to one app when its host logs in, and all its requests,
+ including the token refresh, which Spotify only accepts from the app that issued the token, are sent with that
+ app. New rooms are pinned to the least loaded app that is not rate limited right now.
+ */
+public class SpotifyAppPool {
+    public static final String DEFAULT_APP_ID = "default";
+
+    private final Map<String, SpotifyApp> apps = new LinkedHashMap<>();
+    private final List<SpotifyApp> candidates;
+    private final SpotifyApp defaultApp;
+    private final int pinWeight;
+    private final AtomicInteger nextCandidate = new AtomicInteger();
+    private final MeterRegistry meterRegistry;
+
+    public SpotifyAppPool(SpotifyAppProperties properties, MeterRegistry meterRegistry) {
+        int windowSeconds = (int) Math.max(properties.getLoadWindow().toSeconds(), 1);
+
+        for (Map.Entry<String, SpotifyAppProperties.App> entry : properties.getPool().entrySet()) {
+            apps.put(entry.getKey(), new SpotifyApp(entry.getKey(), entry.getValue().getClientId(), entry.getValue().getClientSecret(), windowSeconds));
+        }
+        if (apps.isEmpty()) {
+            apps.put(DEFAULT_APP_ID, new SpotifyApp(DEFAULT_APP_ID, Credentials.CLIENT_ID, Credentials.CLIENT_SECRET, windowSeconds));
+        }
+
+        this.candidates = new ArrayList<>(apps.values());
+        this.defaultApp = candidates.get(0);
+        this.pinWeight = properties.getPinWeight();
+        this.meterRegistry = meterRegistry;
+
+        for (SpotifyApp app : candidates) {
+            Gauge.builder("spotify.apps.load", app, spotifyApp -> spotifyApp.load(System.currentTimeMillis()))
+                    .description("Requests sent with the Spotify app within the load window")
+                    .tag("app", app.getId())
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     Returns the app with the given id. Tokens issued before the app was removed from the pool, or without an app,
+     fall back to the first app of the pool.
+     @param appId the id of the app, may be null
+     @return the app
+     */
+    public SpotifyApp get(String appId) {
+        SpotifyApp app = appId == null ? null : apps.get(appId);
+        return app != null ? app : defaultApp;
+    }
+
+    /**
+     Picks the app for a new room: the least loaded one, preferring apps that are not rate limited. Ties are
+     broken round-robin, and the pin counts as load, so concurrent logins spread over the pool.
+     @return the app the room is pinned to
+     */
+    public SpotifyApp pin() {
+        long now = System.currentTimeMillis();
+        int start = Math.floorMod(nextCandidate.getAndIncrement(), candidates.size());
+        SpotifyApp best = null;
+        long bestLoad = Long.MAX_VALUE;
+        boolean bestThrottled = true;
+
+        for (int i = 0; i < candidates.size(); i++) {
+            SpotifyApp app = candidates.get((start + i) % candidates.size());
+            boolean throttled = app.isThrottled(now);
+            long load = app.load(now);
+
+            if (best == null || (bestThrottled && !throttled) || (bestThrottled == throttled && load < bestLoad)) {
+                best = app;
+                bestLoad = load;
+                bestThrottled = throttled;
+            }
+        }
+
+        best.record(pinWeight, now);
+        meterRegistry.counter("spotify.apps.pins", "app", best.getId()).increment();
+        return best;
+    }
+
+    /**
+     Counts a request sent with the app.
+     @param app the app
+     */
+    public void recordRequest(SpotifyApp app) {
+        app.record(1, System.currentTimeMillis());
+    }
+
+    /**
+     Records that Spotify rate limited the app.
+     @param app the app
+     @param retryAfterSeconds the Retry-After of the response, 0 if it had none
+     */
+    public void recordThrottled(SpotifyApp app, int retryAfterSeconds) {
+        app.throttle(retryAfterSeconds, System.currentTimeMillis());
+        meterRegistry.counter("spotify.apps.throttled", "app", app.getId()).increment();
+    }
+
+    public int size() {
+        return candidates.size();
+    }
+}
@@ -0,0 +1,32 @@
+package com.spotibot.backend.spotify;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ The Spotify apps rooms are spread over, keyed by app id, e.g. spotify.apps.pool.app-1.client-id. Spotify rate
+ limits each app on its own, so every app added to the pool adds its quota. Without a pool the app of
+ {@link com.spotibot.backend.Credentials} is used. The load of an app is the number of its requests within
+ loadWindow; every room pinned to it within that window counts as pinWeight requests, so a burst of logins is
+ spread before the rooms send any request.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "spotify.apps")
+public class SpotifyAppProperties {
+    private Duration loadWindow = Duration.ofMinutes(1);
+    private int pinWeight = 20;
+    private Map<String, App> pool = new LinkedHashMap<>();
+
+    @Getter
+    @Setter
+    public static class App {
+        private String clientId;
+        private String clientSecret;
+    }
+}
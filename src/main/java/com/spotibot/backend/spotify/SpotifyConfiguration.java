@@ -0,0 +1,80 @@
+package com.spotibot.backend.spotify;
+
+import com.spotibot.backend.room.RoomEngine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties({SpotifyHttpProperties.class, SpotifySearchProperties.class, SpotifyDeviceProperties.class, SpotifyPlaybackProperties.class, SpotifyAppProperties.class})
+public class SpotifyConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public PooledSpotifyHttpManager spotifyHttpManager(SpotifyHttpProperties spotifyHttpProperties)
+    {
+        return new PooledSpotifyHttpManager(spotifyHttpProperties);
+    }
+
+    @Bean
+    public SpotifyAppPool spotifyAppPool(SpotifyAppProperties spotifyAppProperties, MeterRegistry meterRegistry)
+    {
+        return new SpotifyAppPool(spotifyAppProperties, meterRegistry);
+    }
+
+    @Bean
+    public SpotifyController spotifyController(PooledSpotifyHttpManager spotifyHttpManager, SpotifyHttpProperties spotifyHttpProperties, SpotifyAppPool spotifyAppPool, MeterRegistry meterRegistry, ObservationRegistry observationRegistry)
+    {
+        return new SpotifyController(spotifyHttpManager, spotifyHttpProperties.getApiUri(), spotifyAppPool, meterRegistry, observationRegistry);
+    }
+
+    @Bean
+    public TrackMetadataStore trackMetadataStore(SpotifySearchProperties spotifySearchProperties, MeterRegistry meterRegistry)
+    {
+        TrackMetadataStore trackMetadataStore = new TrackMetadataStore(spotifySearchProperties.getTrackStoreSize());
+
+        Gauge.builder("spotibot.tracks.stored", trackMetadataStore, TrackMetadataStore::size)
+                .description("Tracks held in the local track metadata store")
+                .register(meterRegistry);
+
+        return trackMetadataStore;
+    }
+
+    @Bean(destroyMethod = "close")
+    public SearchService searchService(SpotifyController spotifyController, TrackMetadataStore trackMetadataStore, MeterRegistry meterRegistry, SpotifySearchProperties spotifySearchProperties)
+    {
+        return new SearchService(spotifyController, trackMetadataStore, meterRegistry, spotifySearchProperties);
+    }
+
+    @Bean(destroyMethod = "close")
+    public DeviceCache deviceCache(SpotifyController spotifyController, MeterRegistry meterRegistry, SpotifyDeviceProperties spotifyDeviceProperties)
+    {
+        return new DeviceCache(spotifyController, meterRegistry, spotifyDeviceProperties);
+    }
+
+    @Bean(destroyMethod = "close")
+    public RoomCommandExecutor roomCommandExecutor(SpotifyController spotifyController, DeviceCache deviceCache, RoomEngine roomEngine, MeterRegistry meterRegistry, SpotifyPlaybackProperties spotifyPlaybackProperties)
+    {
+        return new RoomCommandExecutor(spotifyController, deviceCache, roomEngine, meterRegistry, spotifyPlaybackProperties);
+    }
+
+    @Bean(destroyMethod = "close")
+    public PlaybackReconciler playbackReconciler(SpotifyApiController spotifyApiController, SpotifyPlaybackProperties spotifyPlaybackProperties)
+    {
+        return new PlaybackReconciler(spotifyApiController::refreshSongContext, spotifyPlaybackProperties);
+    }
+
+    /**
+     * Publishes the pool state (leased, available, pending and max connections) as
+     * httpcomponents.httpclient.pool.* gauges tagged with httpclient=spotify.
+     */
+    @Bean
+    public MeterBinder spotifyHttpPoolMetrics(PooledSpotifyHttpManager spotifyHttpManager)
+    {
+        return new PoolingHttpClientConnectionManagerMetricsBinder(spotifyHttpManager.getConnectionManager(), "spotify");
+    }
+}
@@ -2,11 +2,18 @@ package com.spotibot.backend.spotify;
 
 import com.spotibot.backend.Credentials;
 import com.spotibot.backend.UserSession;
-import jakarta.annotation.Nullable;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import org.apache.hc.core5.http.ParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.michaelthelin.spotify.IHttpManager;
 import se.michaelthelin.spotify.SpotifyApi;
 import se.michaelthelin.spotify.SpotifyHttpManager;
 import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+import se.michaelthelin.spotify.exceptions.detailed.TooManyRequestsException;
 import se.michaelthelin.spotify.model_objects.credentials.AuthorizationCodeCredentials;
 import se.michaelthelin.spotify.model_objects.miscellaneous.CurrentlyPlayingContext;
 import se.michaelthelin.spotify.model_objects.miscellaneous.Device;
@@ -23,68 +30,68 @@ import java.util.Arrays;
 
 
 public class SpotifyController {
-    SpotifyApi spotifyApi;
-    AuthorizationCodeRefreshRequest authorizationCodeRefreshRequest;
-    AuthorizationCodeRequest authorizationCodeRequest;
+    private static final Logger logger = LoggerFactory.getLogger(SpotifyController.class);
 
-    URI redirectionUri;
-    AuthorizationCodeCredentials authorizationCodeCredentials;
-    GetInformationAboutUsersCurrentPlaybackRequest getInformationAboutUsersCurrentPlaybackRequest;
-    PauseUsersPlaybackRequest pauseUsersPlaybackRequest;
-    StartResumeUsersPlaybackRequest startResumeUsersPlayback;
-    SkipUsersPlaybackToNextTrackRequest skipUsersPlaybackToNextTrackRequest;
-    SearchTracksRequest searchTracksRequest;
+    private final IHttpManager httpManager;
+    private final Counter tokenRefreshes;
+    private final Counter failedTokenRefreshes;
+    private final ObservationRegistry observationRegistry;
+    private final URI redirectionUri;
+    private final URI apiUri;
+    private final SpotifyAppPool spotifyAppPool;
 
-    SpotifyController()
+    SpotifyController(IHttpManager httpManager, URI apiUri, SpotifyAppPool spotifyAppPool, MeterRegistry meterRegistry, ObservationRegistry observationRegistry)
     {
+        this.httpManager = httpManager;
+        this.apiUri = apiUri;
+        this.spotifyAppPool = spotifyAppPool;
+        this.tokenRefreshes = meterRegistry.counter("spotify.token.refreshes", "outcome", "success");
+        this.failedTokenRefreshes = meterRegistry.counter("spotify.token.refreshes", "outcome", "failure");
+        this.observationRegistry = observationRegistry;
         redirectionUri = SpotifyHttpManager.makeUri(Credentials.apiUri);
-        spotifyApi = new SpotifyApi.Builder().setClientId(Credentials.CLIENT_ID).setClientSecret(Credentials.CLIENT_SECRET).setRedirectUri(redirectionUri).build();
-        authorizationCodeRefreshRequest = spotifyApi.authorizationCodeRefresh().build();
     }
 
-    public AuthorizationCodeUriRequest authorizationCodeUriRequest()
+    /**
+     * Builds the Spotify login URI of the room owner's app. A room without app yet is pinned to the least loaded
+     * app of the pool here, and keeps it for the token issued at the end of the login and all its refreshes.
+     *
+     * @see SpotifyAppPool#pin()
+     */
+    public AuthorizationCodeUriRequest authorizationCodeUriRequest(UserSession userSession)
     {
-        return spotifyApi.authorizationCodeUri().scope(Credentials.scopes).show_dialog(true).build();
+        return spotifyApiBuilder(pinSpotifyApp(userSession)).build().authorizationCodeUri().scope(Credentials.scopes).show_dialog(true).build();
     }
 
-    @Nullable
-    public String authorizationCodeRequest(UserSession userSession, String userCode) throws IOException, ParseException, SpotifyWebApiException
+    public SpotifyToken authorizationCodeRequest(UserSession userSession, String userCode) throws IOException, ParseException, SpotifyWebApiException
     {
-        authorizationCodeRequest = spotifyApi.authorizationCode(userCode).build();
+        SpotifyApp spotifyApp = spotifyAppPool.get(userSession.getSpotifyAppId());
+        AuthorizationCodeRequest authorizationCodeRequest = spotifyApiBuilder(spotifyApp).build().authorizationCode(userCode).build();
 
-        authorizationCodeCredentials = authorizationCodeRequest.execute();
+        AuthorizationCodeCredentials authorizationCodeCredentials = execute(spotifyApp, "authorization-code", authorizationCodeRequest::execute);
 
         SpotifyToken spotifyToken = new SpotifyToken();
+        spotifyToken.setAppId(spotifyApp.getId());
         spotifyToken.setAuthorizationCodeCredentials(authorizationCodeCredentials);
         spotifyToken.setExpiresIn(System.currentTimeMillis() / 1000 + authorizationCodeCredentials.getExpiresIn());
 
-        userSession.setUserSpotifyToken(spotifyToken);
-
-        return "<html><head><script>window.close();</script></head><body>Closing tab...</body></html>";
-
+        return spotifyToken;
     }
 
     public CurrentlyPlayingContext currentlyPlayingContext(SpotifyToken spotifyToken) throws IOException, ParseException, SpotifyWebApiException
     {
-        spotifyApi.setAccessToken(spotifyToken.getAccessToken());
-        spotifyApi.setRefreshToken(spotifyToken.getRefreshToken());
-
-        getInformationAboutUsersCurrentPlaybackRequest = spotifyApi.getInformationAboutUsersCurrentPlayback().build();
+        GetInformationAboutUsersCurrentPlaybackRequest getInformationAboutUsersCurrentPlaybackRequest = spotifyApi(spotifyToken).getInformationAboutUsersCurrentPlayback().build();
 
 
-        return getInformationAboutUsersCurrentPlaybackRequest.execute();
+        return execute(spotifyToken, "current-playback", getInformationAboutUsersCurrentPlaybackRequest::execute);
     }
 
     public boolean refreshSpotifyToken(SpotifyToken spotifyToken)
     {
-        spotifyApi.setAccessToken(spotifyToken.getAccessToken());
-        spotifyApi.setRefreshToken(spotifyToken.getRefreshToken());
-
-        authorizationCodeRefreshRequest = spotifyApi.authorizationCodeRefresh().refresh_token(spotifyToken.getRefreshToken()).build();
+        AuthorizationCodeRefreshRequest authorizationCodeRefreshRequest = spotifyApi(spotifyToken).authorizationCodeRefresh().refresh_token(spotifyToken.getRefreshToken()).build();
 
         try
         {
-            authorizationCodeCredentials = authorizationCodeRefreshRequest.execute();
+            AuthorizationCodeCredentials authorizationCodeCredentials = execute(spotifyToken, "token-refresh", authorizationCodeRefreshRequest::execute);
             var authorizationCodeCredentialsBuilder = new AuthorizationCodeCredentials.Builder();
 
             authorizationCodeCredentialsBuilder.setRefreshToken(spotifyToken.getRefreshToken());
@@ -93,102 +100,171 @@ public class SpotifyController {
             authorizationCodeCredentialsBuilder.setExpiresIn(authorizationCodeCredentials.getExpiresIn());
             authorizationCodeCredentialsBuilder.setScope(spotifyToken.getScope());
 
-            AuthorizationCodeCredentials refreshedAuthorizationCodeCredentials = authorizationCodeCredentialsBuilder.build();
-
-            spotifyToken.setAuthorizationCodeCredentials(refreshedAuthorizationCodeCredentials);
-            spotifyToken.setExpiresIn(refreshedAuthorizationCodeCredentials.getExpiresIn());
+            // expires_in is relative, updateToken stores it as the epoch second the refreshed token expires at
+            spotifyToken.updateToken(authorizationCodeCredentialsBuilder.build());
+            tokenRefreshes.increment();
             return true;
         } catch (IOException | ParseException | SpotifyWebApiException e)
         {
-            e.printStackTrace();
+            logger.warn("refreshSpotifyToken(): Error refreshing access token.", e);
+            failedTokenRefreshes.increment();
             return false;
         }
     }
 
     public Device[] getDevices(SpotifyToken spotifyToken) throws IOException, ParseException, SpotifyWebApiException
     {
-        spotifyApi.setAccessToken(spotifyToken.getAccessToken());
-        spotifyApi.setRefreshToken(spotifyToken.getRefreshToken());
+        GetUsersAvailableDevicesRequest getUsersAvailableDevicesRequest = spotifyApi(spotifyToken).getUsersAvailableDevices().build();
 
-        GetUsersAvailableDevicesRequest getUsersAvailableDevicesRequest = spotifyApi.getUsersAvailableDevices().build();
-
-        return getUsersAvailableDevicesRequest.execute();
+        return execute(spotifyToken, "devices", getUsersAvailableDevicesRequest::execute);
     }
 
     public String forceDeviceToPlay(SpotifyToken spotifyToken, String deviceId) throws IOException, ParseException, SpotifyWebApiException
     {
-        spotifyApi.setAccessToken(spotifyToken.getAccessToken());
-        spotifyApi.setRefreshToken(spotifyToken.getRefreshToken());
-
-        StartResumeUsersPlaybackRequest startResumeUsersPlaybackRequest = spotifyApi.startResumeUsersPlayback().device_id(deviceId).build();
-        return startResumeUsersPlaybackRequest.execute();
+        StartResumeUsersPlaybackRequest startResumeUsersPlaybackRequest = spotifyApi(spotifyToken).startResumeUsersPlayback().device_id(deviceId).build();
+        return execute(spotifyToken, "force-play", startResumeUsersPlaybackRequest::execute);
     }
 
     public void pauseCurrentlyPlayingSong(SpotifyToken spotifyToken) throws IOException, ParseException, SpotifyWebApiException
     {
-        spotifyApi.setAccessToken(spotifyToken.getAccessToken());
-        spotifyApi.setRefreshToken(spotifyToken.getRefreshToken());
-
-        pauseUsersPlaybackRequest = spotifyApi.pauseUsersPlayback().build();
-        pauseUsersPlaybackRequest.execute();
+        PauseUsersPlaybackRequest pauseUsersPlaybackRequest = spotifyApi(spotifyToken).pauseUsersPlayback().build();
+        execute(spotifyToken, "pause", pauseUsersPlaybackRequest::execute);
     }
 
     public void resumeCurrentlyPausedSong(SpotifyToken spotifyToken) throws IOException, ParseException, SpotifyWebApiException
     {
-        spotifyApi.setAccessToken(spotifyToken.getAccessToken());
-        spotifyApi.setRefreshToken(spotifyToken.getRefreshToken());
-
-        startResumeUsersPlayback = spotifyApi.startResumeUsersPlayback().build();
-        startResumeUsersPlayback.execute();
+        StartResumeUsersPlaybackRequest startResumeUsersPlayback = spotifyApi(spotifyToken).startResumeUsersPlayback().build();
+        execute(spotifyToken, "resume", startResumeUsersPlayback::execute);
     }
 
     public void skipCurrentlyPlayingSong(SpotifyToken spotifyToken) throws IOException, ParseException, SpotifyWebApiException
     {
-        spotifyApi.setAccessToken(spotifyToken.getAccessToken());
-        spotifyApi.setRefreshToken(spotifyToken.getRefreshToken());
-
-        skipUsersPlaybackToNextTrackRequest = spotifyApi.skipUsersPlaybackToNextTrack().build();
-        skipUsersPlaybackToNextTrackRequest.execute();
+        SkipUsersPlaybackToNextTrackRequest skipUsersPlaybackToNextTrackRequest = spotifyApi(spotifyToken).skipUsersPlaybackToNextTrack().build();
+        execute(spotifyToken, "skip-next", skipUsersPlaybackToNextTrackRequest::execute);
     }
 
     public void rollBackToPreviousSong(SpotifyToken spotifyToken) throws IOException, ParseException, SpotifyWebApiException
     {
-        spotifyApi.setAccessToken(spotifyToken.getAccessToken());
-        spotifyApi.setRefreshToken(spotifyToken.getRefreshToken());
-
-        SkipUsersPlaybackToPreviousTrackRequest skipUsersPlaybackToPreviousTrackRequest = spotifyApi.skipUsersPlaybackToPreviousTrack().build();
-        skipUsersPlaybackToPreviousTrackRequest.execute();
+        SkipUsersPlaybackToPreviousTrackRequest skipUsersPlaybackToPreviousTrackRequest = spotifyApi(spotifyToken).skipUsersPlaybackToPreviousTrack().build();
+        execute(spotifyToken, "skip-previous", skipUsersPlaybackToPreviousTrackRequest::execute);
     }
 
     public Track[] searchSong(SpotifyToken spotifyToken, String queryString) throws IOException, ParseException, SpotifyWebApiException
     {
-        spotifyApi.setAccessToken(spotifyToken.getAccessToken());
-        spotifyApi.setRefreshToken(spotifyToken.getRefreshToken());
-
-        searchTracksRequest = spotifyApi.searchTracks(queryString).build();
+        SearchTracksRequest searchTracksRequest = spotifyApi(spotifyToken).searchTracks(queryString).build();
 
-        var result = searchTracksRequest.execute();
-        return Arrays.copyOfRange(result.getItems(), 0, 5);
+        var result = execute(spotifyToken, "search-tracks", searchTracksRequest::execute);
+        return Arrays.copyOfRange(result.getItems(), 0, Math.min(result.getItems().length, SearchService.SEARCH_RESULT_COUNT));
     }
 
     public void addTrackToPlayBack(SpotifyToken spotifyToken, String songHref) throws IOException, ParseException, SpotifyWebApiException
     {
-        spotifyApi.setAccessToken(spotifyToken.getAccessToken());
-        spotifyApi.setRefreshToken(spotifyToken.getRefreshToken());
-
-        AddItemToUsersPlaybackQueueRequest addItemToUsersPlaybackQueueRequest = spotifyApi.addItemToUsersPlaybackQueue(songHref).build();
-        addItemToUsersPlaybackQueueRequest.execute();
+        AddItemToUsersPlaybackQueueRequest addItemToUsersPlaybackQueueRequest = spotifyApi(spotifyToken).addItemToUsersPlaybackQueue(songHref).build();
+        execute(spotifyToken, "add-to-queue", addItemToUsersPlaybackQueueRequest::execute);
     }
 
     public Boolean checkSpotifyAuthenticationStatus(SpotifyToken spotifyToken)
     {
-        if (spotifyToken.getExpiresIn() <= (System.currentTimeMillis() / 1000 + 10))
+        Observation observation = Observation.createNotStarted("spotify.token.check", observationRegistry);
+
+        return observation.observe(() -> {
+            if (spotifyToken.getExpiresIn() <= (System.currentTimeMillis() / 1000 + 10))
+            {
+                observation.lowCardinalityKeyValue("refreshed", "true");
+                return refreshSpotifyToken(spotifyToken);
+            }
+
+            observation.lowCardinalityKeyValue("refreshed", "false");
+            return true;
+        });
+    }
+
+    @FunctionalInterface
+    private interface SpotifyCall<T>
+    {
+        T execute() throws IOException, ParseException, SpotifyWebApiException;
+    }
+
+    private <T> T execute(SpotifyToken spotifyToken, String operation, SpotifyCall<T> spotifyCall) throws IOException, ParseException, SpotifyWebApiException
+    {
+        return execute(spotifyAppPool.get(spotifyToken.getAppId()), operation, spotifyCall);
+    }
+
+    /**
+     * Executes one upstream request inside a spotify.requests observation, which records the latency as timer
+     * and a span, tagged with the operation, the app and the outcome (success or the exception type).
+     * The request counts towards the load of the app, a rate limited response marks the app as throttled.
+     */
+    private <T> T execute(SpotifyApp spotifyApp, String operation, SpotifyCall<T> spotifyCall) throws IOException, ParseException, SpotifyWebApiException
+    {
+        Observation observation = Observation.createNotStarted("spotify.requests", observationRegistry)
+                .contextualName("spotify " + operation)
+                .lowCardinalityKeyValue("operation", operation)
+                .lowCardinalityKeyValue("app", spotifyApp.getId())
+                .start();
+
+        spotifyAppPool.recordRequest(spotifyApp);
+
+        try (Observation.Scope ignored = observation.openScope())
+        {
+            T result = spotifyCall.execute();
+            observation.lowCardinalityKeyValue("outcome", "success");
+            return result;
+        } catch (TooManyRequestsException e)
+        {
+            spotifyAppPool.recordThrottled(spotifyApp, e.getRetryAfter());
+            observation.lowCardinalityKeyValue("outcome", e.getClass().getSimpleName());
+            observation.error(e);
+            throw e;
+        } catch (IOException | ParseException | SpotifyWebApiException e)
         {
-            return refreshSpotifyToken(spotifyToken);
+            observation.lowCardinalityKeyValue("outcome", e.getClass().getSimpleName());
+            observation.error(e);
+            throw e;
+        } finally
+        {
+            observation.stop();
         }
+    }
+
+    /**
+     * Returns the app of the room owner, pinning the room to the least loaded app if it has none yet.
+     */
+    private SpotifyApp pinSpotifyApp(UserSession userSession)
+    {
+        synchronized (userSession)
+        {
+            if (userSession.getSpotifyAppId() == null)
+            {
+                userSession.setSpotifyAppId(spotifyAppPool.pin().getId());
+            }
 
-        return true;
+            return spotifyAppPool.get(userSession.getSpotifyAppId());
+        }
     }
 
+    /**
+     * Builds a SpotifyApi bound to the given token and the app that issued it. The instance is cheap and only
+     * lives for one request, the connections are shared through the pooled http manager. Concurrent requests
+     * of different rooms therefore never see each other's access token.
+     */
+    private SpotifyApi spotifyApi(SpotifyToken spotifyToken)
+    {
+        return spotifyApiBuilder(spotifyAppPool.get(spotifyToken.getAppId()))
+                .setAccessToken(spotifyToken.getAccessToken())
+                .setRefreshToken(spotifyToken.getRefreshToken())
+                .build();
+    }
 
+    private SpotifyApi.Builder spotifyApiBuilder(SpotifyApp spotifyApp)
+    {
+        return new SpotifyApi.Builder()
+                .setHttpManager(httpManager)
+                .setScheme(apiUri.getScheme())
+                .setHost(apiUri.getHost())
+                .setPort(apiUri.getPort() != -1 ? apiUri.getPort() : "http".equals(apiUri.getScheme()) ? 80 : 443)
+                .setClientId(spotifyApp.getClientId())
+                .setClientSecret(spotifyApp.getClientSecret())
+                .setRedirectUri(redirectionUri);
+    }
 }
@@ -0,0 +1,19 @@
+package com.spotibot.backend.spotify;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ Settings of the per-token device list cache and the device long-poll.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "spotify.devices")
+public class SpotifyDeviceProperties {
+    private Duration ttl = Duration.ofSeconds(3);
+    private Duration longPollTimeout = Duration.ofSeconds(25);
+    private int schedulerPoolSize = 2;
+}
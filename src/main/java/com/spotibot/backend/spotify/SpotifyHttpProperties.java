@@ -0,0 +1,27 @@
+package com.spotibot.backend.spotify;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.net.URI;
+import java.time.Duration;
+
+/**
+ Settings of the pooled HTTP client used for all requests to the Spotify Web API and accounts service.
+ The apiUri allows pointing the Web API requests to a stand-in, e.g. for load tests.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "spotify.http")
+public class SpotifyHttpProperties {
+    private URI apiUri = URI.create("https://api.spotify.com");
+    private int maxConnectionsTotal = 200;
+    private int maxConnectionsPerRoute = 100;
+    private Duration connectTimeout = Duration.ofSeconds(2);
+    private Duration readTimeout = Duration.ofSeconds(5);
+    private Duration poolAcquireTimeout = Duration.ofSeconds(1);
+    private Duration keepAlive = Duration.ofSeconds(60);
+    private Duration maxIdleTime = Duration.ofSeconds(30);
+    private Duration validateAfterInactivity = Duration.ofSeconds(2);
+}
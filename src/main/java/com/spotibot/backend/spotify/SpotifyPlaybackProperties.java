@@ -0,0 +1,23 @@
+package com.spotibot.backend.spotify;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ Settings of the optimistic play state of rooms and of the per-room control command executor.
+ The interval of the background reconciliation is set by spotify.playback.reconcile-interval-ms, see PlaybackReconciler.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "spotify.playback")
+public class SpotifyPlaybackProperties {
+    private Duration confirmGrace = Duration.ofSeconds(3);
+    private Duration commandWindow = Duration.ofMillis(150);
+    private Duration commandTimeout = Duration.ofSeconds(10);
+    private int commandPoolSize = 4;
+    private int reconcilePoolSize = 4;
+    private int reconcileBatchSize = 100;
+}
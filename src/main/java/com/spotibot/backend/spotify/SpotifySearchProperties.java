@@ -0,0 +1,24 @@
+package com.spotibot.backend.spotify;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ Settings of the song search: the shared result cache, the local track metadata store and the debounced
+ search-as-you-type streams.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "spotify.search")
+public class SpotifySearchProperties {
+    private Duration debounce = Duration.ofMillis(250);
+    private Duration streamTimeout = Duration.ofMinutes(10);
+    private int cacheSize = 2000;
+    private Duration cacheTtl = Duration.ofMinutes(10);
+    private int minPrefixLength = 3;
+    private int trackStoreSize = 20000;
+    private int schedulerPoolSize = 8;
+}
@@ -12,6 +12,11 @@ import se.michaelthelin.spotify.model_objects.credentials.AuthorizationCodeCrede
 public class SpotifyToken {
 	AuthorizationCodeCredentials authorizationCodeCredentials;
 	private long expiresIn;
+	/**
+	 The id of the Spotify app that issued the token, see SpotifyAppPool. Refreshes keep it, since Spotify only
+	 refreshes a token with the credentials of the app that issued it.
+	 */
+	private String appId;
 
 	/**
 	 Constructs a new Spotify token with the given user, authorization code credentials, and expiration time.
@@ -0,0 +1,43 @@
+package com.spotibot.backend.spotify;
+
+import com.spotibot.backend.SearchSongResult;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import se.michaelthelin.spotify.model_objects.specification.Image;
+import se.michaelthelin.spotify.model_objects.specification.Track;
+
+/**
+ Immutable metadata of a Spotify track, as kept by the {@link TrackMetadataStore}.
+ */
+@Getter
+@AllArgsConstructor
+public final class TrackMetadata {
+    private final String uri;
+    private final String songName;
+    private final String artistName;
+    private final String pictureURI;
+    private final String imageUrl;
+    private final int durationMs;
+
+    /**
+     Extracts the metadata of a track returned by the Spotify Web API.
+     @param track the track
+     @return the metadata, with the smallest album image as picture and the largest as image
+     */
+    public static TrackMetadata of(Track track) {
+        Image[] images = track.getAlbum().getImages();
+
+        return new TrackMetadata(
+                track.getUri(),
+                track.getName(),
+                track.getArtists()[0].getName(),
+                images.length > 0 ? images[images.length - 1].getUrl() : null,
+                images.length > 0 ? images[0].getUrl() : null,
+                track.getDurationMs()
+        );
+    }
+
+    public SearchSongResult toSearchSongResult() {
+        return new SearchSongResult(artistName, songName, pictureURI, uri);
+    }
+}
@@ -0,0 +1,135 @@
+package com.spotibot.backend.spotify;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ Size-bounded LRU store of track metadata keyed by Spotify URI, filled from search results and played tracks.
+ The words of every title and artist are kept in a sorted prefix index, so a query whose words are all prefixes
+ of the words of a track, like "boh rhap" for Bohemian Rhapsody, gets provisional matches before Spotify answers.
+ */
+public class TrackMetadataStore {
+    private final int maxSize;
+    private final Map<String, Entry> tracks;
+    private final NavigableMap<String, Set<String>> wordIndex = new TreeMap<>();
+    private long sequence;
+
+    public TrackMetadataStore(int maxSize) {
+        this.maxSize = maxSize;
+        this.tracks = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= TrackMetadataStore.this.maxSize) {
+                    return false;
+                }
+                unindex(eldest.getValue().trackMetadata);
+                return true;
+            }
+        };
+    }
+
+    /**
+     Stores or refreshes the metadata of a track, making it the most recently seen track.
+     @param trackMetadata the metadata to store
+     */
+    public synchronized void put(TrackMetadata trackMetadata) {
+        Entry previous = tracks.put(trackMetadata.getUri(), new Entry(trackMetadata, ++sequence));
+
+        if (previous != null) {
+            unindex(previous.trackMetadata);
+        }
+        index(trackMetadata);
+    }
+
+    public synchronized TrackMetadata get(String uri) {
+        Entry entry = tracks.get(uri);
+        return entry != null ? entry.trackMetadata : null;
+    }
+
+    /**
+     Finds the stored tracks matching every word of a normalized query, most recently seen first.
+     @param key the normalized query, see {@link SearchCache#normalize(String)}
+     @param limit the maximum number of tracks to return
+     @return the matching tracks
+     */
+    public synchronized List<TrackMetadata> find(String key, int limit) {
+        if (key.isEmpty()) {
+            return List.of();
+        }
+
+        Set<String> candidates = null;
+
+        for (String word : key.split(" ")) {
+            Set<String> matches = new HashSet<>();
+            wordIndex.subMap(word, true, word + Character.MAX_VALUE, false).values().forEach(matches::addAll);
+
+            if (candidates == null) {
+                candidates = matches;
+            } else {
+                candidates.retainAll(matches);
+            }
+
+            if (candidates.isEmpty()) {
+                return List.of();
+            }
+        }
+
+        List<Entry> entries = new ArrayList<>(candidates.size());
+        candidates.forEach(uri -> entries.add(tracks.get(uri)));
+
+        return entries.stream()
+                .sorted(Comparator.comparingLong((Entry entry) -> entry.sequence).reversed())
+                .limit(limit)
+                .map(entry -> entry.trackMetadata)
+                .toList();
+    }
+
+    public synchronized int size() {
+        return tracks.size();
+    }
+
+    private void index(TrackMetadata trackMetadata) {
+        for (String word : words(trackMetadata)) {
+            wordIndex.computeIfAbsent(word, key -> new HashSet<>(2)).add(trackMetadata.getUri());
+        }
+    }
+
+    private void unindex(TrackMetadata trackMetadata) {
+        for (String word : words(trackMetadata)) {
+            Set<String> uris = wordIndex.get(word);
+
+            if (uris != null && uris.remove(trackMetadata.getUri()) && uris.isEmpty()) {
+                wordIndex.remove(word);
+            }
+        }
+    }
+
+    private static Set<String> words(TrackMetadata trackMetadata) {
+        Set<String> words = new HashSet<>();
+
+        for (String word : SearchCache.normalize(trackMetadata.getSongName() + " " + trackMetadata.getArtistName()).split(" ")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+
+        return words;
+    }
+
+    private static final class Entry {
+        private final TrackMetadata trackMetadata;
+        private final long sequence;
+
+        private Entry(TrackMetadata trackMetadata, long sequence) {
+            this.trackMetadata = trackMetadata;
+            this.sequence = sequence;
+        }
+    }
+}
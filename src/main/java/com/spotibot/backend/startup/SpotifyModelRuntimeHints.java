@@ -0,0 +1,37 @@
+package com.spotibot.backend.startup;
+
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import se.michaelthelin.spotify.model_objects.credentials.AuthorizationCodeCredentials;
+import se.michaelthelin.spotify.model_objects.miscellaneous.CurrentlyPlayingContext;
+import se.michaelthelin.spotify.model_objects.miscellaneous.Device;
+import se.michaelthelin.spotify.model_objects.specification.AlbumSimplified;
+import se.michaelthelin.spotify.model_objects.specification.ArtistSimplified;
+import se.michaelthelin.spotify.model_objects.specification.ExternalUrl;
+import se.michaelthelin.spotify.model_objects.specification.Image;
+import se.michaelthelin.spotify.model_objects.specification.Paging;
+import se.michaelthelin.spotify.model_objects.specification.Track;
+
+/**
+ Registers the spotify-web-api-java model classes the app hands to Jackson, e.g. the device list, for binding.
+ The library itself parses responses with Gson into builders and needs no reflection.
+ */
+class SpotifyModelRuntimeHints implements RuntimeHintsRegistrar {
+    private static final Class<?>[] MODEL_CLASSES = {
+            AuthorizationCodeCredentials.class,
+            CurrentlyPlayingContext.class,
+            Device.class,
+            Track.class,
+            AlbumSimplified.class,
+            ArtistSimplified.class,
+            ExternalUrl.class,
+            Image.class,
+            Paging.class
+    };
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(), MODEL_CLASSES);
+    }
+}
@@ -0,0 +1,54 @@
+package com.spotibot.backend.startup;
+
+import com.spotibot.backend.AddTrackToPlaybackRequest;
+import com.spotibot.backend.PayloadWriters;
+import com.spotibot.backend.RoomSnapshot;
+import com.spotibot.backend.SearchSongEvent;
+import com.spotibot.backend.SearchSongRequest;
+import com.spotibot.backend.SearchSongResult;
+import com.spotibot.backend.SongContext;
+import com.spotibot.backend.Vote;
+import com.spotibot.backend.room.PlaybackState;
+import com.spotibot.backend.room.PlayedTrack;
+import com.spotibot.backend.room.QueuedTrack;
+import com.spotibot.backend.room.Room;
+import com.spotibot.backend.room.RoomStatsSnapshot;
+import org.springframework.aot.hint.annotation.RegisterReflectionForBinding;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+
+/**
+ Warm-up readiness gate and the AOT hints needed by the native image.
+ The request and response types are serialized by Jackson through their Lombok-generated accessors, which
+ a native image only keeps if they are registered for binding. Types returned as ResponseEntity&lt;Object&gt;
+ are invisible to Spring's own controller inference.
+ */
+@Configuration
+@EnableConfigurationProperties(WarmupProperties.class)
+@RegisterReflectionForBinding({
+        Room.class,
+        Vote.class,
+        PlaybackState.class,
+        QueuedTrack.class,
+        PlayedTrack.class,
+        SongContext.class,
+        RoomSnapshot.class,
+        RoomStatsSnapshot.class,
+        RoomStatsSnapshot.TrackStats.class,
+        RoomStatsSnapshot.GuestStats.class,
+        SearchSongResult.class,
+        SearchSongEvent.class,
+        SearchSongRequest.class,
+        AddTrackToPlaybackRequest.class
+})
+@ImportRuntimeHints(SpotifyModelRuntimeHints.class)
+public class StartupConfiguration {
+
+    @Bean
+    public WarmupRunner warmupRunner(WarmupProperties warmupProperties, PayloadWriters payloadWriters)
+    {
+        return new WarmupRunner(warmupProperties, payloadWriters);
+    }
+}
@@ -0,0 +1,19 @@
+package com.spotibot.backend.startup;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ Settings of the warm-up that exercises the hot request paths before the app reports ready.
+ Off by default, as the warm-up creates rooms through the public endpoints. With exitAfterWarmup the app closes
+ its context once warmed up, which the CDS training run of the fast-startup build uses.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "spotibot.warmup")
+public class WarmupProperties {
+    private boolean enabled = false;
+    private int iterations = 50;
+    private boolean exitAfterWarmup = false;
+}
@@ -0,0 +1,138 @@
+package com.spotibot.backend.startup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spotibot.backend.PayloadFormat;
+import com.spotibot.backend.PayloadWriters;
+import com.spotibot.backend.SearchSongEvent;
+import com.spotibot.backend.SearchSongResult;
+import com.spotibot.backend.SongContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ApplicationListener;
+
+import java.io.IOException;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ Sends the requests of a typical room through the running server before the app reports ready, so class
+ loading, Tomcat, Spring MVC and Jackson are warmed up when the first guest arrives. The warm-up room is never
+ logged in to Spotify, so no upstream request is sent, and it is left again at the end of every iteration.
+ Spring Boot only switches the readiness state to ACCEPTING_TRAFFIC after all ApplicationReadyEvent listeners
+ returned, so /actuator/health/readiness stays OUT_OF_SERVICE until the warm-up is done.
+ The warm-up is off by default, deployments and the CDS training run switch it on with spotibot.warmup.enabled.
+ */
+public class WarmupRunner implements ApplicationListener<ApplicationReadyEvent> {
+    private static final Logger logger = LoggerFactory.getLogger(WarmupRunner.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(5);
+
+    private final WarmupProperties warmupProperties;
+    private final PayloadWriters payloadWriters;
+
+    WarmupRunner(WarmupProperties warmupProperties, PayloadWriters payloadWriters)
+    {
+        this.warmupProperties = warmupProperties;
+        this.payloadWriters = payloadWriters;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event)
+    {
+        if (!warmupProperties.isEnabled() || !(event.getApplicationContext() instanceof WebServerApplicationContext context))
+        {
+            return;
+        }
+
+        URI baseUri = URI.create("http://localhost:" + context.getWebServer().getPort());
+        long start = System.nanoTime();
+
+        try
+        {
+            for (int i = 0; i < warmupProperties.getIterations(); i++)
+            {
+                warmUpRoom(baseUri);
+                warmUpSerialization();
+            }
+
+            logger.info("onApplicationEvent(): Warm-up of {} iterations finished after {} ms.", warmupProperties.getIterations(), (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException | RuntimeException e)
+        {
+            logger.warn("onApplicationEvent(): Warm-up failed, continuing without it.", e);
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        if (warmupProperties.isExitAfterWarmup())
+        {
+            // Closing the context stops Tomcat and the executors, the JVM then exits once main returns
+            logger.info("onApplicationEvent(): Closing the application after the warm-up.");
+            SpringApplication.exit(event.getApplicationContext());
+        }
+    }
+
+    private void warmUpRoom(URI baseUri) throws IOException, InterruptedException
+    {
+        HttpClient httpClient = HttpClient.newBuilder().cookieHandler(new CookieManager()).build();
+
+        String room = send(httpClient, post(baseUri, "/room/create_room", "{\"guestCanPause\":true,\"votesToSkip\":2}"));
+        String roomIdentifier = objectMapper.readTree(room).get("roomIdentifier").asText();
+
+        send(httpClient, get(baseUri, "/room/get_room?roomIdentifier=" + roomIdentifier));
+        send(httpClient, get(baseUri, "/room/check-room-owner?roomIdentifier=" + roomIdentifier));
+        send(httpClient, get(baseUri, "/room/check-if-user-has-room"));
+        send(httpClient, get(baseUri, "/spotify/current-song?code=" + roomIdentifier));
+        send(httpClient, get(baseUri, "/spotify/room-snapshot?code=" + roomIdentifier + "&devices=true"));
+        send(httpClient, post(baseUri, "/spotify/add-track-to-playback", "{\"roomIdentifier\":\"" + roomIdentifier
+                + "\",\"trackHref\":\"spotify:track:warmup\",\"songName\":\"Warm-up\",\"artistName\":\"Warm-up\",\"pictureURI\":\"\"}"));
+        send(httpClient, get(baseUri, "/spotify/upvote-track?code=" + roomIdentifier + "&trackHref=spotify:track:warmup"));
+        send(httpClient, get(baseUri, "/spotify/queue?code=" + roomIdentifier));
+        send(httpClient, get(baseUri, "/spotify/recently-played?code=" + roomIdentifier));
+        send(httpClient, get(baseUri, "/room/stats?roomIdentifier=" + roomIdentifier));
+        send(httpClient, get(baseUri, "/room/leave_room?roomIdentifier=" + roomIdentifier));
+    }
+
+    /**
+     Serializes the payloads of the Spotify-backed endpoints, which the warm-up room cannot reach without login.
+     */
+    private void warmUpSerialization()
+    {
+        SongContext songContext = new SongContext("Warm-up", "Warm-up", 180_000, 0, System.currentTimeMillis(), "", true, 0, 0, 2);
+        List<SearchSongResult> searchResults = List.of(new SearchSongResult("Warm-up", "Warm-up", "", "spotify:track:warmup"));
+
+        for (PayloadFormat format : PayloadFormat.values())
+        {
+            payloadWriters.write(format, songContext);
+        }
+        payloadWriters.write(PayloadFormat.JSON, searchResults);
+        payloadWriters.write(PayloadFormat.JSON, new SearchSongEvent("warm", false, searchResults));
+    }
+
+    private static HttpRequest get(URI baseUri, String pathAndQuery)
+    {
+        return HttpRequest.newBuilder(baseUri.resolve(pathAndQuery)).timeout(REQUEST_TIMEOUT).GET().build();
+    }
+
+    private static HttpRequest post(URI baseUri, String path, String json)
+    {
+        return HttpRequest.newBuilder(baseUri.resolve(path))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    private static String send(HttpClient httpClient, HttpRequest request) throws IOException, InterruptedException
+    {
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofString()).body();
+    }
+}
@@ -0,0 +1,57 @@
+package com.spotibot.backend.tracing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.common.KeyValue;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+@Configuration
+public class TracingConfiguration {
+    public static final String ROOM_IDENTIFIER = "roomIdentifier";
+
+    /**
+     * Exports spans to a local JSON lines file, enabled by setting spotibot.tracing.file.
+     */
+    @Bean
+    @ConditionalOnProperty("spotibot.tracing.file")
+    public FileSpanExporter fileSpanExporter(@Value("${spotibot.tracing.file}") String file, ObjectMapper objectMapper) throws IOException
+    {
+        return new FileSpanExporter(Path.of(file), objectMapper);
+    }
+
+    /**
+     * Copies the roomIdentifier of the enclosing observation onto every nested one, so the spans of the
+     * room lookup, the token check and each upstream Spotify call can be filtered by room. It is added as
+     * high cardinality value and therefore only ends up on spans, never on metric tags.
+     */
+    @Bean
+    public ObservationFilter roomIdentifierObservationFilter()
+    {
+        return context -> {
+            if (context.getHighCardinalityKeyValue(ROOM_IDENTIFIER) != null)
+            {
+                return context;
+            }
+
+            for (Observation.ContextView parent = context.getParentObservation() != null ? context.getParentObservation().getContextView() : null;
+                 parent != null;
+                 parent = parent.getParentObservation() != null ? parent.getParentObservation().getContextView() : null)
+            {
+                KeyValue roomIdentifier = parent.getHighCardinalityKeyValue(ROOM_IDENTIFIER);
+                if (roomIdentifier != null)
+                {
+                    return context.addHighCardinalityKeyValue(roomIdentifier);
+                }
+            }
+
+            return context;
+        };
+    }
+}
@@ -0,0 +1,28 @@
+package com.spotibot.backend.web;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties({AdmissionProperties.class, RateLimitProperties.class})
+public class AdmissionConfiguration {
+
+    /**
+     * Admission control for all controllers, disabled by setting spotibot.admission.enabled=false.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "spotibot.admission.enabled", matchIfMissing = true)
+    public AdmissionControlFilter admissionControlFilter(AdmissionProperties admissionProperties, MeterRegistry meterRegistry)
+    {
+        return new AdmissionControlFilter(admissionProperties, meterRegistry);
+    }
+
+    @Bean
+    public InboundRateLimiter inboundRateLimiter(RateLimitProperties rateLimitProperties, MeterRegistry meterRegistry)
+    {
+        return new InboundRateLimiter(rateLimitProperties, meterRegistry);
+    }
+}
@@ -0,0 +1,202 @@
+package com.spotibot.backend.web;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+/**
+ Sheds load before it reaches the controllers, so a slow Spotify only degrades the Spotify features.
+ Requests to /spotify/** pass the adaptive upstream limit, except the local endpoints configured in
+ {@link AdmissionProperties#getLocalPaths()}, which pass the fixed local bulkhead together with all /room/**
+ endpoints. Everything else, e.g. /actuator, is never shed. Async requests (search stream, device long-poll)
+ only hold their slot while their initial dispatch runs. Their latency says nothing about Spotify, so they only
+ decrease the limit if they end in an error or a 5xx response, which is only known once the async request completed.
+ */
+public class AdmissionControlFilter extends OncePerRequestFilter {
+    private static final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    private final AimdLimit upstreamLimit;
+    private final Semaphore localBulkhead;
+    private final List<String> localPaths;
+    private final String retryAfterSeconds;
+    private final Counter upstreamRejections;
+    private final Counter localRejections;
+
+    public AdmissionControlFilter(AdmissionProperties properties, MeterRegistry meterRegistry)
+    {
+        upstreamLimit = new AimdLimit(
+                properties.getInitialLimit(),
+                properties.getMinLimit(),
+                properties.getMaxLimit(),
+                properties.getBackoffRatio(),
+                properties.getSlowThreshold().toNanos());
+        localBulkhead = new Semaphore(properties.getLocalMaxConcurrent());
+        localPaths = properties.getLocalPaths();
+        retryAfterSeconds = String.valueOf(Math.max(1, properties.getRetryAfter().toSeconds()));
+        upstreamRejections = meterRegistry.counter("spotibot.admission.rejected", "pool", "upstream");
+        localRejections = meterRegistry.counter("spotibot.admission.rejected", "pool", "local");
+
+        Gauge.builder("spotibot.admission.limit", upstreamLimit, AimdLimit::getLimit)
+                .description("Current adaptive concurrency limit of the Spotify-bound endpoints")
+                .tag("pool", "upstream")
+                .register(meterRegistry);
+        Gauge.builder("spotibot.admission.in-flight", upstreamLimit, AimdLimit::getInFlight)
+                .description("Admitted requests in progress")
+                .tag("pool", "upstream")
+                .register(meterRegistry);
+        Gauge.builder("spotibot.admission.in-flight", localBulkhead, bulkhead -> properties.getLocalMaxConcurrent() - bulkhead.availablePermits())
+                .description("Admitted requests in progress")
+                .tag("pool", "local")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException
+    {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+
+        if (isLocal(path))
+        {
+            admitLocal(request, response, filterChain);
+        }
+        else if (path.startsWith("/spotify/"))
+        {
+            admitUpstream(request, response, filterChain);
+        }
+        else
+        {
+            filterChain.doFilter(request, response);
+        }
+    }
+
+    private void admitLocal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException
+    {
+        if (!localBulkhead.tryAcquire())
+        {
+            localRejections.increment();
+            reject(response);
+            return;
+        }
+
+        try
+        {
+            filterChain.doFilter(request, response);
+        } finally
+        {
+            localBulkhead.release();
+        }
+    }
+
+    private void admitUpstream(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException
+    {
+        if (!upstreamLimit.tryAcquire())
+        {
+            upstreamRejections.increment();
+            reject(response);
+            return;
+        }
+
+        long start = System.nanoTime();
+        boolean failed = true;
+
+        try
+        {
+            filterChain.doFilter(request, response);
+            failed = isFailed(response);
+        } finally
+        {
+            if (request.isAsyncStarted())
+            {
+                upstreamLimit.release();
+                request.getAsyncContext().addListener(new AsyncOutcomeListener(start, response));
+            }
+            else
+            {
+                upstreamLimit.release(start, System.nanoTime() - start, failed);
+            }
+        }
+    }
+
+    private static boolean isFailed(ServletResponse response)
+    {
+        return ((HttpServletResponse) response).getStatus() >= HttpStatus.INTERNAL_SERVER_ERROR.value();
+    }
+
+    private void reject(HttpServletResponse response)
+    {
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+    }
+
+    /**
+     * Decreases the upstream limit if an admitted async request ends in an error or with a 5xx response.
+     */
+    private class AsyncOutcomeListener implements AsyncListener
+    {
+        private final long start;
+        private final HttpServletResponse response;
+
+        AsyncOutcomeListener(long start, HttpServletResponse response)
+        {
+            this.start = start;
+            this.response = response;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event)
+        {
+            // The supplied response of the event is only set for listeners added together with a request and response
+            if (isFailed(response))
+            {
+                upstreamLimit.failed(start, System.nanoTime());
+            }
+        }
+
+        @Override
+        public void onError(AsyncEvent event)
+        {
+            upstreamLimit.failed(start, System.nanoTime());
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event)
+        {
+            // The controller answers timed out long-polls itself, onComplete sees the final status
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event)
+        {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+
+    private boolean isLocal(String path)
+    {
+        for (String localPath : localPaths)
+        {
+            if (pathMatcher.match(localPath, path))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,29 @@
+package com.spotibot.backend.web;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ Settings of the admission control in front of the controllers.
+ Requests to the Spotify-bound endpoints share an adaptive (AIMD) concurrency limit, which shrinks while they take
+ longer than slowThreshold or fail, and grows again while they are fast. The local endpoints listed in localPaths
+ share a fixed bulkhead. Requests over either limit are answered with 503 and a Retry-After header.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "spotibot.admission")
+public class AdmissionProperties {
+    private boolean enabled = true;
+    private int initialLimit = 20;
+    private int minLimit = 4;
+    private int maxLimit = 150;
+    private double backoffRatio = 0.9;
+    private Duration slowThreshold = Duration.ofSeconds(1);
+    private int localMaxConcurrent = 100;
+    private Duration retryAfter = Duration.ofSeconds(1);
+    private List<String> localPaths = List.of("/room/**", "/spotify/login", "/spotify/queue", "/spotify/upvote-track", "/spotify/search-stream");
+}
@@ -0,0 +1,90 @@
+package com.spotibot.backend.web;
+
+/**
+ Concurrency limit that adapts to the latency of the work it admits: additive increase while admitted work is
+ fast, multiplicative decrease when it is slow or fails. The limit only grows while at least half of it is in use,
+ so a quiet period does not let it grow unbounded before the next spike. The limit backs off at most once per
+ round trip: work that was admitted before the last decrease saw the old limit and does not decrease it again.
+ */
+public class AimdLimit {
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long slowThresholdNanos;
+
+    private double limit;
+    private int inFlight;
+    private boolean backedOff;
+    private long lastBackoffNanos;
+
+    public AimdLimit(int initialLimit, int minLimit, int maxLimit, double backoffRatio, long slowThresholdNanos) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.slowThresholdNanos = slowThresholdNanos;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     Admits one unit of work if the limit is not reached.
+     @return true if admitted, the caller then has to call {@link #release(long, long, boolean)} or {@link #release()}
+     */
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+
+        inFlight++;
+        return true;
+    }
+
+    /**
+     Ends one admitted unit of work and adapts the limit to its outcome.
+     @param startNanos when the work was admitted, in {@link System#nanoTime()}
+     @param latencyNanos how long the work took
+     @param failed whether the work failed, e.g. with a 5xx response
+     */
+    public synchronized void release(long startNanos, long latencyNanos, boolean failed) {
+        int used = inFlight--;
+
+        if (failed || latencyNanos > slowThresholdNanos) {
+            backoff(startNanos, startNanos + latencyNanos);
+        } else if (used * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    /**
+     Ends one admitted unit of work whose outcome is not known yet, without adapting the limit.
+     */
+    public synchronized void release() {
+        inFlight--;
+    }
+
+    /**
+     Decreases the limit for work that failed after it was released with {@link #release()}.
+     @param startNanos when the work was admitted, in {@link System#nanoTime()}
+     @param endNanos when the work failed, in {@link System#nanoTime()}
+     */
+    public synchronized void failed(long startNanos, long endNanos) {
+        backoff(startNanos, endNanos);
+    }
+
+    private void backoff(long startNanos, long endNanos) {
+        if (backedOff && startNanos - lastBackoffNanos < 0) {
+            return;
+        }
+
+        limit = Math.max(minLimit, limit * backoffRatio);
+        backedOff = true;
+        lastBackoffNanos = endNanos;
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+}
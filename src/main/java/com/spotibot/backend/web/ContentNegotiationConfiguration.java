@@ -0,0 +1,39 @@
+package com.spotibot.backend.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.spotibot.backend.PayloadWriters;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ Lets clients ask for CBOR (application/cbor) or Smile (application/x-jackson-smile) instead of JSON with their
+ Accept header. Spring MVC would register both converters on its own, but with a plain ObjectMapper; these use
+ the one configured by the spring.jackson properties, so all three formats carry the same fields and values.
+ They replace the defaults in place, behind the JSON converter, so JSON stays the answer to Accept: *&#47;*.
+ */
+@Configuration
+public class ContentNegotiationConfiguration {
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder objectMapperBuilder)
+    {
+        return new MappingJackson2CborHttpMessageConverter(objectMapperBuilder.factory(new CBORFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder objectMapperBuilder)
+    {
+        return new MappingJackson2SmileHttpMessageConverter(objectMapperBuilder.factory(new SmileFactory()).build());
+    }
+
+    @Bean
+    public PayloadWriters payloadWriters(ObjectMapper objectMapper)
+    {
+        return new PayloadWriters(objectMapper);
+    }
+}
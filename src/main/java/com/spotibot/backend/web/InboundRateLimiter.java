@@ -0,0 +1,123 @@
+package com.spotibot.backend.web;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ Limits the requests per guest and per room of each endpoint with a policy in {@link RateLimitProperties}, so a
+ single client polling or searching in a tight loop gets 429s locally instead of using up the room host's Spotify
+ quota. The guest bucket is checked first, a guest over its limit therefore does not drain the room bucket.
+ */
+public class InboundRateLimiter {
+    private final boolean enabled;
+    private final long idleTimeoutNanos;
+    private final Map<String, EndpointLimit> endpointLimits = new HashMap<>();
+
+    public InboundRateLimiter(RateLimitProperties properties, MeterRegistry meterRegistry)
+    {
+        this.enabled = properties.isEnabled();
+        this.idleTimeoutNanos = properties.getIdleTimeout().toNanos();
+
+        properties.getPolicies().forEach((endpoint, policy) -> endpointLimits.put(endpoint, new EndpointLimit(
+                tokenBuckets(endpoint, "user", policy.getUserCapacity(), policy.getUserRefillPerSecond()),
+                tokenBuckets(endpoint, "room", policy.getRoomCapacity(), policy.getRoomRefillPerSecond()),
+                meterRegistry.counter("spotibot.rate-limit.rejected", "endpoint", endpoint, "scope", "user"),
+                meterRegistry.counter("spotibot.rate-limit.rejected", "endpoint", endpoint, "scope", "room")
+        )));
+
+        Gauge.builder("spotibot.rate-limit.buckets", this, InboundRateLimiter::size)
+                .description("Token buckets of guests and rooms held for inbound rate limiting")
+                .register(meterRegistry);
+    }
+
+    /**
+     Counts a request of the guest in the room against the endpoint's policy.
+     @param endpoint the endpoint name of the policy
+     @param userIdentifier the guest, may be null if unknown
+     @param roomIdentifier the room, may be null if unknown
+     @return 0 if the request is admitted, otherwise the number of seconds to wait, for the Retry-After header
+     */
+    public long tryAcquire(String endpoint, String userIdentifier, String roomIdentifier)
+    {
+        EndpointLimit endpointLimit = enabled ? endpointLimits.get(endpoint) : null;
+
+        if (endpointLimit == null)
+        {
+            return 0;
+        }
+
+        long now = System.nanoTime();
+
+        if (endpointLimit.users != null && userIdentifier != null && !endpointLimit.users.tryTake(userIdentifier, now))
+        {
+            endpointLimit.userRejections.increment();
+            return endpointLimit.users.getRefillSeconds();
+        }
+
+        if (endpointLimit.rooms != null && roomIdentifier != null && !endpointLimit.rooms.tryTake(roomIdentifier, now))
+        {
+            endpointLimit.roomRejections.increment();
+            return endpointLimit.rooms.getRefillSeconds();
+        }
+
+        return 0;
+    }
+
+    /**
+     Evicts the buckets of guests and rooms that were idle for longer than the idle timeout.
+     */
+    @Scheduled(fixedDelayString = "${spotibot.rate-limit.eviction-interval-ms:60000}")
+    public void evictIdleBuckets()
+    {
+        long now = System.nanoTime();
+
+        for (EndpointLimit endpointLimit : endpointLimits.values())
+        {
+            if (endpointLimit.users != null)
+            {
+                endpointLimit.users.evictIdle(now - idleTimeoutNanos, now);
+            }
+            if (endpointLimit.rooms != null)
+            {
+                endpointLimit.rooms.evictIdle(now - idleTimeoutNanos, now);
+            }
+        }
+    }
+
+    /**
+     Creates the buckets of one scope of a policy, a policy without capacity leaves the scope unlimited.
+     A bucket that never refills would lock a guest or room out for good once drained, so a limited scope needs a
+     positive refill rate.
+     */
+    private static TokenBuckets tokenBuckets(String endpoint, String scope, int capacity, double refillPerSecond)
+    {
+        if (capacity <= 0)
+        {
+            return null;
+        }
+
+        if (!(refillPerSecond > 0))
+        {
+            throw new IllegalArgumentException("spotibot.rate-limit.policies." + endpoint + "." + scope
+                    + "-refill-per-second must be greater than 0, was " + refillPerSecond);
+        }
+
+        return new TokenBuckets(capacity, refillPerSecond);
+    }
+
+    private int size()
+    {
+        return endpointLimits.values().stream()
+                .mapToInt(endpointLimit -> (endpointLimit.users != null ? endpointLimit.users.size() : 0) + (endpointLimit.rooms != null ? endpointLimit.rooms.size() : 0))
+                .sum();
+    }
+
+    private record EndpointLimit(TokenBuckets users, TokenBuckets rooms, Counter userRejections, Counter roomRejections)
+    {
+    }
+}
@@ -0,0 +1,68 @@
+package com.spotibot.backend.web;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import org.slf4j.MDC;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ Puts the roomIdentifier and userIdentifier of the current request into the MDC,
+ so every log line written while handling the request carries them as structured fields.
+ Ordered ahead of the other filters of the app, so they see the same fields.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class LoggingContextFilter extends OncePerRequestFilter {
+    public static final String ROOM_IDENTIFIER = "roomIdentifier";
+    public static final String USER_IDENTIFIER = "userIdentifier";
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException
+    {
+        String roomIdentifier = getRoomIdentifier(request);
+        HttpSession session = request.getSession(false);
+        String userIdentifier = session != null ? (String) session.getAttribute(USER_IDENTIFIER) : null;
+
+        if (roomIdentifier != null)
+        {
+            MDC.put(ROOM_IDENTIFIER, roomIdentifier);
+        }
+        if (userIdentifier != null)
+        {
+            MDC.put(USER_IDENTIFIER, userIdentifier);
+        }
+
+        try
+        {
+            filterChain.doFilter(request, response);
+        } finally
+        {
+            MDC.remove(ROOM_IDENTIFIER);
+            MDC.remove(USER_IDENTIFIER);
+        }
+    }
+
+    /**
+     * Returns the room identifier of the request. The endpoints pass it either as 'roomIdentifier' or as 'code'
+     * parameter, except for /spotify/get-user-code where 'code' is the Spotify authorization code.
+     */
+    public static String getRoomIdentifier(HttpServletRequest request)
+    {
+        String roomIdentifier = request.getParameter(ROOM_IDENTIFIER);
+
+        if (roomIdentifier == null && !request.getRequestURI().endsWith("/get-user-code"))
+        {
+            roomIdentifier = request.getParameter("code");
+        }
+
+        return roomIdentifier;
+    }
+}
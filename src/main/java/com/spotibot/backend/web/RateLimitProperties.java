@@ -0,0 +1,33 @@
+package com.spotibot.backend.web;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ Inbound rate limits per endpoint, keyed by endpoint name, e.g. spotibot.rate-limit.policies.search-song.
+ Each policy limits the requests of one guest and, independently, of one room with a token bucket of the given
+ capacity (burst) and refill rate, which has to be greater than 0. A capacity of 0 leaves that scope unlimited,
+ endpoints without policy are not limited at all. Buckets untouched for longer than idleTimeout are evicted.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "spotibot.rate-limit")
+public class RateLimitProperties {
+    private boolean enabled = true;
+    private Duration idleTimeout = Duration.ofMinutes(10);
+    private Map<String, Policy> policies = new LinkedHashMap<>();
+
+    @Getter
+    @Setter
+    public static class Policy {
+        private int userCapacity;
+        private double userRefillPerSecond;
+        private int roomCapacity;
+        private double roomRefillPerSecond;
+    }
+}
@@ -0,0 +1,102 @@
+package com.spotibot.backend.web;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ Token buckets of one capacity and refill rate, one per key. A bucket is refilled lazily when a token is taken,
+ so idle keys cost nothing but their entry. The buckets are guarded by a fixed set of striped locks instead of
+ one lock per bucket or for all of them, so concurrent requests of different keys rarely contend.
+ */
+public class TokenBuckets {
+    private static final int STRIPES = 64;
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final Object[] stripes = new Object[STRIPES];
+
+    public TokenBuckets(int capacity, double refillPerSecond) {
+        this.capacity = capacity;
+        this.tokensPerNano = refillPerSecond / 1e9;
+
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    /**
+     Takes one token from the bucket of the key, creating a full bucket for an unknown key.
+     @param key the guest or room the request is counted for
+     @param now the current System.nanoTime()
+     @return true if a token was available
+     */
+    public boolean tryTake(String key, long now) {
+        Bucket bucket = buckets.computeIfAbsent(key, ignored -> new Bucket(capacity, now));
+
+        synchronized (stripe(key)) {
+            if (now > bucket.refilledAt) {
+                bucket.tokens = Math.min(capacity, bucket.tokens + (now - bucket.refilledAt) * tokensPerNano);
+                bucket.refilledAt = now;
+            }
+
+            if (bucket.tokens < 1) {
+                return false;
+            }
+
+            bucket.tokens--;
+            return true;
+        }
+    }
+
+    /**
+     Returns how long it takes to refill one token.
+     @return the refill interval in seconds, at least 1
+     */
+    public long getRefillSeconds() {
+        return tokensPerNano <= 0 ? 1 : Math.max(1, (long) Math.ceil(1 / (tokensPerNano * 1e9)));
+    }
+
+    /**
+     Removes the buckets untouched since the given time that would be full by now. A request still holding an
+     evicted bucket takes its token from it, which is harmless, as a new bucket would be full anyway.
+     @param idleSince the System.nanoTime() before which a bucket counts as idle
+     @param now the current System.nanoTime()
+     @return the number of removed buckets
+     */
+    public int evictIdle(long idleSince, long now) {
+        int evicted = 0;
+
+        for (Map.Entry<String, Bucket> entry : buckets.entrySet()) {
+            Bucket bucket = entry.getValue();
+
+            synchronized (stripe(entry.getKey())) {
+                boolean full = bucket.tokens + (now - bucket.refilledAt) * tokensPerNano >= capacity;
+
+                if (bucket.refilledAt < idleSince && full && buckets.remove(entry.getKey(), bucket)) {
+                    evicted++;
+                }
+            }
+        }
+
+        return evicted;
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+
+    private Object stripe(String key) {
+        return stripes[key.hashCode() & (STRIPES - 1)];
+    }
+
+    private static final class Bucket {
+        private double tokens;
+        private long refilledAt;
+
+        private Bucket(double tokens, long refilledAt) {
+            this.tokens = tokens;
+            this.refilledAt = refilledAt;
+        }
+    }
+}
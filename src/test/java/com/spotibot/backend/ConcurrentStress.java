@@ -0,0 +1,54 @@
+package com.spotibot.backend;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+/**
+ Runs many tasks on a fixed number of threads, all released at once by a start gate, to provoke races.
+ */
+public final class ConcurrentStress {
+    public static final int THREADS = Math.max(8, Runtime.getRuntime().availableProcessors() * 4);
+
+    private ConcurrentStress() {
+
+    }
+
+    /**
+     Runs the task created for each index from 0 to count - 1 concurrently and waits for all of them.
+     @param count the number of tasks
+     @param taskFactory creates the task of an index
+     @return the results in index order
+     */
+    public static <T> List<T> run(int count, IntFunction<Callable<T>> taskFactory) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch startGate = new CountDownLatch(1);
+        List<Future<T>> futures = new ArrayList<>(count);
+
+        try {
+            for (int i = 0; i < count; i++) {
+                Callable<T> task = taskFactory.apply(i);
+                futures.add(executor.submit(() -> {
+                    startGate.await();
+                    return task.call();
+                }));
+            }
+
+            startGate.countDown();
+
+            List<T> results = new ArrayList<>(count);
+            for (Future<T> future : futures) {
+                results.add(future.get(30, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
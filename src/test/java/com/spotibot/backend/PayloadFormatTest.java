@@ -0,0 +1,64 @@
+package com.spotibot.backend;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PayloadFormatTest {
+
+    @Test
+    void jsonIsTheDefault() {
+        assertThat(PayloadFormat.negotiate(null)).isEqualTo(PayloadFormat.JSON);
+        assertThat(PayloadFormat.negotiate("*/*")).isEqualTo(PayloadFormat.JSON);
+        assertThat(PayloadFormat.negotiate("application/*")).isEqualTo(PayloadFormat.JSON);
+        assertThat(PayloadFormat.negotiate("text/html")).isEqualTo(PayloadFormat.JSON);
+        assertThat(PayloadFormat.negotiate("not a media type")).isEqualTo(PayloadFormat.JSON);
+    }
+
+    @Test
+    void picksTheBinaryFormatWithTheHighestQuality() {
+        assertThat(PayloadFormat.negotiate("application/cbor, */*;q=0.1")).isEqualTo(PayloadFormat.CBOR);
+        assertThat(PayloadFormat.negotiate("application/json;q=0.5, application/x-jackson-smile")).isEqualTo(PayloadFormat.SMILE);
+        assertThat(PayloadFormat.negotiate("application/cbor;q=0, application/json")).isEqualTo(PayloadFormat.JSON);
+    }
+
+    @Test
+    void snapshotsEncodeEachFormatOnceWithItsOwnETag() {
+        SongContextSnapshot snapshot = SongContextSnapshot.next(null, new SongContext("Song", "Artist", 1000, 0, 0, "", true, 0, 0, 2), new PayloadWriters(new ObjectMapper()));
+
+        assertThat(snapshot.getPayload(PayloadFormat.CBOR)).isSameAs(snapshot.getPayload(PayloadFormat.CBOR)).isNotEqualTo(snapshot.getPayload());
+        assertThat(snapshot.getETag(PayloadFormat.JSON)).isEqualTo(snapshot.getETag());
+        assertThat(snapshot.getETag(PayloadFormat.SMILE)).isNotEqualTo(snapshot.getETag());
+    }
+
+    @Test
+    void binaryFormatsFollowTheApplicationObjectMapper() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper().setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
+        PayloadWriters payloadWriters = new PayloadWriters(objectMapper);
+        SongContext songContext = new SongContext("Song", "Artist", 1000, 0, 0, "", true, 0, 0, 2);
+
+        JsonNode cbor = new ObjectMapper(new CBORFactory()).readTree(payloadWriters.write(PayloadFormat.CBOR, songContext));
+        JsonNode smile = new ObjectMapper(new SmileFactory()).readTree(payloadWriters.write(PayloadFormat.SMILE, songContext));
+
+        assertThat(cbor.get("song_title").asText()).isEqualTo("Song");
+        assertThat(smile.get("song_title").asText()).isEqualTo("Song");
+    }
+
+    @Test
+    void etagsFollowTheContentAcrossIndependentSnapshots() {
+        PayloadWriters payloadWriters = new PayloadWriters(new ObjectMapper());
+        SongContext songContext = new SongContext("Song", "Artist", 1000, 0, 0, "", true, 0, 0, 2);
+
+        SongContextSnapshot first = SongContextSnapshot.next(null, songContext, payloadWriters);
+        SongContextSnapshot restarted = SongContextSnapshot.next(null, songContext, payloadWriters);
+        SongContextSnapshot changed = SongContextSnapshot.next(first, new SongContext("Other", "Artist", 1000, 0, 0, "", true, 0, 0, 2), payloadWriters);
+
+        assertThat(restarted.getETag()).isEqualTo(first.getETag());
+        assertThat(changed.getETag()).isNotEqualTo(first.getETag());
+    }
+}
@@ -0,0 +1,53 @@
+package com.spotibot.backend.hotkeys;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+class HotKeyTrackerTest {
+    private static final long MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    private final HotKeyTracker hotKeyTracker = new HotKeyTracker(new HotKeyProperties());
+
+    @Test
+    void findsTheHotRoomAmongManyColdOnes() {
+        for (int i = 0; i < 50_000; i++) {
+            hotKeyTracker.record("ROOM" + i, "guest-" + i, "/spotify/current-song", 0);
+            if (i % 5 == 0) {
+                hotKeyTracker.record("HOT01", "greedy-guest", "/spotify/search-song", 0);
+            }
+        }
+
+        List<HotKeyTracker.HotKey> rooms = hotKeyTracker.top(HotKeyTracker.Dimension.ROOM, Duration.ofMinutes(1), 0);
+        List<HotKeyTracker.HotKey> users = hotKeyTracker.top(HotKeyTracker.Dimension.USER, Duration.ofMinutes(1), 0);
+        List<HotKeyTracker.HotKey> endpoints = hotKeyTracker.top(HotKeyTracker.Dimension.ENDPOINT, Duration.ofMinutes(1), 0);
+
+        assertThat(rooms).hasSizeLessThanOrEqualTo(20).first().extracting(HotKeyTracker.HotKey::key).isEqualTo("HOT01");
+        assertThat(rooms.get(0).count()).isGreaterThanOrEqualTo(10_000);
+        assertThat(users.get(0).key()).isEqualTo("greedy-guest");
+        assertThat(endpoints).extracting(HotKeyTracker.HotKey::key).containsExactly("/spotify/current-song", "/spotify/search-song");
+        assertThat(endpoints.get(1).share()).isCloseTo(1 / 6.0, offset(0.01));
+    }
+
+    @Test
+    void windowsOnlyCountTheirOwnBuckets() {
+        for (int i = 0; i < 100; i++) {
+            hotKeyTracker.record("OLD01", null, null, 0);
+            hotKeyTracker.record("NEW01", null, null, 10 * MINUTE);
+        }
+
+        long now = 10 * MINUTE;
+        assertThat(hotKeyTracker.top(HotKeyTracker.Dimension.ROOM, Duration.ofMinutes(5), now))
+                .extracting(HotKeyTracker.HotKey::key).containsExactly("NEW01");
+        assertThat(hotKeyTracker.top(HotKeyTracker.Dimension.ROOM, Duration.ofMinutes(15), now))
+                .extracting(HotKeyTracker.HotKey::count).containsExactly(100L, 100L);
+        assertThat(hotKeyTracker.top(HotKeyTracker.Dimension.ROOM, Duration.ofMinutes(15), 20 * MINUTE))
+                .extracting(HotKeyTracker.HotKey::key).containsExactly("NEW01");
+        assertThat(hotKeyTracker.top(HotKeyTracker.Dimension.USER, Duration.ofMinutes(15), now)).isEmpty();
+    }
+}
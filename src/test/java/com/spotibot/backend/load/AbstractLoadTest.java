@@ -0,0 +1,86 @@
+package com.spotibot.backend.load;
+
+import com.spotibot.backend.DataManagement;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ Starts the app on a random port with the Spotify Web API pointed to a local {@link SpotifyStubServer}.
+ Every test class gets its own app and stand-in, so runs do not share state or heap.
+ Load tests are tagged "load" and only run with the load profile: mvn test -Pload
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@DirtiesContext
+abstract class AbstractLoadTest {
+    protected static final LoadSettings settings = LoadSettings.fromSystemProperties();
+    private static SpotifyStubServer spotifyStubServer;
+
+    @LocalServerPort
+    private int port;
+
+    @DynamicPropertySource
+    static void spotifyStubProperties(DynamicPropertyRegistry registry) {
+        registry.add("spotify.http.api-uri", () -> spotifyStubServer().getUri().toString());
+        registry.add("spotify.http.max-connections-total", () -> 1000);
+        registry.add("spotify.http.max-connections-per-route", () -> 1000);
+        // Simulated guests share few rooms, the limits would turn the measured load into 429s
+        registry.add("spotibot.rate-limit.enabled", () -> false);
+    }
+
+    @AfterAll
+    static void stopSpotifyStub() {
+        if (spotifyStubServer != null) {
+            spotifyStubServer.close();
+            spotifyStubServer = null;
+        }
+    }
+
+    @BeforeEach
+    void clearRooms() {
+        DataManagement.clear();
+    }
+
+    protected LoadScenario newScenario(LatencyRecorder latencyRecorder) {
+        return new LoadScenario(URI.create("http://localhost:" + port), latencyRecorder, settings);
+    }
+
+    protected static synchronized SpotifyStubServer spotifyStubServer() {
+        if (spotifyStubServer == null) {
+            try {
+                spotifyStubServer = new SpotifyStubServer(settings.upstreamLatencyMillis());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return spotifyStubServer;
+    }
+
+    /**
+     Asserts the latency and error-rate SLOs: the polled current-song endpoint stays under the p50 target,
+     every endpoint under the p99 target, and the errors of all endpoints under the error-rate target.
+     */
+    protected static void assertSlos(Map<String, LatencyRecorder.Summary> endpoints) {
+        long requests = endpoints.values().stream().mapToLong(LatencyRecorder.Summary::requests).sum();
+        long errors = endpoints.values().stream().mapToLong(LatencyRecorder.Summary::errors).sum();
+
+        assertThat(requests).as("requests sent").isPositive();
+        assertThat((double) errors / requests).as("error rate").isLessThanOrEqualTo(settings.sloErrorRate());
+        assertThat(endpoints.get("current-song").p50Millis()).as("current-song p50 ms").isLessThanOrEqualTo(settings.sloP50Millis());
+        endpoints.forEach((endpoint, summary) ->
+                assertThat(summary.p99Millis()).as(endpoint + " p99 ms").isLessThanOrEqualTo(settings.sloP99Millis()));
+    }
+}
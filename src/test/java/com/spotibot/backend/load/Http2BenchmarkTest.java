@@ -0,0 +1,120 @@
+package com.spotibot.backend.load;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ Compares the http2 profile's transports on the queue of a room with http2.tracks queued tracks: HTTP/1.1 without
+ compression, HTTP/1.1 with gzip and h2c with gzip, each with http2.threads clients sending http2.requests requests.
+ Latencies and bytes per response are written to target/load-reports/http2-latest.json. Only the bytes are asserted,
+ latencies on loopback say little about the connection slots HTTP/2 saves browsers on real networks.
+ */
+@ActiveProfiles("http2")
+class Http2BenchmarkTest extends AbstractLoadTest {
+    private static final int TRACKS = Integer.getInteger("http2.tracks", 25);
+    private static final int THREADS = Integer.getInteger("http2.threads", 32);
+    private static final int REQUESTS = Integer.getInteger("http2.requests", 300);
+    private static final int WARMUP_REQUESTS = 50;
+
+    @LocalServerPort
+    private int port;
+
+    @Test
+    void compressionShrinksTheQueueResponse() throws Exception {
+        LatencyRecorder latencyRecorder = new LatencyRecorder();
+        LoadScenario scenario = newScenario(latencyRecorder);
+        LoadReport report = new LoadReport("http2", settings);
+        String roomIdentifier = scenario.createRoom(scenario.newClient());
+
+        for (int i = 0; i < TRACKS; i++) {
+            scenario.addTrack(scenario.newClient(), roomIdentifier, i);
+        }
+
+        URI queueUri = URI.create("http://localhost:" + port + "/spotify/queue?code=" + roomIdentifier);
+        LatencyRecorder transports = new LatencyRecorder();
+        Map<String, Long> bytesPerResponse = new LinkedHashMap<>();
+        long start = System.nanoTime();
+
+        bytesPerResponse.put("http1-plain", run(transports, "http1-plain", queueUri, HttpClient.Version.HTTP_1_1, false));
+        bytesPerResponse.put("http1-gzip", run(transports, "http1-gzip", queueUri, HttpClient.Version.HTTP_1_1, true));
+        bytesPerResponse.put("h2c-gzip", run(transports, "h2c-gzip", queueUri, HttpClient.Version.HTTP_2, true));
+
+        report.put("tracks", TRACKS);
+        report.put("threads", THREADS);
+        report.put("requestsPerThread", REQUESTS);
+        report.put("bytesPerResponse", bytesPerResponse);
+        report.write(transports.summarize((System.nanoTime() - start) / 1e9));
+
+        assertThat(bytesPerResponse.get("http1-plain")).as("uncompressed bytes").isGreaterThan(1024);
+        assertThat(bytesPerResponse.get("http1-gzip")).as("gzip bytes").isLessThan(bytesPerResponse.get("http1-plain"));
+        assertThat(bytesPerResponse.get("h2c-gzip")).as("h2c bytes").isEqualTo(bytesPerResponse.get("http1-gzip"));
+    }
+
+    /**
+     Sends the requests of one transport, every thread over its own client and connection.
+     @return the body size of the last response in bytes
+     */
+    private static long run(LatencyRecorder transports, String transport, URI uri, HttpClient.Version version, boolean gzip) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        AtomicLong bytes = new AtomicLong();
+
+        try {
+            List<Future<?>> clients = new ArrayList<>();
+
+            for (int i = 0; i < THREADS; i++) {
+                clients.add(executor.submit(() -> {
+                    HttpClient httpClient = HttpClient.newBuilder().version(version).connectTimeout(Duration.ofSeconds(5)).build();
+                    HttpRequest.Builder requestBuilder = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(30)).GET();
+                    if (gzip) {
+                        requestBuilder.header("Accept-Encoding", "gzip");
+                    }
+                    HttpRequest request = requestBuilder.build();
+
+                    for (int j = 0; j < WARMUP_REQUESTS; j++) {
+                        send(httpClient, request, version);
+                    }
+                    for (int j = 0; j < REQUESTS; j++) {
+                        long requestStart = System.nanoTime();
+                        HttpResponse<byte[]> response = send(httpClient, request, version);
+                        transports.record(transport, System.nanoTime() - requestStart, response.statusCode() != 200);
+                        bytes.set(response.body().length);
+                    }
+                    return null;
+                }));
+            }
+
+            for (Future<?> client : clients) {
+                client.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return bytes.get();
+    }
+
+    private static HttpResponse<byte[]> send(HttpClient httpClient, HttpRequest request, HttpClient.Version version) throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+
+        assertThat(response.version()).as("negotiated protocol").isEqualTo(version);
+        return response;
+    }
+}
@@ -0,0 +1,85 @@
+package com.spotibot.backend.load;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ Records request latencies and errors per endpoint. Latencies are kept in a fixed-size reservoir sample per
+ endpoint, so memory stays constant over a soak run of any length.
+ */
+public class LatencyRecorder {
+    private static final int RESERVOIR_SIZE = 100_000;
+
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    public void record(String endpoint, long latencyNanos, boolean error) {
+        endpoints.computeIfAbsent(endpoint, key -> new Endpoint()).record(latencyNanos, error);
+    }
+
+    /**
+     Summarizes every endpoint, sorted by name.
+     @return the summary of each endpoint by name
+     */
+    public Map<String, Summary> summarize(double durationSeconds) {
+        Map<String, Summary> summaries = new LinkedHashMap<>();
+
+        endpoints.keySet().stream().sorted().forEach(name -> summaries.put(name, endpoints.get(name).summarize(durationSeconds)));
+        return summaries;
+    }
+
+    public record Summary(long requests, long errors, double errorRate, double throughput,
+                          double p50Millis, double p90Millis, double p99Millis, double maxMillis) {
+    }
+
+    private static final class Endpoint {
+        private final long[] reservoir = new long[RESERVOIR_SIZE];
+        private long requests;
+        private long errors;
+        private long max;
+
+        private synchronized void record(long latencyNanos, boolean error) {
+            if (requests < RESERVOIR_SIZE) {
+                reservoir[(int) requests] = latencyNanos;
+            } else {
+                long slot = ThreadLocalRandom.current().nextLong(requests + 1);
+                if (slot < RESERVOIR_SIZE) {
+                    reservoir[(int) slot] = latencyNanos;
+                }
+            }
+
+            requests++;
+            max = Math.max(max, latencyNanos);
+            if (error) {
+                errors++;
+            }
+        }
+
+        private synchronized Summary summarize(double durationSeconds) {
+            long[] samples = Arrays.copyOf(reservoir, (int) Math.min(requests, RESERVOIR_SIZE));
+            Arrays.sort(samples);
+
+            return new Summary(
+                    requests,
+                    errors,
+                    requests == 0 ? 0 : (double) errors / requests,
+                    requests / durationSeconds,
+                    percentile(samples, 0.50),
+                    percentile(samples, 0.90),
+                    percentile(samples, 0.99),
+                    max / 1e6
+            );
+        }
+
+        private static double percentile(long[] sortedSamples, double percentile) {
+            if (sortedSamples.length == 0) {
+                return 0;
+            }
+
+            int index = (int) Math.ceil(percentile * sortedSamples.length) - 1;
+            return sortedSamples[Math.max(0, index)] / 1e6;
+        }
+    }
+}
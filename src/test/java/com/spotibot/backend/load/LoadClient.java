@@ -0,0 +1,65 @@
+package com.spotibot.backend.load;
+
+import java.io.IOException;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ One simulated browser, either a room host or a guest. Every client keeps its own cookies, so it holds its own
+ HTTP session and userIdentifier on the server, and records the latency of each request under the endpoint name.
+ A response counts as error if the request failed or the server answered with a 5xx status.
+ */
+public class LoadClient {
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final URI baseUri;
+    private final LatencyRecorder latencyRecorder;
+    private final HttpClient httpClient;
+
+    public LoadClient(URI baseUri, LatencyRecorder latencyRecorder) {
+        this.baseUri = baseUri;
+        this.latencyRecorder = latencyRecorder;
+        httpClient = HttpClient.newBuilder()
+                .cookieHandler(new CookieManager())
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    public Response get(String endpoint, String pathAndQuery) {
+        return send(endpoint, HttpRequest.newBuilder(baseUri.resolve(pathAndQuery)).GET());
+    }
+
+    public Response post(String endpoint, String path, String json) {
+        return send(endpoint, HttpRequest.newBuilder(baseUri.resolve(path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json, StandardCharsets.UTF_8)));
+    }
+
+    private Response send(String endpoint, HttpRequest.Builder requestBuilder) {
+        HttpRequest httpRequest = requestBuilder.timeout(REQUEST_TIMEOUT).build();
+        long start = System.nanoTime();
+
+        try {
+            HttpResponse<String> httpResponse = httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofString());
+            latencyRecorder.record(endpoint, System.nanoTime() - start, httpResponse.statusCode() >= 500);
+            return new Response(httpResponse.statusCode(), httpResponse.body());
+        } catch (IOException e) {
+            latencyRecorder.record(endpoint, System.nanoTime() - start, true);
+            return new Response(-1, null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Response(-1, null);
+        }
+    }
+
+    public record Response(int status, String body) {
+        public boolean isOk() {
+            return status == 200;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.spotibot.backend.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ Writes the result of a run to target/load-reports as JSON, once with a timestamp and once as latest run of its
+ kind. All runs share one layout, so they can be diffed. Before the latest report is replaced, the p99 latencies
+ are printed next to the ones of the previous run.
+ */
+public class LoadReport {
+    private static final Path REPORT_DIRECTORY = Path.of("target", "load-reports");
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").withZone(ZoneOffset.UTC);
+    private static final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private final String name;
+    private final Map<String, Object> report = new LinkedHashMap<>();
+
+    public LoadReport(String name, LoadSettings settings) {
+        this.name = name;
+        report.put("run", name);
+        report.put("startedAt", Instant.now().toString());
+        report.put("javaVersion", Runtime.version().toString());
+        report.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+        report.put("maxHeapMb", Runtime.getRuntime().maxMemory() / (1024 * 1024));
+        report.put("settings", settings.toReport());
+    }
+
+    public void put(String key, Object value) {
+        report.put(key, value);
+    }
+
+    public void write(Map<String, LatencyRecorder.Summary> endpoints) throws IOException {
+        report.put("endpoints", endpoints);
+        Files.createDirectories(REPORT_DIRECTORY);
+
+        Path latest = REPORT_DIRECTORY.resolve(name + "-latest.json");
+        JsonNode previous = Files.exists(latest) ? objectMapper.readTree(latest.toFile()) : null;
+        printSummary(endpoints, previous);
+
+        objectMapper.writeValue(REPORT_DIRECTORY.resolve(name + "-" + TIMESTAMP.format(Instant.now()) + ".json").toFile(), report);
+        objectMapper.writeValue(latest.toFile(), report);
+    }
+
+    private void printSummary(Map<String, LatencyRecorder.Summary> endpoints, JsonNode previous) {
+        StringBuilder summary = new StringBuilder(String.format("%n%s%n%-24s %10s %8s %10s %9s %9s %9s %14s%n",
+                name, "endpoint", "requests", "errors", "req/s", "p50 ms", "p99 ms", "max ms", "prev p99 ms"));
+
+        endpoints.forEach((endpoint, result) -> {
+            JsonNode previousResult = previous == null ? null : previous.path("endpoints").get(endpoint);
+            summary.append(String.format("%-24s %10d %8d %10.1f %9.2f %9.2f %9.2f %14s%n",
+                    endpoint, result.requests(), result.errors(), result.throughput(),
+                    result.p50Millis(), result.p99Millis(), result.maxMillis(),
+                    previousResult == null ? "-" : String.format("%.2f", previousResult.path("p99Millis").asDouble())));
+        });
+
+        System.out.print(summary);
+    }
+}
@@ -0,0 +1,158 @@
+package com.spotibot.backend.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spotibot.backend.DataManagement;
+import com.spotibot.backend.UserSession;
+import com.spotibot.backend.spotify.SpotifyToken;
+import se.michaelthelin.spotify.model_objects.credentials.AuthorizationCodeCredentials;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ Drives the traffic of one room: the host creates the room, the guests poll the current song and now and then
+ vote to skip, search with a burst of growing prefixes or add a track to the queue.
+ The Spotify login is skipped, the room is authorized in-process with a token only the Spotify stand-in knows.
+ */
+public class LoadScenario {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final String[] SEARCH_TERMS = { "stub song", "stub artist", "stub album", "song 1", "artist 4" };
+
+    private final URI baseUri;
+    private final LatencyRecorder latencyRecorder;
+    private final LoadSettings settings;
+
+    public LoadScenario(URI baseUri, LatencyRecorder latencyRecorder, LoadSettings settings) {
+        this.baseUri = baseUri;
+        this.latencyRecorder = latencyRecorder;
+        this.settings = settings;
+    }
+
+    public LoadClient newClient() {
+        return new LoadClient(baseUri, latencyRecorder);
+    }
+
+    /**
+     Creates a room as the given host and authorizes it with Spotify.
+     @param host the client creating the room
+     @return the identifier of the created room
+     */
+    public String createRoom(LoadClient host) throws IOException {
+        LoadClient.Response response = host.post("create_room", "/room/create_room",
+                "{\"guestCanPause\":true,\"votesToSkip\":" + settings.votesToSkip() + "}");
+
+        if (!response.isOk()) {
+            throw new IllegalStateException("Room creation failed with status " + response.status());
+        }
+
+        String roomIdentifier = objectMapper.readTree(response.body()).get("roomIdentifier").asText();
+        authorize(roomIdentifier);
+        return roomIdentifier;
+    }
+
+    public void leaveRoom(LoadClient host, String roomIdentifier) {
+        host.get("leave_room", "/room/leave_room?roomIdentifier=" + roomIdentifier);
+    }
+
+    /**
+     Runs the host and guests of a room until the deadline, each client on its own thread of the executor.
+     @param deadlineNanos the System.nanoTime() at which the clients stop
+     */
+    public void driveRoom(ExecutorService executor, LoadClient host, List<LoadClient> guests, String roomIdentifier, long deadlineNanos) throws Exception {
+        List<Future<?>> clients = new ArrayList<>();
+
+        clients.add(executor.submit(() -> runHost(host, roomIdentifier, deadlineNanos)));
+        for (LoadClient guest : guests) {
+            clients.add(executor.submit(() -> runGuest(guest, roomIdentifier, deadlineNanos)));
+        }
+
+        for (Future<?> client : clients) {
+            client.get();
+        }
+    }
+
+    private void runHost(LoadClient host, String roomIdentifier, long deadlineNanos) {
+        while (pause(deadlineNanos)) {
+            host.get("get_room", "/room/get_room?roomIdentifier=" + roomIdentifier);
+            host.get("current-song", "/spotify/current-song?code=" + roomIdentifier);
+            host.get("queue", "/spotify/queue?code=" + roomIdentifier);
+        }
+    }
+
+    private void runGuest(LoadClient guest, String roomIdentifier, long deadlineNanos) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        // Joining the room binds a userIdentifier to the guest's session, votes and queue adds are counted per guest
+        guest.get("get_room", "/room/get_room?roomIdentifier=" + roomIdentifier);
+
+        while (pause(deadlineNanos)) {
+            guest.get("current-song", "/spotify/current-song?code=" + roomIdentifier);
+
+            if (random.nextDouble() < settings.voteProbability()) {
+                guest.get("skip-song", "/spotify/skip-song?code=" + roomIdentifier);
+            }
+            if (random.nextDouble() < settings.searchProbability()) {
+                searchBurst(guest, roomIdentifier, SEARCH_TERMS[random.nextInt(SEARCH_TERMS.length)]);
+            }
+            if (random.nextDouble() < settings.queueProbability()) {
+                addTrack(guest, roomIdentifier, random.nextInt(50));
+            }
+        }
+    }
+
+    /**
+     Searches every prefix of the term from three letters on, like a guest typing into the search field.
+     */
+    private void searchBurst(LoadClient guest, String roomIdentifier, String term) {
+        for (int length = 3; length <= term.length(); length++) {
+            guest.post("search-song", "/spotify/search-song",
+                    "{\"roomIdentifier\":\"" + roomIdentifier + "\",\"queryString\":\"" + term.substring(0, length) + "\"}");
+        }
+    }
+
+    public void addTrack(LoadClient guest, String roomIdentifier, int track) {
+        guest.post("add-track-to-playback", "/spotify/add-track-to-playback",
+                "{\"roomIdentifier\":\"" + roomIdentifier + "\",\"trackHref\":\"spotify:track:track" + track
+                        + "\",\"songName\":\"Stub Song " + track + "\",\"artistName\":\"Stub Artist " + track % 7
+                        + "\",\"pictureURI\":\"https://i.scdn.co/image/" + track + "-300\"}");
+    }
+
+    /**
+     Sleeps one poll interval with jitter, so the clients do not poll in lockstep.
+     @return false once the deadline passed
+     */
+    private boolean pause(long deadlineNanos) {
+        long intervalMillis = settings.pollInterval().toMillis();
+
+        try {
+            TimeUnit.MILLISECONDS.sleep(intervalMillis / 2 + ThreadLocalRandom.current().nextLong(intervalMillis + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        return System.nanoTime() < deadlineNanos;
+    }
+
+    private static void authorize(String roomIdentifier) {
+        UserSession userSession = DataManagement.getMatchingUserSession(roomIdentifier)
+                .orElseThrow(() -> new IllegalStateException("Room " + roomIdentifier + " was not stored"));
+
+        SpotifyToken spotifyToken = new SpotifyToken();
+        spotifyToken.setAuthorizationCodeCredentials(new AuthorizationCodeCredentials.Builder()
+                .setAccessToken("room-" + roomIdentifier)
+                .setRefreshToken("refresh-" + roomIdentifier)
+                .setTokenType("Bearer")
+                .setScope("user-read-playback-state user-modify-playback-state")
+                .setExpiresIn(86_400)
+                .build());
+        spotifyToken.setExpiresIn(System.currentTimeMillis() / 1000 + 86_400);
+        userSession.setUserSpotifyToken(spotifyToken);
+    }
+}
@@ -0,0 +1,85 @@
+package com.spotibot.backend.load;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ Traffic shape and SLOs of a load or soak run, read from system properties so a run can be scaled up
+ without code changes, e.g. mvn test -Pload -Dload.rooms=100 -Dsoak.duration=PT2H.
+ */
+public record LoadSettings(
+        int rooms,
+        int guestsPerRoom,
+        int votesToSkip,
+        Duration duration,
+        Duration pollInterval,
+        long upstreamLatencyMillis,
+        double searchProbability,
+        double voteProbability,
+        double queueProbability,
+        double sloP50Millis,
+        double sloP99Millis,
+        double sloErrorRate,
+        Duration soakDuration,
+        Duration soakRoomLifetime,
+        Duration soakHeapSampleInterval,
+        long soakMaxHeapGrowthMb
+) {
+
+    public static LoadSettings fromSystemProperties() {
+        return new LoadSettings(
+                Integer.getInteger("load.rooms", 20),
+                Integer.getInteger("load.guests-per-room", 25),
+                Integer.getInteger("load.votes-to-skip", 5),
+                duration("load.duration", Duration.ofSeconds(60)),
+                duration("load.poll-interval", Duration.ofSeconds(1)),
+                Long.getLong("load.upstream-latency-ms", 40),
+                probability("load.search-probability", 0.05),
+                probability("load.vote-probability", 0.02),
+                probability("load.queue-probability", 0.02),
+                Double.parseDouble(System.getProperty("load.slo.p50-ms", "25")),
+                Double.parseDouble(System.getProperty("load.slo.p99-ms", "1000")),
+                Double.parseDouble(System.getProperty("load.slo.error-rate", "0.001")),
+                duration("soak.duration", Duration.ofMinutes(10)),
+                duration("soak.room-lifetime", Duration.ofSeconds(30)),
+                duration("soak.heap-sample-interval", Duration.ofSeconds(10)),
+                Long.getLong("soak.max-heap-growth-mb", 32)
+        );
+    }
+
+    /**
+     Returns the settings as flat map for the run report.
+     @return the setting values by property name
+     */
+    public Map<String, Object> toReport() {
+        Map<String, Object> report = new LinkedHashMap<>();
+
+        report.put("load.rooms", rooms);
+        report.put("load.guests-per-room", guestsPerRoom);
+        report.put("load.votes-to-skip", votesToSkip);
+        report.put("load.duration", duration.toString());
+        report.put("load.poll-interval", pollInterval.toString());
+        report.put("load.upstream-latency-ms", upstreamLatencyMillis);
+        report.put("load.search-probability", searchProbability);
+        report.put("load.vote-probability", voteProbability);
+        report.put("load.queue-probability", queueProbability);
+        report.put("load.slo.p50-ms", sloP50Millis);
+        report.put("load.slo.p99-ms", sloP99Millis);
+        report.put("load.slo.error-rate", sloErrorRate);
+        report.put("soak.duration", soakDuration.toString());
+        report.put("soak.room-lifetime", soakRoomLifetime.toString());
+        report.put("soak.heap-sample-interval", soakHeapSampleInterval.toString());
+        report.put("soak.max-heap-growth-mb", soakMaxHeapGrowthMb);
+        return report;
+    }
+
+    private static Duration duration(String property, Duration defaultValue) {
+        String value = System.getProperty(property);
+        return value == null ? defaultValue : Duration.parse(value);
+    }
+
+    private static double probability(String property, double defaultValue) {
+        return Double.parseDouble(System.getProperty(property, String.valueOf(defaultValue)));
+    }
+}
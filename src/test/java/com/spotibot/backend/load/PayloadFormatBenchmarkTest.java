@@ -0,0 +1,110 @@
+package com.spotibot.backend.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.spotibot.backend.PayloadFormat;
+import com.spotibot.backend.PayloadWriters;
+import com.spotibot.backend.SearchSongResult;
+import com.spotibot.backend.SongContext;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ Compares the payload size and encode cost of the polled SongContext and of a page of search results in every
+ {@link PayloadFormat} and on the former writeValueAsString path. Writes target/load-reports/payload-formats-latest.json.
+ */
+@Tag("load")
+class PayloadFormatBenchmarkTest {
+    private static final int WARMUP_ITERATIONS = 20_000;
+    private static final int ITERATIONS = 100_000;
+    private static final Path REPORT_DIRECTORY = Path.of("target", "load-reports");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final PayloadWriters payloadWriters = new PayloadWriters(objectMapper);
+
+    @Test
+    void binaryFormatsAreSmallerThanJson() throws Exception {
+        SongContext songContext = new SongContext("Never Gonna Give You Up", "Rick Astley", 213_573, 61_412,
+                System.currentTimeMillis(), "https://i.scdn.co/image/ab67616d0000b273baf89eb11ec7c657805d2da0", true, 42, 2, 5);
+        List<SearchSongResult> searchResults = IntStream.range(0, 20)
+                .mapToObj(i -> new SearchSongResult("Artist " + i, "Song title number " + i,
+                        "https://i.scdn.co/image/ab67616d00004851baf89eb11ec7c657805d2d" + i, "spotify:track:4cOdK2wGLETKBW3PvgPWq" + i))
+                .toList();
+
+        Map<String, Object> payloads = new LinkedHashMap<>();
+        payloads.put("song-context", measure(songContext));
+        payloads.put("search-results", measure(searchResults));
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("run", "payload-formats");
+        report.put("startedAt", Instant.now().toString());
+        report.put("javaVersion", Runtime.version().toString());
+        report.put("iterations", ITERATIONS);
+        report.put("payloads", payloads);
+        writeReport(report);
+
+        for (Object measured : payloads.values()) {
+            @SuppressWarnings("unchecked")
+            Map<String, Map<String, Number>> formats = (Map<String, Map<String, Number>>) measured;
+            int jsonBytes = formats.get("json").get("bytes").intValue();
+            assertThat(formats.get("cbor").get("bytes").intValue()).isLessThan(jsonBytes);
+            assertThat(formats.get("smile").get("bytes").intValue()).isLessThan(jsonBytes);
+        }
+    }
+
+    private Map<String, Map<String, Number>> measure(Object value) throws IOException {
+        Map<String, Map<String, Number>> formats = new LinkedHashMap<>();
+        formats.put("json-string", measure(() -> objectMapper.writeValueAsString(value).getBytes(StandardCharsets.UTF_8)));
+
+        for (PayloadFormat format : PayloadFormat.values()) {
+            formats.put(format.name().toLowerCase(), measure(() -> payloadWriters.write(format, value)));
+        }
+
+        return formats;
+    }
+
+    private static Map<String, Number> measure(Encoder encoder) throws IOException {
+        long sink = 0;
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            sink += encoder.encode().length;
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += encoder.encode().length;
+        }
+        double nanosPerEncode = (double) (System.nanoTime() - start) / ITERATIONS;
+
+        Map<String, Number> result = new LinkedHashMap<>();
+        result.put("bytes", encoder.encode().length);
+        result.put("nanosPerEncode", nanosPerEncode);
+        result.put("sink", sink);
+        return result;
+    }
+
+    private static void writeReport(Map<String, Object> report) throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+        Files.createDirectories(REPORT_DIRECTORY);
+        objectMapper.writeValue(REPORT_DIRECTORY.resolve("payload-formats-latest.json").toFile(), report);
+        System.out.println(objectMapper.writeValueAsString(report));
+    }
+
+    @FunctionalInterface
+    private interface Encoder {
+        byte[] encode() throws IOException;
+    }
+}
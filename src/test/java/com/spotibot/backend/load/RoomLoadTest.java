@@ -0,0 +1,57 @@
+package com.spotibot.backend.load;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ Runs load.rooms rooms with load.guests-per-room polling guests each for load.duration, then asserts the
+ latency and error-rate SLOs and writes the run report.
+ */
+class RoomLoadTest extends AbstractLoadTest {
+
+    @Test
+    void roomsMeetLatencySlosUnderLoad() throws Exception {
+        LatencyRecorder latencyRecorder = new LatencyRecorder();
+        LoadScenario scenario = newScenario(latencyRecorder);
+        LoadReport report = new LoadReport("room-load", settings);
+        ExecutorService executor = Executors.newFixedThreadPool(settings.rooms() * (settings.guestsPerRoom() + 2));
+
+        try {
+            List<Future<?>> rooms = new ArrayList<>();
+            long start = System.nanoTime();
+            long deadline = start + settings.duration().toNanos();
+
+            for (int i = 0; i < settings.rooms(); i++) {
+                LoadClient host = scenario.newClient();
+                String roomIdentifier = scenario.createRoom(host);
+                List<LoadClient> guests = new ArrayList<>();
+
+                for (int j = 0; j < settings.guestsPerRoom(); j++) {
+                    guests.add(scenario.newClient());
+                }
+
+                rooms.add(executor.submit(() -> {
+                    scenario.driveRoom(executor, host, guests, roomIdentifier, deadline);
+                    return null;
+                }));
+            }
+
+            for (Future<?> room : rooms) {
+                room.get();
+            }
+
+            Map<String, LatencyRecorder.Summary> endpoints = latencyRecorder.summarize((System.nanoTime() - start) / 1e9);
+            report.put("upstreamRequests", spotifyStubServer().getRequests());
+            report.write(endpoints);
+            assertSlos(endpoints);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.spotibot.backend.load;
+
+import com.spotibot.backend.DataManagement;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ Keeps load.rooms rooms busy for soak.duration. Every room is left by its host after soak.room-lifetime and
+ replaced by a new room of a new host, the guests move on to it. Rooms that are left must not stay behind in
+ {@link DataManagement#userSessionCache}, and the heap, sampled after a full GC, must stay flat.
+ */
+class RoomSoakTest extends AbstractLoadTest {
+    private static final long MB = 1024 * 1024;
+
+    @Test
+    void roomChurnKeepsHeapFlat() throws Exception {
+        LatencyRecorder latencyRecorder = new LatencyRecorder();
+        LoadScenario scenario = newScenario(latencyRecorder);
+        LoadReport report = new LoadReport("room-soak", settings);
+        ExecutorService executor = Executors.newFixedThreadPool(settings.rooms() * (settings.guestsPerRoom() + 2));
+        ScheduledExecutorService heapSampler = Executors.newSingleThreadScheduledExecutor();
+        List<Long> heapSamples = Collections.synchronizedList(new ArrayList<>());
+
+        try {
+            heapSampler.scheduleAtFixedRate(() -> heapSamples.add(usedHeapAfterGc()),
+                    0, settings.soakHeapSampleInterval().toMillis(), TimeUnit.MILLISECONDS);
+
+            List<Future<Integer>> roomSlots = new ArrayList<>();
+            long start = System.nanoTime();
+            long deadline = start + settings.soakDuration().toNanos();
+
+            for (int i = 0; i < settings.rooms(); i++) {
+                roomSlots.add(executor.submit(() -> churnRooms(scenario, executor, deadline)));
+            }
+
+            int roomsCreated = 0;
+            for (Future<Integer> roomSlot : roomSlots) {
+                roomsCreated += roomSlot.get();
+            }
+
+            heapSampler.shutdownNow();
+            heapSamples.add(usedHeapAfterGc());
+
+            Map<String, LatencyRecorder.Summary> endpoints = latencyRecorder.summarize((System.nanoTime() - start) / 1e9);
+            long heapGrowthMb = heapGrowth(heapSamples) / MB;
+
+            report.put("roomsCreated", roomsCreated);
+            report.put("roomsLeftBehind", DataManagement.userSessionCache.size());
+            report.put("heapSamplesMb", heapSamples.stream().map(sample -> sample / MB).toList());
+            report.put("heapGrowthMb", heapGrowthMb);
+            report.put("upstreamRequests", spotifyStubServer().getRequests());
+            report.write(endpoints);
+
+            assertThat(DataManagement.userSessionCache).as("sessions of left rooms").isEmpty();
+            assertThat(heapGrowthMb).as("heap growth in MB").isLessThanOrEqualTo(settings.soakMaxHeapGrowthMb());
+            assertSlos(endpoints);
+        } finally {
+            heapSampler.shutdownNow();
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     Creates, drives and leaves one room after the other until the deadline.
+     @return the number of rooms created
+     */
+    private int churnRooms(LoadScenario scenario, ExecutorService executor, long deadlineNanos) throws Exception {
+        List<LoadClient> guests = new ArrayList<>();
+        int roomsCreated = 0;
+
+        for (int i = 0; i < settings.guestsPerRoom(); i++) {
+            guests.add(scenario.newClient());
+        }
+
+        while (System.nanoTime() < deadlineNanos) {
+            LoadClient host = scenario.newClient();
+            String roomIdentifier = scenario.createRoom(host);
+            long roomDeadline = Math.min(deadlineNanos, System.nanoTime() + settings.soakRoomLifetime().toNanos());
+
+            scenario.driveRoom(executor, host, guests, roomIdentifier, roomDeadline);
+            scenario.leaveRoom(host, roomIdentifier);
+            roomsCreated++;
+        }
+
+        return roomsCreated;
+    }
+
+    /**
+     Compares the lowest sample of the first third of the run, skipping the warm-up sample, with the lowest
+     sample of the last third. The lowest samples are the live set, while the others include garbage of
+     requests in flight.
+     @return the growth of the live heap in bytes
+     */
+    private static long heapGrowth(List<Long> heapSamples) {
+        List<Long> samples = heapSamples.subList(Math.min(1, heapSamples.size() - 1), heapSamples.size());
+        int third = Math.max(1, samples.size() / 3);
+
+        long baseline = Collections.min(samples.subList(0, third));
+        long end = Collections.min(samples.subList(samples.size() - third, samples.size()));
+        return end - baseline;
+    }
+
+    private static long usedHeapAfterGc() {
+        MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+
+        memoryMXBean.gc();
+        return memoryMXBean.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,174 @@
+package com.spotibot.backend.load;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ Local stand-in for the Spotify Web API player, device and search endpoints.
+ Every access token gets its own player, which moves through a fixed catalog on skip and rollback.
+ Responses are delayed by a configurable latency with jitter to resemble the real upstream.
+ */
+public class SpotifyStubServer implements AutoCloseable {
+    private static final int CATALOG_SIZE = 50;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final long latencyMillis;
+    private final Map<String, Player> players = new ConcurrentHashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+
+    public SpotifyStubServer(long latencyMillis) throws IOException {
+        this.latencyMillis = latencyMillis;
+        executor = Executors.newFixedThreadPool(128);
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+        server.setExecutor(executor);
+        server.createContext("/v1/", this::handle);
+        server.start();
+    }
+
+    public URI getUri() {
+        return URI.create("http://localhost:" + server.getAddress().getPort());
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        simulateLatency();
+
+        String path = exchange.getRequestURI().getPath();
+        String method = exchange.getRequestMethod();
+        Player player = players.computeIfAbsent(String.valueOf(exchange.getRequestHeaders().getFirst("Authorization")), token -> new Player());
+
+        try (exchange) {
+            switch (method + " " + path) {
+                case "GET /v1/me/player" -> respond(exchange, 200, player.currentlyPlaying());
+                case "GET /v1/me/player/devices" -> respond(exchange, 200, "{\"devices\":[" + device("stub-device", true) + "]}");
+                case "GET /v1/search" -> respond(exchange, 200, search(exchange.getRequestURI().getQuery()));
+                case "PUT /v1/me/player/play" -> {
+                    player.playing = true;
+                    respond(exchange, 204, null);
+                }
+                case "PUT /v1/me/player/pause" -> {
+                    player.playing = false;
+                    respond(exchange, 204, null);
+                }
+                case "POST /v1/me/player/next" -> {
+                    player.move(1);
+                    respond(exchange, 204, null);
+                }
+                case "POST /v1/me/player/previous" -> {
+                    player.move(-1);
+                    respond(exchange, 204, null);
+                }
+                case "POST /v1/me/player/queue" -> respond(exchange, 204, null);
+                default -> respond(exchange, 404, "{\"error\":{\"status\":404,\"message\":\"Not found\"}}");
+            }
+        }
+    }
+
+    private void simulateLatency() {
+        if (latencyMillis <= 0) {
+            return;
+        }
+
+        try {
+            Thread.sleep(latencyMillis + ThreadLocalRandom.current().nextLong(latencyMillis / 2 + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(bytes);
+        }
+    }
+
+    private static String search(String query) {
+        int seed = Math.floorMod(String.valueOf(query).hashCode(), CATALOG_SIZE);
+        StringBuilder items = new StringBuilder();
+
+        for (int i = 0; i < 10; i++) {
+            if (i > 0) {
+                items.append(',');
+            }
+            items.append(track((seed + i) % CATALOG_SIZE));
+        }
+
+        return "{\"tracks\":{\"href\":\"https://api.spotify.com/v1/search\",\"items\":[" + items
+                + "],\"limit\":10,\"next\":null,\"offset\":0,\"previous\":null,\"total\":10}}";
+    }
+
+    private static String track(int index) {
+        String artist = "{\"external_urls\":{},\"href\":\"https://api.spotify.com/v1/artists/artist" + index % 7
+                + "\",\"id\":\"artist" + index % 7 + "\",\"name\":\"Stub Artist " + index % 7
+                + "\",\"type\":\"artist\",\"uri\":\"spotify:artist:artist" + index % 7 + "\"}";
+        String images = "[{\"height\":640,\"url\":\"https://i.scdn.co/image/" + index + "-640\",\"width\":640},"
+                + "{\"height\":300,\"url\":\"https://i.scdn.co/image/" + index + "-300\",\"width\":300},"
+                + "{\"height\":64,\"url\":\"https://i.scdn.co/image/" + index + "-64\",\"width\":64}]";
+
+        return "{\"album\":{\"album_type\":\"album\",\"artists\":[" + artist + "],\"external_urls\":{},"
+                + "\"href\":\"https://api.spotify.com/v1/albums/album" + index + "\",\"id\":\"album" + index + "\",\"images\":" + images
+                + ",\"name\":\"Stub Album " + index + "\",\"release_date\":\"2020-01-01\",\"release_date_precision\":\"day\","
+                + "\"type\":\"album\",\"uri\":\"spotify:album:album" + index + "\"},"
+                + "\"artists\":[" + artist + "],\"disc_number\":1,\"duration_ms\":" + (180_000 + index * 1000)
+                + ",\"explicit\":false,\"external_ids\":{},\"external_urls\":{},\"href\":\"https://api.spotify.com/v1/tracks/track" + index
+                + "\",\"id\":\"track" + index + "\",\"is_local\":false,\"is_playable\":true,\"name\":\"Stub Song " + index
+                + "\",\"popularity\":50,\"track_number\":1,\"type\":\"track\",\"uri\":\"spotify:track:track" + index + "\"}";
+    }
+
+    private static String device(String id, boolean active) {
+        return "{\"id\":\"" + id + "\",\"is_active\":" + active + ",\"is_private_session\":false,\"is_restricted\":false,"
+                + "\"name\":\"Stub Speaker\",\"type\":\"Speaker\",\"volume_percent\":50}";
+    }
+
+    private static final class Player {
+        private volatile int index;
+        private volatile boolean playing = true;
+        private volatile long startedAt = System.currentTimeMillis();
+
+        private synchronized void move(int offset) {
+            index = Math.floorMod(index + offset, CATALOG_SIZE);
+            startedAt = System.currentTimeMillis();
+        }
+
+        private String currentlyPlaying() {
+            long progress = Math.min(System.currentTimeMillis() - startedAt, 180_000);
+
+            return "{\"device\":" + device("stub-device", true) + ",\"repeat_state\":\"off\",\"shuffle_state\":false,"
+                    + "\"context\":null,\"timestamp\":" + System.currentTimeMillis() + ",\"progress_ms\":" + progress
+                    + ",\"is_playing\":" + playing + ",\"item\":" + track(index)
+                    + ",\"currently_playing_type\":\"track\",\"actions\":{\"disallows\":{}}}";
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.spotibot.backend.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.spi.FilterReply;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimitingTurboFilterTest {
+    private final Logger logger = new LoggerContext().getLogger("test");
+
+    @Test
+    void dropsWarningsBeyondTheAllowedRepetitions() {
+        RateLimitingTurboFilter filter = filter(2);
+
+        assertThat(warn(filter, "repeated")).isEqualTo(FilterReply.NEUTRAL);
+        assertThat(warn(filter, "repeated")).isEqualTo(FilterReply.NEUTRAL);
+        assertThat(warn(filter, "repeated")).isEqualTo(FilterReply.DENY);
+        assertThat(filter.decide(null, logger, Level.ERROR, "repeated", null, null)).isEqualTo(FilterReply.NEUTRAL);
+    }
+
+    @Test
+    void aFloodOfDistinctWarningsKeepsTheSampledOnesDropped() {
+        RateLimitingTurboFilter filter = filter(8);
+        for (int i = 0; i < 5; i++) {
+            warn(filter, "repeated");
+        }
+
+        for (int i = 0; i < 100; i++) {
+            warn(filter, "distinct " + i);
+            assertThat(warn(filter, "repeated")).isEqualTo(FilterReply.DENY);
+        }
+
+        assertThat(filter.getWindows()).hasSizeLessThanOrEqualTo(9);
+    }
+
+    private static RateLimitingTurboFilter filter(int cacheSize) {
+        RateLimitingTurboFilter filter = new RateLimitingTurboFilter();
+        filter.setAllowedRepetitions(2);
+        filter.setIntervalMillis(60_000);
+        filter.setCacheSize(cacheSize);
+        return filter;
+    }
+
+    private FilterReply warn(RateLimitingTurboFilter filter, String format) {
+        return filter.decide(null, logger, Level.WARN, format, null, null);
+    }
+}
@@ -0,0 +1,51 @@
+package com.spotibot.backend.room;
+
+import com.spotibot.backend.Vote;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PlaybackHistoryTest {
+    private final PlaybackHistory playbackHistory = new PlaybackHistory();
+
+    @Test
+    void recordsEachSongOnceAndKeepsOnlyTheLatestTracks() {
+        for (int i = 0; i < PlaybackHistory.CAPACITY + 10; i++) {
+            assertThat(playbackHistory.record(track("spotify:track:" + i))).isTrue();
+            assertThat(playbackHistory.record(track("spotify:track:" + i))).isFalse();
+        }
+
+        assertThat(playbackHistory.size()).isEqualTo(PlaybackHistory.CAPACITY);
+        assertThat(playbackHistory.getRecent(3)).extracting(PlayedTrack::getSongHref)
+                .containsExactly("spotify:track:59", "spotify:track:58", "spotify:track:57");
+        assertThat(playbackHistory.getRecent(PlaybackHistory.CAPACITY + 1)).hasSize(PlaybackHistory.CAPACITY)
+                .last().extracting(PlayedTrack::getSongHref).isEqualTo("spotify:track:10");
+    }
+
+    @Test
+    void marksOnlyTheLatestTrackAsSkipped() {
+        playbackHistory.record(track("spotify:track:a"));
+        playbackHistory.record(track("spotify:track:b"));
+
+        assertThat(playbackHistory.markSkipped("spotify:track:a")).isFalse();
+        assertThat(playbackHistory.markSkipped("spotify:track:b")).isTrue();
+        assertThat(playbackHistory.getRecent(2)).extracting(PlayedTrack::isSkipped).containsExactly(true, false);
+    }
+
+    @Test
+    void songChangeClearsTheVotesOfTheRoom() {
+        Room room = new Room("ROOM1", true, true, 3);
+        room.recordPlaying(track("spotify:track:a"));
+        room.setCurrentSong("spotify:track:a");
+        room.castVote(new Vote("guest", "spotify:track:a"));
+
+        assertThat(room.recordPlaying(track("spotify:track:a"))).isFalse();
+        assertThat(room.getVoteList()).hasSize(1);
+        assertThat(room.recordPlaying(track("spotify:track:b"))).isTrue();
+        assertThat(room.getVoteList()).isEmpty();
+    }
+
+    private static PlayedTrack track(String songHref) {
+        return new PlayedTrack(songHref, "Song", "Artist", null, System.currentTimeMillis(), false);
+    }
+}
@@ -0,0 +1,127 @@
+package com.spotibot.backend.room;
+
+import com.spotibot.backend.ConcurrentStress;
+import com.spotibot.backend.DataManagement;
+import com.spotibot.backend.UserSession;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpSession;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ Calls createRoom and leaveRoom of many users at once and checks that room identifiers stay unique and
+ no session is lost or left behind, and that the room stats are kept from guests.
+ */
+class RoomControllerStressTest {
+    private static final int USERS = 2_000;
+
+    private final RoomController roomController = new RoomController(new RoomEngine(new RoomEngineProperties(), new SimpleMeterRegistry()));
+
+    @BeforeEach
+    void clearRooms() {
+        DataManagement.clear();
+    }
+
+    @Test
+    void concurrentlyCreatedRoomsAreAllStoredWithUniqueIdentifiers() throws Exception {
+        List<String> roomIdentifiers = ConcurrentStress.run(USERS, i -> () -> createRoom(request("user-" + i)));
+
+        assertThat(DataManagement.userSessionCache).hasSize(USERS);
+        assertThat(new HashSet<>(roomIdentifiers)).hasSize(USERS);
+        for (int i = 0; i < USERS; i++) {
+            assertThat(DataManagement.getMatchingEntry(roomIdentifiers.get(i))).get()
+                    .extracting(entry -> entry.getKey()).isEqualTo("user-" + i);
+        }
+    }
+
+    @RepeatedTest(10)
+    void concurrentCreatesOfOneUserShareOneRoom() throws Exception {
+        MockHttpSession session = session("host");
+        List<String> roomIdentifiers = ConcurrentStress.run(64, i -> () -> createRoom(request(session)));
+
+        assertThat(DataManagement.userSessionCache).hasSize(1);
+        assertThat(Set.copyOf(roomIdentifiers)).containsExactly(DataManagement.userSessionCache.get("host").getUserRoom().getRoomIdentifier());
+    }
+
+    @Test
+    void leavingRoomsWhileOthersAreCreatedLosesNoSession() throws Exception {
+        List<MockHttpSession> leavingSessions = IntStream.range(0, USERS / 2).mapToObj(i -> session("leaving-" + i)).toList();
+        List<String> leavingRooms = leavingSessions.stream().map(session -> createRoom(request(session))).toList();
+
+        List<Integer> statuses = ConcurrentStress.<Integer>run(USERS, i -> i % 2 == 0
+                ? () -> leaveRoom(request(leavingSessions.get(i / 2)), leavingRooms.get(i / 2))
+                : () -> {
+                    createRoom(request("staying-" + i));
+                    return 200;
+                });
+
+        assertThat(statuses).containsOnly(200);
+        assertThat(DataManagement.userSessionCache.keySet()).allMatch(userIdentifier -> userIdentifier.startsWith("staying-")).hasSize(USERS / 2);
+        assertThat(leavingRooms).allMatch(roomIdentifier -> DataManagement.getMatchingUserSession(roomIdentifier).isEmpty());
+
+        Set<String> stayingRooms = DataManagement.userSessionCache.values().stream()
+                .map(UserSession::getUserRoom)
+                .map(Room::getRoomIdentifier)
+                .collect(Collectors.toSet());
+        assertThat(stayingRooms).hasSize(USERS / 2).allMatch(roomIdentifier -> DataManagement.getMatchingUserSession(roomIdentifier).isPresent());
+    }
+
+    @Test
+    void concurrentLeavesOfOneRoomRemoveItOnce() throws Exception {
+        MockHttpSession host = session("host");
+        String roomIdentifier = createRoom(request(host));
+
+        List<Integer> statuses = ConcurrentStress.<Integer>run(64, i -> i == 0
+                ? () -> leaveRoom(request(host), roomIdentifier)
+                : () -> leaveRoom(request("guest-" + i), roomIdentifier));
+
+        assertThat(statuses).contains(200).allMatch(status -> status == 200 || status == 403 || status == 404);
+        assertThat(DataManagement.userSessionCache).isEmpty();
+        assertThat(DataManagement.getMatchingUserSession(roomIdentifier)).isEmpty();
+    }
+
+    @Test
+    void statsAreOnlyServedToTheHost() {
+        String roomIdentifier = createRoom(request("host"));
+
+        assertThat(roomController.getRoomStats(request("host"), roomIdentifier, 10).getStatusCode().value()).isEqualTo(200);
+        assertThat(roomController.getRoomStats(request("guest"), roomIdentifier, 10).getStatusCode().value()).isEqualTo(403);
+        assertThat(roomController.getRoomStats(request("host"), "NOPE1", 10).getStatusCode().value()).isEqualTo(404);
+    }
+
+    private String createRoom(MockHttpServletRequest request) {
+        ResponseEntity<Object> response = roomController.createRoom(request, new Room(null, true, true, 3));
+        return ((Room) response.getBody()).getRoomIdentifier();
+    }
+
+    private int leaveRoom(MockHttpServletRequest request, String roomIdentifier) {
+        return roomController.leaveRoom(request, roomIdentifier).getStatusCode().value();
+    }
+
+    private static MockHttpServletRequest request(String userIdentifier) {
+        return request(session(userIdentifier));
+    }
+
+    private static MockHttpServletRequest request(MockHttpSession session) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setSession(session);
+        return request;
+    }
+
+    private static MockHttpSession session(String userIdentifier) {
+        MockHttpSession session = new MockHttpSession();
+        session.setAttribute("userIdentifier", userIdentifier);
+        return session;
+    }
+}
@@ -0,0 +1,118 @@
+package com.spotibot.backend.room;
+
+import com.spotibot.backend.ConcurrentStress;
+import com.spotibot.backend.Vote;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RoomEngineTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private RoomEngine roomEngine;
+
+    @AfterEach
+    void closeEngine() {
+        roomEngine.close();
+    }
+
+    @Test
+    void mutationsOfOneRoomRunOnOneThreadInOrder() throws Exception {
+        roomEngine = new RoomEngine(properties(4, 10_000), meterRegistry);
+        List<String> threads = new ArrayList<>();
+        List<Integer> order = new ArrayList<>();
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            int sequence = i;
+            futures.add(roomEngine.submit("ROOM1", () -> {
+                threads.add(Thread.currentThread().getName());
+                order.add(sequence);
+                return null;
+            }));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+
+        assertThat(threads).hasSize(1_000).containsOnly(threads.get(0));
+        assertThat(order).isSorted();
+    }
+
+    @Test
+    void concurrentVotesAreCountedOnceEach() throws Exception {
+        roomEngine = new RoomEngine(properties(0, 10_000), meterRegistry);
+        Room room = new Room("ROOM1", true, true, 1_000_000);
+
+        List<VoteOutcome> outcomes = ConcurrentStress.run(2_000, i -> () -> roomEngine.execute("ROOM1", () -> room.castVote(new Vote("guest-" + i % 1_000, null))));
+
+        assertThat(outcomes).filteredOn(outcome -> outcome == VoteOutcome.COUNTED).hasSize(1_000);
+        assertThat(room.getState().getVoteCount()).isEqualTo(1_000);
+    }
+
+    @Test
+    void fullMailboxIsRejected() throws Exception {
+        roomEngine = new RoomEngine(properties(1, 1), meterRegistry);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        roomEngine.submit("ROOM1", () -> {
+            blocked.countDown();
+            awaitQuietly(release);
+            return null;
+        });
+        blocked.await();
+        CompletableFuture<Object> queued = roomEngine.submit("ROOM1", () -> "queued");
+
+        assertThatThrownBy(() -> roomEngine.execute("ROOM1", () -> "rejected")).isInstanceOf(RoomBusyException.class);
+        release.countDown();
+        assertThat(queued.get(5, TimeUnit.SECONDS)).isEqualTo("queued");
+        assertThat(meterRegistry.counter("spotibot.room-engine.rejected").count()).isEqualTo(1);
+    }
+
+    @Test
+    void mutationsNotStartedInTimeNeverRun() throws Exception {
+        RoomEngineProperties properties = properties(1, 10);
+        properties.setAwaitTimeout(Duration.ofMillis(50));
+        roomEngine = new RoomEngine(properties, meterRegistry);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean ran = new AtomicBoolean();
+
+        roomEngine.submit("ROOM1", () -> {
+            blocked.countDown();
+            awaitQuietly(release);
+            return null;
+        });
+        blocked.await();
+
+        assertThatThrownBy(() -> roomEngine.run("ROOM1", () -> ran.set(true))).isInstanceOf(RoomBusyException.class);
+        release.countDown();
+        roomEngine.submit("ROOM1", () -> null).get(5, TimeUnit.SECONDS);
+
+        assertThat(ran).isFalse();
+    }
+
+    private static RoomEngineProperties properties(int shards, int mailboxCapacity) {
+        RoomEngineProperties properties = new RoomEngineProperties();
+        properties.setShards(shards);
+        properties.setMailboxCapacity(mailboxCapacity);
+        return properties;
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
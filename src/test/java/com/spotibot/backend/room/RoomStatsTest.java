@@ -0,0 +1,79 @@
+package com.spotibot.backend.room;
+
+import com.spotibot.backend.Vote;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RoomStatsTest {
+    private final RoomStats roomStats = new RoomStats();
+
+    @Test
+    void aggregatesSkipsVotesAndListeningTime() {
+        roomStats.trackStarted(track("spotify:track:a", 0));
+        roomStats.skipVoteCast("guest-1", "spotify:track:a");
+        roomStats.skipVoteCast("guest-2", "spotify:track:a");
+        roomStats.trackSkipped("spotify:track:a", 30_000);
+        roomStats.trackSkipped("spotify:track:a", 31_000);
+        roomStats.trackStarted(track("spotify:track:b", 30_000));
+
+        RoomStatsSnapshot snapshot = roomStats.snapshot(10, 90_000);
+
+        assertThat(snapshot.getTracksPlayed()).isEqualTo(2);
+        assertThat(snapshot.getSkips()).isEqualTo(1);
+        assertThat(snapshot.getSkipRate()).isEqualTo(0.5);
+        assertThat(snapshot.getMeanTimeToSkipMillis()).isEqualTo(30_000);
+        assertThat(snapshot.getListeningMillis()).isEqualTo(90_000);
+        assertThat(snapshot.getTracks()).first().satisfies(trackStats -> {
+            assertThat(trackStats.getSongHref()).isEqualTo("spotify:track:a");
+            assertThat(trackStats.getSkipVotes()).isEqualTo(2);
+        });
+        assertThat(snapshot.getGuests()).extracting(RoomStatsSnapshot.GuestStats::getSkipVotes).containsOnly(1L);
+    }
+
+    @Test
+    void guestsAreNamedByHandlesInsteadOfTheirIdentifiers() {
+        roomStats.skipVoteCast("guest-1", null);
+        roomStats.trackQueued(new TrackQueue().enqueue("guest-1", "spotify:track:a", null, null, null));
+        roomStats.skipVoteCast("guest-2", null);
+
+        RoomStatsSnapshot snapshot = roomStats.snapshot(10, 0);
+
+        assertThat(snapshot.getGuests()).hasSize(2)
+                .extracting(RoomStatsSnapshot.GuestStats::getGuest)
+                .doesNotContain("guest-1", "guest-2")
+                .doesNotHaveDuplicates();
+    }
+
+    @Test
+    void keepsTotalsOfEvictedGuests() {
+        for (int i = 0; i < RoomStats.MAX_GUESTS * 2; i++) {
+            roomStats.skipVoteCast("guest-" + i, null);
+        }
+
+        RoomStatsSnapshot snapshot = roomStats.snapshot(Integer.MAX_VALUE, 0);
+
+        assertThat(snapshot.getSkipVotes()).isEqualTo(RoomStats.MAX_GUESTS * 2);
+        assertThat(snapshot.getGuests()).hasSize(RoomStats.MAX_GUESTS);
+    }
+
+    @Test
+    void roomCountsVotesAndPlays() {
+        Room room = new Room("ROOM1", true, true, 3);
+        room.recordPlaying(track("spotify:track:a", System.currentTimeMillis()));
+        room.setCurrentSong("spotify:track:a");
+        room.castVote(new Vote("guest", "spotify:track:a"));
+        room.castVote(new Vote("guest", "spotify:track:a"));
+        room.recordSkip("spotify:track:a");
+
+        RoomStatsSnapshot snapshot = room.getStats().snapshot(10, System.currentTimeMillis());
+
+        assertThat(snapshot.getSkipVotes()).isEqualTo(1);
+        assertThat(snapshot.getSkips()).isEqualTo(1);
+        assertThat(room.getPlaybackHistory().getLatest().isSkipped()).isTrue();
+    }
+
+    private static PlayedTrack track(String songHref, long startedAt) {
+        return new PlayedTrack(songHref, "Song", "Artist", null, startedAt, false);
+    }
+}
@@ -0,0 +1,120 @@
+package com.spotibot.backend.room;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TrackQueueTest {
+    private final AtomicLong now = new AtomicLong();
+    private final TrackQueue trackQueue = new TrackQueue(now::get);
+
+    @Test
+    void schedulesRoundRobinAcrossGuests() {
+        enqueue("alice", "a1", "a2", "a3");
+        enqueue("bob", "b1", "b2");
+        enqueue("carol", "c1");
+
+        assertThat(trackQueue.getTracks()).extracting(QueuedTrack::getSongHref)
+                .containsExactly("a1", "b1", "c1", "a2", "b2", "a3");
+    }
+
+    @Test
+    void upvotesOnlyReorderWithinARound() {
+        enqueue("alice", "a1", "a2");
+        enqueue("bob", "b1", "b2");
+
+        assertThat(trackQueue.upvote("carol", "b1")).isTrue();
+        assertThat(trackQueue.upvote("carol", "b1")).isFalse();
+        trackQueue.upvote("carol", "b2");
+        trackQueue.upvote("dave", "b2");
+
+        assertThat(trackQueue.getTracks()).extracting(QueuedTrack::getSongHref)
+                .containsExactly("b1", "a1", "b2", "a2");
+    }
+
+    @Test
+    void latecomerJoinsTheCurrentRound() {
+        enqueue("alice", "a1", "a2", "a3");
+        trackQueue.takeTracksToPush();
+        trackQueue.markPlaying("a1");
+        trackQueue.markPlaying("a2");
+        enqueue("bob", "b1");
+
+        assertThat(trackQueue.takeTracksToPush()).extracting(QueuedTrack::getSongHref).containsExactly("b1", "a3");
+    }
+
+    @Test
+    void pushesOnlyAheadAndRefillsWhenPushedTracksPlay() {
+        enqueue("alice", "a1", "a2", "a3");
+
+        assertThat(trackQueue.takeTracksToPush()).extracting(QueuedTrack::getSongHref).containsExactly("a1", "a2");
+        assertThat(trackQueue.takeTracksToPush()).isEmpty();
+
+        trackQueue.markPlaying("a1");
+
+        assertThat(trackQueue.takeTracksToPush()).extracting(QueuedTrack::getSongHref).containsExactly("a3");
+    }
+
+    @Test
+    void givesUpPushedTracksSpotifyPassedOver() {
+        enqueue("alice", "a1", "a2", "a3");
+        trackQueue.takeTracksToPush();
+
+        for (int i = 0; i < TrackQueue.PUSH_AHEAD; i++) {
+            trackQueue.markPlaying("spotify:track:other-" + i);
+            trackQueue.markPlaying("spotify:track:other-" + i);
+        }
+        assertThat(trackQueue.takeTracksToPush()).isEmpty();
+
+        trackQueue.markPlaying("spotify:track:other");
+
+        assertThat(trackQueue.takeTracksToPush()).extracting(QueuedTrack::getSongHref).containsExactly("a3");
+    }
+
+    @Test
+    void givesUpPushedTracksAfterTheirMaxAge() {
+        enqueue("alice", "a1", "a2", "a3");
+        trackQueue.takeTracksToPush();
+
+        now.addAndGet(TrackQueue.PUSHED_TRACK_MAX_AGE_MS + 1);
+
+        assertThat(trackQueue.takeTracksToPush()).extracting(QueuedTrack::getSongHref).containsExactly("a3");
+    }
+
+    @Test
+    void forgetsGuestsWhoseTracksAllPlayed() {
+        for (int i = 0; i < 100; i++) {
+            enqueue("guest-" + i, "t" + i);
+        }
+        enqueue("alice", "a1", "a2", "a3");
+
+        trackQueue.takeTracksToPush();
+        for (int i = 0; i < 100; i++) {
+            trackQueue.markPlaying("t" + i);
+            trackQueue.takeTracksToPush();
+        }
+        trackQueue.markPlaying("a1");
+        trackQueue.takeTracksToPush();
+
+        assertThat(trackQueue.trackedUsers()).isEqualTo(1);
+    }
+
+    @Test
+    void servedTracksDoNotNameTheirGuest() throws Exception {
+        enqueue("alice", "a1");
+        trackQueue.upvote("bob", "a1");
+
+        String json = new ObjectMapper().writeValueAsString(trackQueue.getTracks());
+
+        assertThat(json).contains("a1").doesNotContain("alice").doesNotContain("bob");
+    }
+
+    private void enqueue(String userIdentifier, String... songHrefs) {
+        for (String songHref : songHrefs) {
+            trackQueue.enqueue(userIdentifier, songHref, null, null, null);
+        }
+    }
+}
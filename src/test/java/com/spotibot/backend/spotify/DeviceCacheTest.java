@@ -0,0 +1,118 @@
+package com.spotibot.backend.spotify;
+
+import com.spotibot.backend.PayloadFormat;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import se.michaelthelin.spotify.model_objects.miscellaneous.Device;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DeviceCacheTest {
+    private final SpotifyController spotifyController = mock(SpotifyController.class);
+    private final SpotifyToken spotifyToken = new SpotifyToken();
+    private DeviceCache deviceCache;
+
+    @AfterEach
+    void closeDeviceCache() {
+        if (deviceCache != null) {
+            deviceCache.close();
+        }
+    }
+
+    @Test
+    void servesTheCachedListWithinTheTtl() throws Exception {
+        deviceCache = deviceCache(Duration.ofMinutes(1));
+        when(spotifyController.getDevices(any())).thenReturn(new Device[] { device("speaker", true, 50) });
+
+        DeviceSnapshot first = deviceCache.get(spotifyToken);
+        DeviceSnapshot second = deviceCache.get(spotifyToken);
+
+        assertThat(second).isSameAs(first);
+        verify(spotifyController, times(1)).getDevices(spotifyToken);
+    }
+
+    @Test
+    void refetchesAfterInvalidationAndKeepsTheETagOnVolumeChanges() throws Exception {
+        deviceCache = deviceCache(Duration.ofMinutes(1));
+        when(spotifyController.getDevices(any()))
+                .thenReturn(new Device[] { device("speaker", true, 50) })
+                .thenReturn(new Device[] { device("speaker", true, 80) });
+
+        DeviceSnapshot first = deviceCache.get(spotifyToken);
+        deviceCache.invalidate(spotifyToken);
+        DeviceSnapshot second = deviceCache.get(spotifyToken);
+
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getDevices()[0].getVolume_percent()).isEqualTo(80);
+        assertThat(second.getETag()).isEqualTo(first.getETag());
+        verify(spotifyController, times(2)).getDevices(spotifyToken);
+    }
+
+    @Test
+    void etagsFollowTheDeviceSet() {
+        DeviceSnapshot speaker = DeviceSnapshot.next(null, new Device[] { device("speaker", true, 50) });
+        DeviceSnapshot restarted = DeviceSnapshot.next(null, new Device[] { device("speaker", true, 10) });
+        DeviceSnapshot phone = DeviceSnapshot.next(speaker, new Device[] { device("speaker", false, 50), device("phone", true, 50) });
+
+        assertThat(restarted.getETag()).isEqualTo(speaker.getETag());
+        assertThat(phone.getETag()).isNotEqualTo(speaker.getETag());
+    }
+
+    @Test
+    void etagsDifferPerFormatAndAllIdentifyTheDeviceSet() {
+        DeviceSnapshot speaker = DeviceSnapshot.next(null, new Device[] { device("speaker", true, 50) });
+
+        assertThat(speaker.getETag(PayloadFormat.JSON)).isEqualTo(speaker.getETag());
+        assertThat(speaker.getETag(PayloadFormat.CBOR)).isNotEqualTo(speaker.getETag());
+        assertThat(speaker.matches(speaker.getETag(PayloadFormat.SMILE))).isTrue();
+        assertThat(speaker.matches("\"stale\"")).isFalse();
+        assertThat(speaker.matches(null)).isFalse();
+    }
+
+    @Test
+    void awaitChangeCompletesOnceTheDeviceSetChanges() throws Exception {
+        deviceCache = deviceCache(Duration.ofMillis(20));
+        when(spotifyController.getDevices(any()))
+                .thenReturn(new Device[] { device("speaker", true, 50) })
+                .thenReturn(new Device[] { device("speaker", true, 60) })
+                .thenReturn(new Device[] { device("speaker", false, 60), device("phone", true, 60) });
+
+        DeviceSnapshot current = deviceCache.get(spotifyToken);
+        CompletableFuture<DeviceSnapshot> stale = deviceCache.awaitChange(spotifyToken, "\"stale\"");
+        assertThat(stale).isCompleted();
+        assertThat(stale.get().getETag()).isEqualTo(current.getETag());
+
+        CompletableFuture<DeviceSnapshot> change = deviceCache.awaitChange(spotifyToken, current.getETag());
+        DeviceSnapshot changed = change.get(5, TimeUnit.SECONDS);
+
+        assertThat(changed.getDevices()).hasSize(2);
+        assertThat(changed.getETag()).isNotEqualTo(current.getETag());
+    }
+
+    private DeviceCache deviceCache(Duration ttl) {
+        SpotifyDeviceProperties properties = new SpotifyDeviceProperties();
+        properties.setTtl(ttl);
+        properties.setSchedulerPoolSize(1);
+        return new DeviceCache(spotifyController, new SimpleMeterRegistry(), properties);
+    }
+
+    private static Device device(String id, boolean active, int volumePercent) {
+        return new Device.Builder()
+                .setId(id)
+                .setName(id)
+                .setType("Speaker")
+                .setIs_active(active)
+                .setVolume_percent(volumePercent)
+                .build();
+    }
+}
@@ -0,0 +1,119 @@
+package com.spotibot.backend.spotify;
+
+import com.spotibot.backend.UserSession;
+import com.spotibot.backend.room.PlaybackState;
+import com.spotibot.backend.room.Room;
+import com.spotibot.backend.room.RoomBusyException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PlaybackReconcilerTest {
+    private static final long GRACE_MILLIS = 3000;
+
+    private PlaybackReconciler playbackReconciler;
+
+    @AfterEach
+    void closeReconciler() {
+        if (playbackReconciler != null) {
+            playbackReconciler.close();
+        }
+    }
+
+    @Test
+    void reconcilesOnlyUnconfirmedRoomsPastTheGracePeriod() throws Exception {
+        Set<String> refreshed = ConcurrentHashMap.newKeySet();
+        CountDownLatch done = new CountDownLatch(1);
+        playbackReconciler = reconciler(userSession -> {
+            refreshed.add(userSession.getUserRoom().getRoomIdentifier());
+            done.countDown();
+        }, 10);
+
+        UserSession toggled = session("toggled", true);
+        UserSession idle = session("idle", false);
+        UserSession loggedOut = new UserSession(room("logged-out", true), null, null);
+        long now = toggled.getUserRoom().getPlaybackState().getChangedAt();
+
+        assertThat(playbackReconciler.reconcile(List.of(toggled, idle, loggedOut), now)).isZero();
+        assertThat(playbackReconciler.reconcile(List.of(toggled, idle, loggedOut), now + GRACE_MILLIS)).isEqualTo(1);
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(refreshed).containsExactly("toggled");
+    }
+
+    @Test
+    void aFailingRoomDoesNotStopTheOthers() throws Exception {
+        CountDownLatch done = new CountDownLatch(2);
+        playbackReconciler = reconciler(userSession -> {
+            done.countDown();
+            if (userSession.getUserRoom().getRoomIdentifier().equals("busy")) {
+                throw new RoomBusyException("busy");
+            }
+        }, 10);
+
+        UserSession busy = session("busy", true);
+        UserSession other = session("other", true);
+        long due = System.currentTimeMillis() + GRACE_MILLIS;
+
+        assertThat(playbackReconciler.reconcile(List.of(busy, other), due)).isEqualTo(2);
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void submitsAtMostOneBatchAndNeverTheSameRoomTwice() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        playbackReconciler = reconciler(userSession -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 2);
+
+        List<UserSession> sessions = List.of(session("a", true), session("b", true), session("c", true));
+        long due = System.currentTimeMillis() + GRACE_MILLIS;
+
+        assertThat(playbackReconciler.reconcile(sessions, due)).isEqualTo(2);
+        assertThat(playbackReconciler.reconcile(sessions.subList(0, 2), due)).isZero();
+        release.countDown();
+    }
+
+    @Test
+    void aRevertedToggleIsConfirmed() {
+        Room room = room("reverted", false);
+        PlaybackState toggled = room.togglePlayback();
+
+        assertThat(room.revertPlayback(toggled)).isTrue();
+        assertThat(room.getPlaybackState().isConfirmed()).isTrue();
+        assertThat(room.getPlaybackState().isPlaying()).isFalse();
+        assertThat(room.getPlaybackState().getVersion()).isGreaterThan(toggled.getVersion());
+    }
+
+    private static PlaybackReconciler reconciler(PlaybackReconciler.PlaybackRefresh playbackRefresh, int batchSize) {
+        SpotifyPlaybackProperties properties = new SpotifyPlaybackProperties();
+        properties.setConfirmGrace(Duration.ofMillis(GRACE_MILLIS));
+        properties.setReconcilePoolSize(2);
+        properties.setReconcileBatchSize(batchSize);
+        return new PlaybackReconciler(playbackRefresh, properties);
+    }
+
+    private static UserSession session(String roomIdentifier, boolean toggled) {
+        return new UserSession(room(roomIdentifier, toggled), new SpotifyToken(), null);
+    }
+
+    private static Room room(String roomIdentifier, boolean toggled) {
+        Room room = new Room(roomIdentifier, true, true, 2);
+        if (toggled) {
+            room.togglePlayback();
+        }
+        return room;
+    }
+}
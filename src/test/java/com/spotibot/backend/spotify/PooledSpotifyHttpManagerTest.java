@@ -0,0 +1,30 @@
+package com.spotibot.backend.spotify;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.ZonedDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PooledSpotifyHttpManagerTest {
+    private static final long NOW = ZonedDateTime.parse("2024-05-01T12:00:00Z").toInstant().toEpochMilli();
+
+    @Test
+    void parsesRetryAfterInSeconds() {
+        assertThat(PooledSpotifyHttpManager.parseRetryAfter("30", NOW)).isEqualTo(30);
+        assertThat(PooledSpotifyHttpManager.parseRetryAfter(" 0 ", NOW)).isZero();
+    }
+
+    @Test
+    void parsesRetryAfterAsHttpDate() {
+        assertThat(PooledSpotifyHttpManager.parseRetryAfter("Wed, 01 May 2024 12:01:30 GMT", NOW)).isEqualTo(90);
+        assertThat(PooledSpotifyHttpManager.parseRetryAfter("Wed, 01 May 2024 11:59:00 GMT", NOW)).isZero();
+    }
+
+    @Test
+    void fallsBackToTheDefaultForInvalidValues() {
+        assertThat(PooledSpotifyHttpManager.parseRetryAfter("soon", NOW)).isEqualTo(PooledSpotifyHttpManager.DEFAULT_RETRY_AFTER_SECONDS);
+        assertThat(PooledSpotifyHttpManager.parseRetryAfter("-5", NOW)).isEqualTo(PooledSpotifyHttpManager.DEFAULT_RETRY_AFTER_SECONDS);
+        assertThat(PooledSpotifyHttpManager.parseRetryAfter("", NOW)).isEqualTo(PooledSpotifyHttpManager.DEFAULT_RETRY_AFTER_SECONDS);
+    }
+}
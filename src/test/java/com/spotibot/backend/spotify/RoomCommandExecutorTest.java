@@ -0,0 +1,106 @@
+package com.spotibot.backend.spotify;
+
+import com.spotibot.backend.UserSession;
+import com.spotibot.backend.room.PlaybackState;
+import com.spotibot.backend.room.Room;
+import com.spotibot.backend.room.RoomEngine;
+import com.spotibot.backend.room.RoomEngineProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import se.michaelthelin.spotify.exceptions.detailed.ForbiddenException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class RoomCommandExecutorTest {
+    private static final String SONG = "spotify:track:song";
+
+    private final SpotifyController spotifyController = mock(SpotifyController.class);
+    private final SpotifyToken spotifyToken = new SpotifyToken();
+    private final Room room = new Room("ROOM1", true, true, 2);
+    private final UserSession userSession = new UserSession(room, spotifyToken, null);
+    private final RoomEngine roomEngine = new RoomEngine(new RoomEngineProperties(), new SimpleMeterRegistry());
+    private final RoomCommandExecutor roomCommandExecutor = roomCommandExecutor();
+
+    @AfterEach
+    void closeExecutor() {
+        roomCommandExecutor.close();
+        roomEngine.close();
+    }
+
+    @Test
+    void pendingSkipsOfTheSameSongCollapseIntoOne() throws Exception {
+        CompletableFuture<Void> first = roomCommandExecutor.skip(userSession, SONG);
+        CompletableFuture<Void> second = roomCommandExecutor.skip(userSession, SONG);
+
+        await(first);
+        await(second);
+        verify(spotifyController, times(1)).skipCurrentlyPlayingSong(spotifyToken);
+    }
+
+    @Test
+    void executedSkipsOnlyDropRepeatsUntilPlaybackWasFetchedAgain() throws Exception {
+        await(roomCommandExecutor.skip(userSession, SONG));
+        long executedAt = System.currentTimeMillis();
+
+        await(roomCommandExecutor.skip(userSession, SONG));
+        verify(spotifyController, times(1)).skipCurrentlyPlayingSong(spotifyToken);
+
+        // A fetch sent before the skip executed does not show where playback moved on to
+        roomCommandExecutor.playbackFetched(room, executedAt - 60_000);
+        await(roomCommandExecutor.skip(userSession, SONG));
+        verify(spotifyController, times(1)).skipCurrentlyPlayingSong(spotifyToken);
+
+        // The song came back, e.g. on repeat, and is skipped again
+        roomCommandExecutor.playbackFetched(room, executedAt + 1);
+        await(roomCommandExecutor.skip(userSession, SONG));
+        verify(spotifyController, times(2)).skipCurrentlyPlayingSong(spotifyToken);
+    }
+
+    @Test
+    void togglesBackToTheInitialStateAreNeverSent() throws Exception {
+        CompletableFuture<Void> pause = roomCommandExecutor.toggle(userSession, room.togglePlayback());
+        CompletableFuture<Void> resume = roomCommandExecutor.toggle(userSession, room.togglePlayback());
+
+        await(pause);
+        await(resume);
+        verify(spotifyController, never()).pauseCurrentlyPlayingSong(any());
+        verify(spotifyController, never()).resumeCurrentlyPausedSong(any());
+    }
+
+    @Test
+    void refusedTogglesFailAndAreReverted() throws Exception {
+        doThrow(new ForbiddenException("Player command failed")).when(spotifyController).resumeCurrentlyPausedSong(any());
+        PlaybackState toggled = room.togglePlayback();
+
+        CompletableFuture<Void> toggle = roomCommandExecutor.toggle(userSession, toggled);
+
+        assertThatThrownBy(() -> toggle.get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(ForbiddenException.class);
+        assertThat(room.getPlaybackState().isPlaying()).isFalse();
+        assertThat(room.getPlaybackState().isConfirmed()).isTrue();
+    }
+
+    private RoomCommandExecutor roomCommandExecutor() {
+        SpotifyPlaybackProperties properties = new SpotifyPlaybackProperties();
+        properties.setCommandWindow(Duration.ofMillis(20));
+        properties.setCommandPoolSize(1);
+        return new RoomCommandExecutor(spotifyController, mock(DeviceCache.class), roomEngine, new SimpleMeterRegistry(), properties);
+    }
+
+    private static void await(CompletableFuture<Void> command) throws Exception {
+        command.get(5, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,151 @@
+package com.spotibot.backend.spotify;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spotibot.backend.ConcurrentStress;
+import com.spotibot.backend.DataManagement;
+import com.spotibot.backend.PayloadWriters;
+import com.spotibot.backend.RoomSnapshot;
+import com.spotibot.backend.Vote;
+import com.spotibot.backend.room.Room;
+import com.spotibot.backend.room.RoomEngine;
+import com.spotibot.backend.room.RoomEngineProperties;
+import com.spotibot.backend.web.InboundRateLimiter;
+import com.spotibot.backend.web.RateLimitProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpSession;
+import se.michaelthelin.spotify.exceptions.detailed.TooManyRequestsException;
+import se.michaelthelin.spotify.model_objects.miscellaneous.Device;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class RoomSnapshotTest {
+    private static final String ROOM_IDENTIFIER = "ROOM1";
+
+    private final SpotifyController spotifyController = mock(SpotifyController.class);
+    private final DeviceCache deviceCache = mock(DeviceCache.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SpotifyApiController spotifyApiController = new SpotifyApiController(
+            spotifyController,
+            mock(SearchService.class),
+            new TrackMetadataStore(100),
+            deviceCache,
+            mock(RoomCommandExecutor.class),
+            new SpotifyDeviceProperties(),
+            new SpotifyPlaybackProperties(),
+            meterRegistry,
+            ObservationRegistry.create(),
+            new InboundRateLimiter(new RateLimitProperties(), meterRegistry),
+            new RoomEngine(new RoomEngineProperties(), meterRegistry),
+            new PayloadWriters(new ObjectMapper())
+    );
+
+    private Room room;
+
+    @BeforeEach
+    void createRoom() {
+        DataManagement.clear();
+        room = DataManagement.createUserSession("host", () -> ROOM_IDENTIFIER, roomIdentifier -> new Room(roomIdentifier, true, true, 3)).getUserRoom();
+    }
+
+    @Test
+    void ownerGetsRoomAndOwnershipWithoutAskingSpotify() {
+        ResponseEntity<RoomSnapshot> response = spotifyApiController.roomSnapshot(request(session("host")), ROOM_IDENTIFIER, true);
+
+        RoomSnapshot roomSnapshot = response.getBody();
+        assertThat(roomSnapshot.getRoom()).isSameAs(room);
+        assertThat(roomSnapshot.isOwner()).isTrue();
+        assertThat(roomSnapshot.getOwnRoomIdentifier()).isEqualTo(ROOM_IDENTIFIER);
+        assertThat(roomSnapshot.isAuthenticated()).isFalse();
+        assertThat(roomSnapshot.getSongContext()).isNull();
+        assertThat(roomSnapshot.getDevices()).isNull();
+        verifyNoInteractions(spotifyController, deviceCache);
+    }
+
+    @Test
+    void newGuestIsBoundToTheSessionAndSeesTheVoteState() {
+        MockHttpSession session = new MockHttpSession();
+        RoomSnapshot first = spotifyApiController.roomSnapshot(request(session), ROOM_IDENTIFIER, false).getBody();
+        String userIdentifier = (String) session.getAttribute("userIdentifier");
+
+        room.castVote(new Vote(userIdentifier, null));
+        RoomSnapshot second = spotifyApiController.roomSnapshot(request(session), ROOM_IDENTIFIER, false).getBody();
+
+        assertThat(userIdentifier).isNotNull();
+        assertThat(first.isOwner()).isFalse();
+        assertThat(first.getOwnRoomIdentifier()).isNull();
+        assertThat(first.isVoted()).isFalse();
+        assertThat(second.isVoted()).isTrue();
+        assertThat(second.getCurrentVotes()).isEqualTo(1);
+        assertThat(second.getNeededVotesToSkip()).isEqualTo(3);
+    }
+
+    @Test
+    void aFailingSongContextDoesNotDropTheDevices() throws Exception {
+        DataManagement.getUserSession("host").setUserSpotifyToken(new SpotifyToken());
+        Device[] devices = { new Device.Builder().setId("speaker").build() };
+        when(spotifyController.currentlyPlayingContext(any())).thenThrow(new TooManyRequestsException("Rate limit exceeded", 5));
+        when(deviceCache.get(any())).thenReturn(DeviceSnapshot.next(null, devices));
+
+        RoomSnapshot roomSnapshot = spotifyApiController.roomSnapshot(request(session("host")), ROOM_IDENTIFIER, true).getBody();
+
+        assertThat(roomSnapshot.isAuthenticated()).isTrue();
+        assertThat(roomSnapshot.getSongContext()).isNull();
+        assertThat(roomSnapshot.getDevices()).isEqualTo(devices);
+    }
+
+    @Test
+    void stalePollsShareOneSpotifyFetch() throws Exception {
+        DataManagement.getUserSession("host").setUserSpotifyToken(new SpotifyToken());
+        int guests = ConcurrentStress.THREADS;
+        when(spotifyController.currentlyPlayingContext(any())).thenAnswer(invocation -> {
+            awaitSharedRefreshes(guests - 1);
+            return null;
+        });
+
+        List<Integer> statuses = ConcurrentStress.run(guests, i -> () -> spotifyApiController.currentSong(request(session("guest-" + i)), ROOM_IDENTIFIER).getStatusCode().value());
+
+        assertThat(statuses).containsOnly(426);
+        verify(spotifyController, times(1)).currentlyPlayingContext(any());
+    }
+
+    @Test
+    void unknownRoomIsNotFound() {
+        assertThat(spotifyApiController.roomSnapshot(request(session("guest")), "NOPE1", false).getStatusCode().value()).isEqualTo(404);
+    }
+
+    /**
+     Holds the fetch until the given number of requests joined it, or five seconds passed.
+     */
+    private void awaitSharedRefreshes(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (meterRegistry.counter("spotibot.cache.requests", "cache", "song-context", "result", "shared").count() < count
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    private static MockHttpServletRequest request(MockHttpSession session) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setSession(session);
+        return request;
+    }
+
+    private static MockHttpSession session(String userIdentifier) {
+        MockHttpSession session = new MockHttpSession();
+        session.setAttribute("userIdentifier", userIdentifier);
+        return session;
+    }
+}
@@ -0,0 +1,115 @@
+package com.spotibot.backend.spotify;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import se.michaelthelin.spotify.model_objects.specification.AlbumSimplified;
+import se.michaelthelin.spotify.model_objects.specification.ArtistSimplified;
+import se.michaelthelin.spotify.model_objects.specification.Image;
+import se.michaelthelin.spotify.model_objects.specification.Track;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SearchServiceTest {
+    private static final String GUEST = "guest";
+
+    private final SpotifyController spotifyController = mock(SpotifyController.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SpotifyToken spotifyToken = new SpotifyToken();
+    private final TrackMetadataStore trackMetadataStore = new TrackMetadataStore(100);
+    private SearchService searchService;
+
+    @AfterEach
+    void closeSearchService() {
+        if (searchService != null) {
+            searchService.close();
+        }
+    }
+
+    @Test
+    void supersededQueriesNeverReachSpotify() throws Exception {
+        searchService = searchService(Duration.ofMillis(100));
+        when(spotifyController.checkSpotifyAuthenticationStatus(any())).thenReturn(true);
+        when(spotifyController.searchSong(any(), anyString())).thenReturn(new Track[] { track(1) });
+        searchService.openStream(GUEST);
+
+        searchService.submit(GUEST, spotifyToken, "stub");
+        searchService.submit(GUEST, spotifyToken, "stub song");
+
+        verify(spotifyController, timeout(2000)).searchSong(spotifyToken, "stub song");
+        verify(spotifyController, never()).searchSong(spotifyToken, "stub");
+        verify(spotifyController, times(1)).checkSpotifyAuthenticationStatus(spotifyToken);
+    }
+
+    @Test
+    void finishedSearchesAreNoLongerInFlight() throws Exception {
+        searchService = searchService(Duration.ofMillis(10));
+        when(spotifyController.checkSpotifyAuthenticationStatus(any())).thenReturn(true);
+        when(spotifyController.searchSong(any(), anyString())).thenReturn(new Track[] { track(1) });
+        searchService.openStream(GUEST);
+
+        searchService.submit(GUEST, spotifyToken, "stub");
+        verify(spotifyController, timeout(2000)).searchSong(eq(spotifyToken), eq("stub"));
+        awaitNoSearchInFlight();
+        searchService.submit(GUEST, spotifyToken, "stub song");
+
+        assertThat(meterRegistry.counter("spotibot.search.superseded", "stage", "in-flight").count()).isZero();
+    }
+
+    @Test
+    void locallyKnownTracksNeverReplaceTheSpotifySearch() throws Exception {
+        searchService = searchService(Duration.ofMillis(10));
+        for (int i = 0; i < SearchService.SEARCH_RESULT_COUNT + 1; i++) {
+            trackMetadataStore.put(TrackMetadata.of(track(i)));
+        }
+        when(spotifyController.checkSpotifyAuthenticationStatus(any())).thenReturn(true);
+        when(spotifyController.searchSong(any(), anyString())).thenReturn(new Track[] { track(42) });
+
+        assertThat(searchService.search(spotifyToken, "stub song")).singleElement()
+                .satisfies(result -> assertThat(result.getSongHref()).isEqualTo("spotify:track:stub42"));
+
+        searchService.openStream(GUEST);
+        searchService.submit(GUEST, spotifyToken, "stub artist");
+
+        assertThat(meterRegistry.find("spotibot.search.partial").counter()).isNotNull()
+                .satisfies(counter -> assertThat(counter.count()).isEqualTo(1));
+        verify(spotifyController, timeout(2000)).searchSong(spotifyToken, "stub artist");
+    }
+
+    private SearchService searchService(Duration debounce) {
+        SpotifySearchProperties properties = new SpotifySearchProperties();
+        properties.setDebounce(debounce);
+        properties.setSchedulerPoolSize(1);
+        return new SearchService(spotifyController, trackMetadataStore, meterRegistry, properties);
+    }
+
+    private void awaitNoSearchInFlight() throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(2).toNanos();
+
+        while (searchService.isSearchInFlight(GUEST)) {
+            assertThat(System.nanoTime()).as("search still in flight").isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    static Track track(int number) {
+        return new Track.Builder()
+                .setUri("spotify:track:stub" + number)
+                .setName("Stub Song " + number)
+                .setDurationMs(200_000)
+                .setArtists(new ArtistSimplified.Builder().setName("Stub Artist").build())
+                .setAlbum(new AlbumSimplified.Builder().setImages(new Image.Builder().setUrl("https://i.scdn.co/image/" + number).build()).build())
+                .build();
+    }
+}
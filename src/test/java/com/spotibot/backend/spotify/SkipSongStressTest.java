@@ -0,0 +1,171 @@
+package com.spotibot.backend.spotify;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spotibot.backend.ConcurrentStress;
+import com.spotibot.backend.DataManagement;
+import com.spotibot.backend.JsonPayloads;
+import com.spotibot.backend.PayloadWriters;
+import com.spotibot.backend.UserSession;
+import com.spotibot.backend.room.Room;
+import com.spotibot.backend.room.RoomEngine;
+import com.spotibot.backend.room.RoomEngineProperties;
+import com.spotibot.backend.web.InboundRateLimiter;
+import com.spotibot.backend.web.RateLimitProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpSession;
+import se.michaelthelin.spotify.model_objects.credentials.AuthorizationCodeCredentials;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ Casts the skip votes of many guests at once and checks that every guest is counted once and every crossing of
+ the room's votesToSkip leads to exactly one skip, and that votes only count for the current song and survive
+ a refused skip.
+ */
+class SkipSongStressTest {
+    private static final String ROOM_IDENTIFIER = "ROOM1";
+
+    private final RoomCommandExecutor roomCommandExecutor = mock(RoomCommandExecutor.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RoomEngine roomEngine = new RoomEngine(new RoomEngineProperties(), meterRegistry);
+    private final SpotifyApiController spotifyApiController = new SpotifyApiController(
+            mock(SpotifyController.class),
+            mock(SearchService.class),
+            new TrackMetadataStore(100),
+            mock(DeviceCache.class),
+            roomCommandExecutor,
+            new SpotifyDeviceProperties(),
+            new SpotifyPlaybackProperties(),
+            meterRegistry,
+            ObservationRegistry.create(),
+            new InboundRateLimiter(new RateLimitProperties(), meterRegistry),
+            roomEngine,
+            new PayloadWriters(new ObjectMapper())
+    );
+
+    @BeforeEach
+    void clearRooms() {
+        DataManagement.clear();
+        when(roomCommandExecutor.skip(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+    }
+
+    @RepeatedTest(5)
+    void concurrentVotesSkipExactlyOncePerThresholdCrossing() throws Exception {
+        int votesToSkip = 5;
+        int guests = 1_000;
+        Room room = createRoom(votesToSkip);
+
+        List<ResponseEntity<byte[]>> responses = ConcurrentStress.run(guests, i -> () -> skipSong("guest-" + i));
+
+        assertThat(responses).allMatch(response -> response.getStatusCode().value() == 200);
+        assertThat(count(responses, JsonPayloads.MESSAGE_SKIPPED)).isEqualTo(guests / votesToSkip);
+        assertThat(count(responses, JsonPayloads.MESSAGE_VOTED)).isEqualTo(guests - guests / votesToSkip);
+        verify(roomCommandExecutor, times(guests / votesToSkip)).skip(any(), any());
+        assertThat(room.getVoteList()).isEmpty();
+        assertThat(meterRegistry.counter("spotibot.skips", "trigger", "votes").count()).isEqualTo(guests / votesToSkip);
+    }
+
+    @RepeatedTest(5)
+    void concurrentVotesOfOneGuestCountOnce() throws Exception {
+        Room room = createRoom(10);
+
+        List<ResponseEntity<byte[]>> responses = ConcurrentStress.run(200, i -> () -> skipSong("guest"));
+
+        assertThat(count(responses, JsonPayloads.MESSAGE_VOTED)).isEqualTo(1);
+        assertThat(responses).filteredOn(response -> response.getStatusCode().value() == 406).hasSize(199);
+        assertThat(room.getVoteList()).singleElement().extracting(vote -> vote.getUserIdentifier()).isEqualTo("guest");
+        verify(roomCommandExecutor, never()).skip(any(), any());
+    }
+
+    @RepeatedTest(5)
+    void hostSkipsWhileGuestsVote() throws Exception {
+        int guests = 500;
+        createRoom(guests + 1);
+
+        List<ResponseEntity<byte[]>> responses = ConcurrentStress.run(guests + 1, i -> () -> skipSong(i == guests ? "host" : "guest-" + i));
+
+        assertThat(responses).allMatch(response -> response.getStatusCode().value() == 200);
+        assertThat(count(responses, JsonPayloads.MESSAGE_SKIPPED)).isEqualTo(1);
+        verify(roomCommandExecutor, times(1)).skip(any(), any());
+    }
+
+    @Test
+    void votesForAnotherSongAreRejected() {
+        Room room = createRoom(2);
+        room.setCurrentSong("spotify:track:current");
+
+        assertThat(skipSong("guest", "spotify:track:previous").getStatusCode().value()).isEqualTo(409);
+        assertThat(skipSong("guest", "spotify:track:current").getBody()).isEqualTo(JsonPayloads.MESSAGE_VOTED);
+        assertThat(room.getVoteList()).singleElement().extracting(vote -> vote.getSongId()).isEqualTo("spotify:track:current");
+    }
+
+    @Test
+    void refusedVoteSkipsKeepTheVotes() {
+        Room room = createRoom(2);
+        when(roomCommandExecutor.skip(any(), any()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("Player command failed")))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        assertThat(skipSong("guest-1").getBody()).isEqualTo(JsonPayloads.MESSAGE_VOTED);
+        assertThat(skipSong("guest-2").getStatusCode().value()).isEqualTo(500);
+        awaitFollowUps();
+        assertThat(room.getVoteList()).extracting(vote -> vote.getUserIdentifier()).containsExactlyInAnyOrder("guest-1", "guest-2");
+
+        assertThat(skipSong("guest-3").getBody()).isEqualTo(JsonPayloads.MESSAGE_SKIPPED);
+        awaitFollowUps();
+        assertThat(room.getVoteList()).isEmpty();
+        assertThat(room.getSkippingVotes()).isEmpty();
+    }
+
+    private Room createRoom(int votesToSkip) {
+        UserSession userSession = DataManagement.createUserSession("host", () -> ROOM_IDENTIFIER, roomIdentifier -> new Room(roomIdentifier, true, true, votesToSkip));
+
+        SpotifyToken spotifyToken = new SpotifyToken();
+        spotifyToken.setAuthorizationCodeCredentials(new AuthorizationCodeCredentials.Builder().setAccessToken("token").setExpiresIn(3600).build());
+        spotifyToken.setExpiresIn(System.currentTimeMillis() / 1000 + 3600);
+        userSession.setUserSpotifyToken(spotifyToken);
+
+        return userSession.getUserRoom();
+    }
+
+    private ResponseEntity<byte[]> skipSong(String userIdentifier) {
+        return skipSong(userIdentifier, null);
+    }
+
+    private ResponseEntity<byte[]> skipSong(String userIdentifier, String songId) {
+        MockHttpSession session = new MockHttpSession();
+        session.setAttribute("userIdentifier", userIdentifier);
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setSession(session);
+
+        return spotifyApiController.skipSong(request, ROOM_IDENTIFIER, songId);
+    }
+
+    /**
+     Waits for the room mutations posted after the Spotify calls, which run before anything posted later.
+     */
+    private void awaitFollowUps() {
+        roomEngine.run(ROOM_IDENTIFIER, () -> {});
+    }
+
+    private static long count(List<ResponseEntity<byte[]>> responses, byte[] message) {
+        return responses.stream().filter(response -> Arrays.equals(response.getBody(), message)).count();
+    }
+}
@@ -0,0 +1,60 @@
+package com.spotibot.backend.spotify;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SpotifyAppPoolTest {
+
+    @Test
+    void pinsNewRoomsToTheLeastLoadedApp() {
+        SpotifyAppPool spotifyAppPool = pool("app-1", "app-2", "app-3");
+        for (int i = 0; i < 10_000; i++) {
+            spotifyAppPool.recordRequest(spotifyAppPool.get("app-1"));
+        }
+
+        Map<String, Long> pins = IntStream.range(0, 30)
+                .mapToObj(i -> spotifyAppPool.pin().getId())
+                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+
+        assertThat(pins).doesNotContainKey("app-1").containsEntry("app-2", 15L).containsEntry("app-3", 15L);
+    }
+
+    @Test
+    void avoidsThrottledAppsAndFallsBackForUnknownIds() {
+        SpotifyAppPool spotifyAppPool = pool("app-1", "app-2");
+        spotifyAppPool.recordThrottled(spotifyAppPool.get("app-2"), 60);
+        for (int i = 0; i < 100; i++) {
+            spotifyAppPool.recordRequest(spotifyAppPool.get("app-1"));
+        }
+
+        assertThat(spotifyAppPool.pin().getId()).isEqualTo("app-1");
+        assertThat(spotifyAppPool.get("removed").getId()).isEqualTo("app-1");
+        assertThat(spotifyAppPool.get(null).getId()).isEqualTo("app-1");
+    }
+
+    @Test
+    void usesTheBuiltInAppWithoutPool() {
+        SpotifyAppPool spotifyAppPool = pool();
+
+        assertThat(spotifyAppPool.size()).isEqualTo(1);
+        assertThat(spotifyAppPool.pin().getId()).isEqualTo(SpotifyAppPool.DEFAULT_APP_ID);
+    }
+
+    private static SpotifyAppPool pool(String... appIds) {
+        SpotifyAppProperties properties = new SpotifyAppProperties();
+        for (String appId : appIds) {
+            SpotifyAppProperties.App app = new SpotifyAppProperties.App();
+            app.setClientId(appId + "-client");
+            app.setClientSecret(appId + "-secret");
+            properties.getPool().put(appId, app);
+        }
+        return new SpotifyAppPool(properties, new SimpleMeterRegistry());
+    }
+}
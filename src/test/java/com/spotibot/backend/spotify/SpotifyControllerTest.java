@@ -0,0 +1,45 @@
+package com.spotibot.backend.spotify;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.Test;
+import se.michaelthelin.spotify.IHttpManager;
+import se.michaelthelin.spotify.model_objects.credentials.AuthorizationCodeCredentials;
+
+import java.net.URI;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SpotifyControllerTest {
+
+    @Test
+    void refreshedTokensExpireRelativeToTheRefresh() throws Exception {
+        IHttpManager httpManager = mock(IHttpManager.class);
+        when(httpManager.post(any(), any(), any())).thenReturn("{\"access_token\":\"refreshed\",\"token_type\":\"Bearer\",\"expires_in\":3600}");
+        SpotifyController spotifyController = new SpotifyController(httpManager, URI.create("http://localhost"),
+                new SpotifyAppPool(new SpotifyAppProperties(), new SimpleMeterRegistry()), new SimpleMeterRegistry(), ObservationRegistry.create());
+
+        SpotifyToken spotifyToken = new SpotifyToken();
+        spotifyToken.setAuthorizationCodeCredentials(new AuthorizationCodeCredentials.Builder()
+                .setAccessToken("expired")
+                .setRefreshToken("refresh")
+                .setTokenType("Bearer")
+                .setExpiresIn(3600)
+                .build());
+        spotifyToken.setExpiresIn(System.currentTimeMillis() / 1000 - 1);
+        long now = System.currentTimeMillis() / 1000;
+
+        assertThat(spotifyController.checkSpotifyAuthenticationStatus(spotifyToken)).isTrue();
+        assertThat(spotifyToken.getAccessToken()).isEqualTo("refreshed");
+        assertThat(spotifyToken.getRefreshToken()).isEqualTo("refresh");
+        assertThat(spotifyToken.getExpiresIn()).isBetween(now + 3600, now + 3601);
+        // A second check within the token's lifetime must not refresh again
+        assertThat(spotifyController.checkSpotifyAuthenticationStatus(spotifyToken)).isTrue();
+        verify(httpManager, times(1)).post(any(), any(), any());
+    }
+}
@@ -0,0 +1,148 @@
+package com.spotibot.backend.startup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ Starts the packaged app several times per startup mode and measures the time until /actuator/health/readiness
+ reports UP, which includes the warm-up, and the latency of the first request after that. Runs in the
+ fast-startup profile after packaging and writes target/load-reports/startup-latest.json. The times depend on
+ the machine, so the report is compared across runs instead of asserted on.
+ */
+class StartupBenchmarkIT {
+    private static final int RUNS = Integer.getInteger("startup.runs", 5);
+    private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(2);
+    private static final Path REPORT_DIRECTORY = Path.of("target", "load-reports");
+
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+
+    @Test
+    void measuresTheStartupOfEveryMode() throws Exception {
+        String jar = System.getProperty("startup.jar");
+        String cdsArchive = System.getProperty("startup.cds-archive");
+        Path nativeImage = Path.of(System.getProperty("startup.native-image", "target/backend"));
+
+        Map<String, List<String>> modes = new LinkedHashMap<>();
+        modes.put("jit", List.of("java", "-jar", jar));
+        modes.put("aot", List.of("java", "-Dspring.aot.enabled=true", "-jar", jar));
+        modes.put("aot-cds", List.of("java", "-XX:SharedArchiveFile=" + cdsArchive, "-Dspring.aot.enabled=true", "-jar", jar));
+        if (Files.isExecutable(nativeImage)) {
+            modes.put("native", List.of(nativeImage.toString()));
+        }
+
+        Map<String, Object> results = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> mode : modes.entrySet()) {
+            results.put(mode.getKey(), benchmark(mode.getValue()));
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("run", "startup");
+        report.put("startedAt", Instant.now().toString());
+        report.put("javaVersion", Runtime.version().toString());
+        report.put("runsPerMode", RUNS);
+        report.put("modes", results);
+        writeReport(report);
+
+        assertThat(results).containsKeys("jit", "aot", "aot-cds");
+        assertThat(REPORT_DIRECTORY.resolve("startup-latest.json")).exists();
+    }
+
+    private Map<String, Double> benchmark(List<String> command) throws Exception {
+        double[] readyMillis = new double[RUNS];
+        double[] firstRequestMillis = new double[RUNS];
+
+        for (int run = 0; run < RUNS; run++) {
+            int port = freePort();
+            List<String> arguments = new ArrayList<>(command);
+            arguments.add("--server.port=" + port);
+            arguments.add("--spotibot.warmup.enabled=true");
+
+            long start = System.nanoTime();
+            Process process = new ProcessBuilder(arguments).redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+
+            try {
+                awaitReady(process, URI.create("http://localhost:" + port + "/actuator/health/readiness"));
+                readyMillis[run] = (System.nanoTime() - start) / 1e6;
+
+                long requestStart = System.nanoTime();
+                httpClient.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/room/check-if-user-has-room")).build(),
+                        HttpResponse.BodyHandlers.discarding());
+                firstRequestMillis[run] = (System.nanoTime() - requestStart) / 1e6;
+            } finally {
+                process.destroy();
+                if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            }
+        }
+
+        Map<String, Double> result = new LinkedHashMap<>();
+        result.put("medianReadyMillis", median(readyMillis));
+        result.put("minReadyMillis", Arrays.stream(readyMillis).min().orElse(0));
+        result.put("medianFirstRequestMillis", median(firstRequestMillis));
+        return result;
+    }
+
+    private void awaitReady(Process process, URI readiness) throws Exception {
+        long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("App exited with " + process.exitValue() + " before it was ready");
+            }
+
+            try {
+                HttpResponse<String> response = httpClient.send(HttpRequest.newBuilder(readiness).build(), HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() == 200) {
+                    return;
+                }
+            } catch (ConnectException e) {
+                // Server not listening yet
+            }
+
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+
+        throw new IllegalStateException("App not ready after " + STARTUP_TIMEOUT);
+    }
+
+    private static void writeReport(Map<String, Object> report) throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+        Files.createDirectories(REPORT_DIRECTORY);
+        objectMapper.writeValue(REPORT_DIRECTORY.resolve("startup-latest.json").toFile(), report);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            return serverSocket.getLocalPort();
+        }
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
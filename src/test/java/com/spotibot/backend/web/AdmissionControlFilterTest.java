@@ -0,0 +1,119 @@
+package com.spotibot.backend.web;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdmissionControlFilterTest {
+    private static final FilterChain NO_OP = (request, response) -> {};
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AdmissionControlFilter admissionControlFilter = new AdmissionControlFilter(properties(), meterRegistry);
+
+    @Test
+    void shedsSpotifyRequestsOverTheLimit() throws Exception {
+        MockHttpServletResponse nested = new MockHttpServletResponse();
+
+        MockHttpServletResponse admitted = whileTheLimitIsUsed(() -> filter("/spotify/current-song", nested, NO_OP));
+
+        assertThat(admitted.getStatus()).isEqualTo(200);
+        assertThat(nested.getStatus()).isEqualTo(503);
+        assertThat(nested.getHeader("Retry-After")).isEqualTo("1");
+        assertThat(meterRegistry.counter("spotibot.admission.rejected", "pool", "upstream").count()).isEqualTo(1);
+    }
+
+    @Test
+    void localAndOtherPathsDoNotUseTheSpotifyLimit() throws Exception {
+        MockHttpServletResponse local = new MockHttpServletResponse();
+        MockHttpServletResponse actuator = new MockHttpServletResponse();
+
+        whileTheLimitIsUsed(() -> {
+            filter("/room/get_room", local, NO_OP);
+            filter("/actuator/health", actuator, NO_OP);
+        });
+
+        assertThat(local.getStatus()).isEqualTo(200);
+        assertThat(actuator.getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void failedResponsesShrinkTheLimit() throws Exception {
+        filter("/spotify/current-song", (request, response) -> ((HttpServletResponse) response).setStatus(502));
+
+        assertThat(limit()).isEqualTo(1);
+    }
+
+    @Test
+    void asyncRequestsReleaseTheirSlotAndReportTheirFinalStatus() throws Exception {
+        MockHttpServletRequest request = request("/spotify/devices");
+        request.setAsyncSupported(true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        admissionControlFilter.doFilter(request, response, (req, res) -> req.startAsync());
+
+        assertThat(inFlight()).isZero();
+        assertThat(limit()).isEqualTo(2);
+
+        response.setStatus(502);
+        request.getAsyncContext().complete();
+        assertThat(limit()).isEqualTo(1);
+    }
+
+    /**
+     Runs the given requests while two Spotify requests hold both slots of the limit.
+     */
+    private MockHttpServletResponse whileTheLimitIsUsed(Requests requests) throws Exception {
+        return filter("/spotify/current-song", (request, response) -> filter("/spotify/queue-track", (innerRequest, innerResponse) -> {
+            try {
+                requests.run();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }));
+    }
+
+    private MockHttpServletResponse filter(String path, FilterChain filterChain) throws IOException, ServletException {
+        return filter(path, new MockHttpServletResponse(), filterChain);
+    }
+
+    private MockHttpServletResponse filter(String path, MockHttpServletResponse response, FilterChain filterChain) throws IOException, ServletException {
+        admissionControlFilter.doFilter(request(path), response, filterChain);
+        return response;
+    }
+
+    private double limit() {
+        return meterRegistry.get("spotibot.admission.limit").gauge().value();
+    }
+
+    private double inFlight() {
+        return meterRegistry.get("spotibot.admission.in-flight").tag("pool", "upstream").gauge().value();
+    }
+
+    private static MockHttpServletRequest request(String path) {
+        return new MockHttpServletRequest("GET", path);
+    }
+
+    @FunctionalInterface
+    private interface Requests {
+        void run() throws Exception;
+    }
+
+    private static AdmissionProperties properties() {
+        AdmissionProperties properties = new AdmissionProperties();
+        properties.setInitialLimit(2);
+        properties.setMinLimit(1);
+        properties.setMaxLimit(10);
+        properties.setBackoffRatio(0.5);
+        properties.setLocalPaths(List.of("/room/**"));
+        return properties;
+    }
+}
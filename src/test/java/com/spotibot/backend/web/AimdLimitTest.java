@@ -0,0 +1,95 @@
+package com.spotibot.backend.web;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AimdLimitTest {
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long SLOW = TimeUnit.SECONDS.toNanos(2);
+
+    private final AimdLimit aimdLimit = new AimdLimit(10, 2, 20, 0.5, TimeUnit.SECONDS.toNanos(1));
+    private long now;
+
+    @Test
+    void rejectsWorkOverTheLimit() {
+        for (int i = 0; i < 10; i++) {
+            assertThat(aimdLimit.tryAcquire()).isTrue();
+        }
+
+        assertThat(aimdLimit.tryAcquire()).isFalse();
+        assertThat(aimdLimit.getInFlight()).isEqualTo(10);
+    }
+
+    @Test
+    void shrinksOnSlowOrFailedWorkDownToTheMinimum() {
+        run(SLOW, false);
+        assertThat(aimdLimit.getLimit()).isEqualTo(5);
+
+        run(FAST, true);
+        assertThat(aimdLimit.getLimit()).isEqualTo(2);
+
+        run(SLOW, true);
+        assertThat(aimdLimit.getLimit()).isEqualTo(2);
+    }
+
+    @Test
+    void backsOffOnceForWorkAdmittedBeforeTheLastDecrease() {
+        for (int i = 0; i < 5; i++) {
+            aimdLimit.tryAcquire();
+        }
+
+        // Five requests admitted together all time out: one decrease for the burst
+        for (int i = 0; i < 5; i++) {
+            aimdLimit.release(now, SLOW, false);
+        }
+        assertThat(aimdLimit.getLimit()).isEqualTo(5);
+
+        now += SLOW;
+        run(SLOW, false);
+        assertThat(aimdLimit.getLimit()).isEqualTo(2);
+    }
+
+    @Test
+    void failedAsyncWorkBacksOffAfterItsSlotWasReleased() {
+        aimdLimit.tryAcquire();
+        aimdLimit.release();
+        assertThat(aimdLimit.getInFlight()).isZero();
+        assertThat(aimdLimit.getLimit()).isEqualTo(10);
+
+        aimdLimit.failed(now, now + FAST);
+        assertThat(aimdLimit.getLimit()).isEqualTo(5);
+    }
+
+    @Test
+    void growsWhileFastWorkUsesTheLimit() {
+        for (int round = 0; round < 200; round++) {
+            int admitted = 0;
+            while (aimdLimit.tryAcquire()) {
+                admitted++;
+            }
+            for (int i = 0; i < admitted; i++) {
+                aimdLimit.release(now, FAST, false);
+            }
+        }
+
+        assertThat(aimdLimit.getLimit()).isEqualTo(20);
+    }
+
+    @Test
+    void doesNotGrowWhileMostlyIdle() {
+        for (int i = 0; i < 1_000; i++) {
+            run(FAST, false);
+        }
+
+        assertThat(aimdLimit.getLimit()).isEqualTo(10);
+    }
+
+    private void run(long latencyNanos, boolean failed) {
+        aimdLimit.tryAcquire();
+        aimdLimit.release(now, latencyNanos, failed);
+        now += latencyNanos;
+    }
+}
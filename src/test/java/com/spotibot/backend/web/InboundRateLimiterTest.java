@@ -0,0 +1,43 @@
+package com.spotibot.backend.web;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class InboundRateLimiterTest {
+
+    @Test
+    void limitsGuestsBeforeTheirRoom() {
+        InboundRateLimiter inboundRateLimiter = new InboundRateLimiter(properties(policy(1, 1, 2, 1)), new SimpleMeterRegistry());
+
+        assertThat(inboundRateLimiter.tryAcquire("search-song", "guest", "ROOM1")).isZero();
+        assertThat(inboundRateLimiter.tryAcquire("search-song", "guest", "ROOM1")).isEqualTo(1);
+        assertThat(inboundRateLimiter.tryAcquire("search-song", "other", "ROOM1")).isZero();
+        assertThat(inboundRateLimiter.tryAcquire("search-song", "third", "ROOM1")).isEqualTo(1);
+        assertThat(inboundRateLimiter.tryAcquire("skip-song", "guest", "ROOM1")).isZero();
+    }
+
+    @Test
+    void rejectsLimitsThatNeverRefill() {
+        assertThatThrownBy(() -> new InboundRateLimiter(properties(policy(5, 0, 0, 0)), new SimpleMeterRegistry()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("search-song.user-refill-per-second");
+    }
+
+    private static RateLimitProperties properties(RateLimitProperties.Policy policy) {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.getPolicies().put("search-song", policy);
+        return properties;
+    }
+
+    private static RateLimitProperties.Policy policy(int userCapacity, double userRefillPerSecond, int roomCapacity, double roomRefillPerSecond) {
+        RateLimitProperties.Policy policy = new RateLimitProperties.Policy();
+        policy.setUserCapacity(userCapacity);
+        policy.setUserRefillPerSecond(userRefillPerSecond);
+        policy.setRoomCapacity(roomCapacity);
+        policy.setRoomRefillPerSecond(roomRefillPerSecond);
+        return policy;
+    }
+}
@@ -0,0 +1,51 @@
+package com.spotibot.backend.web;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBucketsTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final TokenBuckets tokenBuckets = new TokenBuckets(3, 2);
+
+    @Test
+    void admitsBurstUpToCapacityPerKey() {
+        for (int i = 0; i < 3; i++) {
+            assertThat(tokenBuckets.tryTake("guest", 0)).isTrue();
+        }
+
+        assertThat(tokenBuckets.tryTake("guest", 0)).isFalse();
+        assertThat(tokenBuckets.tryTake("other", 0)).isTrue();
+    }
+
+    @Test
+    void refillsAtTheConfiguredRateUpToCapacity() {
+        for (int i = 0; i < 3; i++) {
+            tokenBuckets.tryTake("guest", 0);
+        }
+
+        assertThat(tokenBuckets.tryTake("guest", SECOND / 2)).isTrue();
+        assertThat(tokenBuckets.tryTake("guest", SECOND / 2)).isFalse();
+
+        long later = 10 * SECOND;
+        for (int i = 0; i < 3; i++) {
+            assertThat(tokenBuckets.tryTake("guest", later)).isTrue();
+        }
+        assertThat(tokenBuckets.tryTake("guest", later)).isFalse();
+        assertThat(tokenBuckets.getRefillSeconds()).isEqualTo(1);
+    }
+
+    @Test
+    void evictsOnlyIdleBucketsThatWouldBeFull() {
+        tokenBuckets.tryTake("idle", 0);
+        for (int i = 0; i < 3; i++) {
+            tokenBuckets.tryTake("drained", 9 * SECOND);
+        }
+
+        assertThat(tokenBuckets.evictIdle(10 * SECOND, 10 * SECOND)).isEqualTo(1);
+        assertThat(tokenBuckets.size()).isEqualTo(1);
+    }
+}